@@ -0,0 +1,182 @@
+package solver;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import jdk.incubator.foreign.CLinker;
+import jdk.incubator.foreign.MemoryAccess;
+import jdk.incubator.foreign.MemoryAddress;
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
+
+// This class is for internal use only.
+//
+// Tableau storage outside of the Java heap in a single memory segment of
+// the incubating Foreign Memory API, so unlike a buffer it needs no chunks
+// to go past 2^31 bytes. The segment belongs to a scope of its own which
+// close() closes, freeing the native memory or unmapping the file right
+// away instead of whenever the garbage collector gets to it. The scope is
+// shared since parallel pivots update the rows from several threads.
+//
+// Native memory comes from malloc when the JVM allows native access
+// (--enable-native-access=ALL-UNNAMED) which is not limited by
+// -XX:MaxDirectMemorySize. Otherwise the segment is allocated like a
+// direct buffer and counts against that limit, which defaults to the
+// maximum heap size.
+//
+// Rows are copied between the segment and the heap with bulk segment
+// copies and the row updates address the segment directly so no entry
+// goes through the virtual get and set of TableauStorage.
+//
+// This class is in the optional src-incubator source set and is only
+// loaded by TableauStorage when the jdk.incubator.foreign module is
+// present. It is written against the incubating API of JDK 17, which
+// JDK 18 changed and later JDKs replaced with java.lang.foreign, so the
+// source set only compiles with JDK 17.
+public class SegmentTableauStorage extends TableauStorage {
+    private final ResourceScope scope;
+    private final MemorySegment segment;
+
+    private SegmentTableauStorage(ResourceScope scope, MemorySegment segment) {
+        this.scope = scope;
+        this.segment = segment;
+    }
+
+    /**
+     * Creates segment backed storage for TableauStorage.allocate()
+     */
+    public static class Allocator implements TableauStorage.OffHeapAllocator {
+        // Cleared once malloc turns out to be off limits
+        private volatile boolean nativeAccess = true;
+
+        @Override
+        public TableauStorage allocateNative(long size) {
+            long bytes = size*Double.BYTES;
+            ResourceScope scope = ResourceScope.newSharedScope();
+            try {
+                MemorySegment segment = null;
+                if (nativeAccess) {
+                    segment = malloc(bytes, scope);
+                }
+                if (segment == null) {
+                    // Native segments are zeroed when allocated
+                    segment = MemorySegment.allocateNative(bytes, Double.BYTES, scope);
+                }
+                return new SegmentTableauStorage(scope, segment);
+            } catch (RuntimeException | Error e) {
+                scope.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Allocates zeroed memory outside of the direct memory limit
+         * @param bytes the number of bytes
+         * @param scope the scope freeing the memory when it is closed
+         * @return the memory or null if the JVM does not allow native access
+         * @exception OutOfMemoryError if malloc fails
+         */
+        private MemorySegment malloc(long bytes, ResourceScope scope) {
+            MemoryAddress address;
+            try {
+                address = CLinker.allocateMemory(bytes);
+            } catch (IllegalCallerException e) {
+                nativeAccess = false;
+                return null;
+            }
+            if (address.equals(MemoryAddress.NULL)) {
+                throw new OutOfMemoryError("Cannot allocate " + bytes + " bytes for the tableau.");
+            }
+            MemorySegment segment = address.asSegment(bytes, () -> CLinker.freeMemory(address), scope);
+            segment.fill((byte) 0);
+            return segment;
+        }
+
+        @Override
+        public TableauStorage mapTemporaryFile(long size, Path directory) {
+            try {
+                Path file = (directory == null)
+                        ? Files.createTempFile("tableau", ".bin")
+                        : Files.createTempFile(directory, "tableau", ".bin");
+                ResourceScope scope = ResourceScope.newSharedScope();
+                try {
+                    // Mapping past the end of the file grows it with zeroes
+                    MemorySegment segment = MemorySegment.mapFile(file, 0, size*Double.BYTES,
+                            FileChannel.MapMode.READ_WRITE, scope);
+                    return new SegmentTableauStorage(scope, segment);
+                } catch (IOException | RuntimeException e) {
+                    scope.close();
+                    throw e;
+                } finally {
+                    // The mapping stays valid after the file is deleted
+                    Files.delete(file);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to map tableau file.", e);
+            }
+        }
+    }
+
+    @Override
+    public double get(long index) {
+        return MemoryAccess.getDoubleAtIndex(segment, index);
+    }
+
+    @Override
+    public void set(long index, double v) {
+        MemoryAccess.setDoubleAtIndex(segment, index, v);
+    }
+
+    @Override
+    public void read(long offset, double[] dst, int len) {
+        MemorySegment.ofArray(dst).asSlice(0, (long) len*Double.BYTES)
+                .copyFrom(segment.asSlice(offset*Double.BYTES, (long) len*Double.BYTES));
+    }
+
+    @Override
+    public void write(long offset, double[] src, int len) {
+        segment.asSlice(offset*Double.BYTES, (long) len*Double.BYTES)
+                .copyFrom(MemorySegment.ofArray(src).asSlice(0, (long) len*Double.BYTES));
+    }
+
+    @Override
+    public void readColumn(long offset, int stride, double[] dst, int count) {
+        for (int i = 0; i < count; i++) {
+            dst[i] = MemoryAccess.getDoubleAtIndex(segment, offset + (long) i*stride);
+        }
+    }
+
+    @Override
+    public void axpyDense(long offset, double factor, double[] src, int from, int to, int skip,
+                          double zeroTolerance) {
+        // Split the loop around the skipped column so the loops are branch free
+        int left = Math.min(skip, to);
+        for (int j = from; j < left; j++) {
+            double v = MemoryAccess.getDoubleAtIndex(segment, offset + j) - factor*src[j];
+            MemoryAccess.setDoubleAtIndex(segment, offset + j, (Math.abs(v) < zeroTolerance) ? 0.0 : v);
+        }
+        for (int j = Math.max(skip + 1, from); j < to; j++) {
+            double v = MemoryAccess.getDoubleAtIndex(segment, offset + j) - factor*src[j];
+            MemoryAccess.setDoubleAtIndex(segment, offset + j, (Math.abs(v) < zeroTolerance) ? 0.0 : v);
+        }
+    }
+
+    @Override
+    public void axpySparse(long offset, double factor, int[] cols, double[] vals, int nnz, double zeroTolerance) {
+        for (int t = 0; t < nnz; t++) {
+            long j = offset + cols[t];
+            double v = MemoryAccess.getDoubleAtIndex(segment, j) - factor*vals[t];
+            MemoryAccess.setDoubleAtIndex(segment, j, (Math.abs(v) < zeroTolerance) ? 0.0 : v);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (scope.isAlive()) {
+            scope.close();
+        }
+    }
+}
@@ -0,0 +1,447 @@
+package solver;
+
+import java.util.Arrays;
+
+// This class is for internal use only.
+//
+// LU factorization of a simplex basis B whose columns are either
+// structural columns of a sparse constraint matrix or unit columns of
+// slack variables. The factorization P B Q = L U is computed with the
+// left-looking algorithm of Gilbert and Peierls using threshold partial
+// pivoting. Basis changes between factorizations are applied in product
+// form: each pivot appends an eta column so that
+//
+//      B_k^-1 = E_k^-1 ... E_1^-1 B_0^-1
+//
+// and the engine refactorizes once the eta file gets long.
+//
+// Rows are indexed by constraint and columns by basis position. L keeps
+// the original row numbers of its entries while U is indexed by
+// elimination step.
+public class BasisFactorization {
+    // Pivots smaller than this are treated as zero so the basis is singular
+    private static final double SINGULAR_TOLERANCE = 1e-11;
+    // A pivot may be chosen over the largest entry in its column if it is
+    // at least this fraction of it which lets sparser rows be chosen
+    private static final double PIVOT_THRESHOLD = 0.1;
+
+    private final int m;
+    private final SparseMatrix columns; // structural columns as rows
+    private final int numStructurals;
+
+    // Unit lower triangular factor stored by column without its diagonal
+    private int[] lStart;
+    private int[] lIndex;
+    private double[] lValue;
+    private int lSize;
+
+    // Upper triangular factor stored by column without its diagonal
+    private int[] uStart;
+    private int[] uIndex;
+    private double[] uValue;
+    private int uSize;
+    private final double[] uDiag;
+
+    private final int[] pinv; // row -> elimination step
+    private final int[] prow; // elimination step -> row
+    private final int[] q;    // elimination step -> basis position
+
+    // Eta file appended to by update()
+    private int numEtas;
+    private int[] etaPosition;
+    private double[] etaPivot;
+    private int[] etaStart;
+    private int[] etaIndex;
+    private double[] etaValue;
+    private int etaSize;
+
+    // Scratch space for factorizing
+    private final double[] work;
+    private final int[] stack;
+    private final int[] childPos;
+    private final int[] reach;
+    private final int[] mark;
+    private int markGeneration;
+
+    /**
+     * Creates storage for factorizing bases of a constraint matrix
+     * @param columns the structural columns of the constraint matrix
+     *                stored as the rows of a sparse matrix
+     * @param m the number of constraints
+     */
+    public BasisFactorization(SparseMatrix columns, int m) {
+        this.m = m;
+        this.columns = columns;
+        this.numStructurals = columns.getNumRows();
+
+        lStart = new int[m + 1];
+        lIndex = new int[Math.max(16, m)];
+        lValue = new double[lIndex.length];
+        uStart = new int[m + 1];
+        uIndex = new int[Math.max(16, m)];
+        uValue = new double[uIndex.length];
+        uDiag = new double[m];
+
+        pinv = new int[m];
+        prow = new int[m];
+        q = new int[m];
+
+        etaPosition = new int[16];
+        etaPivot = new double[16];
+        etaStart = new int[17];
+        etaIndex = new int[Math.max(16, m)];
+        etaValue = new double[etaIndex.length];
+
+        work = new double[m];
+        stack = new int[m];
+        childPos = new int[m];
+        reach = new int[m];
+        mark = new int[m];
+    }
+
+    /**
+     * @return the number of basis changes applied since the last
+     * factorization
+     */
+    public int getNumUpdates() {
+        return numEtas;
+    }
+
+    /**
+     * Factorizes a basis from scratch and discards the eta file
+     * @param basis the variable in each basis position where variables
+     *              numStructurals + i are the slack of constraint i
+     * @return -1 if the basis was factorized and otherwise the basis
+     * position of a column that is linearly dependent on the others
+     */
+    public int factorize(int[] basis) {
+        numEtas = 0;
+        etaSize = 0;
+        lSize = 0;
+        uSize = 0;
+        Arrays.fill(pinv, -1);
+        Arrays.fill(work, 0.0);
+
+        // Eliminate sparse columns first which keeps the factors sparse.
+        // Slack columns have a single entry so they go first and cost
+        // nothing.
+        Integer[] order = new Integer[m];
+        for (int k = 0; k < m; k++) {
+            order[k] = k;
+        }
+        Arrays.sort(order, (x, y) -> Integer.compare(columnLength(basis[x]), columnLength(basis[y])));
+
+        // Count entries per row so that ties between acceptable pivots go
+        // to the sparsest row
+        int[] rowCount = new int[m];
+        for (int k = 0; k < m; k++) {
+            int var = basis[k];
+            if (var >= numStructurals) {
+                rowCount[var - numStructurals]++;
+            } else {
+                for (int p = columns.rowStart(var); p < columns.rowEnd(var); p++) {
+                    rowCount[columns.getColumnIndex(p)]++;
+                }
+            }
+        }
+
+        for (int k = 0; k < m; k++) {
+            int position = order[k];
+            q[k] = position;
+            lStart[k] = lSize;
+            uStart[k] = uSize;
+
+            // Solve L x = B[:, position] over the columns eliminated so far
+            int top = scatterAndSolve(basis[position]);
+
+            // Entries in pivoted rows belong to U and the rest are
+            // candidates for the pivot
+            double maxValue = 0.0;
+            for (int t = top; t < m; t++) {
+                int i = reach[t];
+                if (pinv[i] < 0) {
+                    maxValue = Math.max(maxValue, Math.abs(work[i]));
+                }
+            }
+            if (maxValue < SINGULAR_TOLERANCE) {
+                for (int t = top; t < m; t++) {
+                    work[reach[t]] = 0.0;
+                }
+                return position;
+            }
+            int pivotRow = -1;
+            for (int t = top; t < m; t++) {
+                int i = reach[t];
+                if (pinv[i] < 0 && Math.abs(work[i]) >= PIVOT_THRESHOLD * maxValue
+                        && (pivotRow == -1 || rowCount[i] < rowCount[pivotRow]
+                            || (rowCount[i] == rowCount[pivotRow] && i < pivotRow))) {
+                    pivotRow = i;
+                }
+            }
+            double pivot = work[pivotRow];
+            pinv[pivotRow] = k;
+            prow[k] = pivotRow;
+            uDiag[k] = pivot;
+
+            for (int t = top; t < m; t++) {
+                int i = reach[t];
+                double v = work[i];
+                work[i] = 0.0;
+                if (v == 0 || i == pivotRow) continue;
+                if (pinv[i] >= 0) {
+                    appendU(pinv[i], v);
+                } else {
+                    appendL(i, v / pivot);
+                }
+            }
+        }
+        lStart[m] = lSize;
+        uStart[m] = uSize;
+        return -1;
+    }
+
+    /**
+     * Finds a constraint whose slack can replace a linearly dependent
+     * column after factorize() failed. Fewer rows than columns were
+     * pivoted so such a constraint always exists.
+     * @param positionOf the basis position of each variable or -1
+     * @param numStructurals the number of structural variables
+     * @return a constraint without a pivot whose slack is nonbasic
+     */
+    public int findUnpivotedRow(int[] positionOf, int numStructurals) {
+        for (int i = 0; i < m; i++) {
+            if (pinv[i] < 0 && positionOf[numStructurals + i] == -1) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Basis has no replaceable column.");
+    }
+
+    /**
+     * Solves B x = a which gives the column of a variable in terms of the
+     * current basis
+     * @param x holds a indexed by constraint on entry and x indexed by
+     *          basis position on exit
+     */
+    public void ftran(double[] x) {
+        // L y = P a
+        for (int k = 0; k < m; k++) {
+            double v = x[prow[k]];
+            if (v == 0) continue;
+            for (int p = lStart[k]; p < lStart[k + 1]; p++) {
+                x[lIndex[p]] -= lValue[p] * v;
+            }
+        }
+        // U z = y
+        for (int k = 0; k < m; k++) {
+            work[k] = x[prow[k]];
+        }
+        for (int k = m - 1; k >= 0; k--) {
+            double z = work[k] / uDiag[k];
+            work[k] = z;
+            if (z == 0) continue;
+            for (int p = uStart[k]; p < uStart[k + 1]; p++) {
+                work[uIndex[p]] -= uValue[p] * z;
+            }
+        }
+        // x = Q z
+        for (int k = 0; k < m; k++) {
+            x[q[k]] = work[k];
+            work[k] = 0.0;
+        }
+        // Apply the basis changes since the factorization in order
+        for (int e = 0; e < numEtas; e++) {
+            int r = etaPosition[e];
+            double xr = x[r] / etaPivot[e];
+            x[r] = xr;
+            if (xr == 0) continue;
+            for (int p = etaStart[e]; p < etaStart[e + 1]; p++) {
+                x[etaIndex[p]] -= etaValue[p] * xr;
+            }
+        }
+    }
+
+    /**
+     * Solves y B = c which gives the simplex multipliers of the basic
+     * costs and with c a unit vector a row of the basis inverse
+     * @param x holds c indexed by basis position on entry and y indexed
+     *          by constraint on exit
+     */
+    public void btran(double[] x) {
+        // Undo the basis changes since the factorization in reverse order
+        for (int e = numEtas - 1; e >= 0; e--) {
+            int r = etaPosition[e];
+            double sum = x[r];
+            for (int p = etaStart[e]; p < etaStart[e + 1]; p++) {
+                sum -= etaValue[p] * x[etaIndex[p]];
+            }
+            x[r] = sum / etaPivot[e];
+        }
+        // U^T v = Q^T c
+        for (int k = 0; k < m; k++) {
+            work[k] = x[q[k]];
+        }
+        for (int k = 0; k < m; k++) {
+            double sum = work[k];
+            for (int p = uStart[k]; p < uStart[k + 1]; p++) {
+                sum -= uValue[p] * work[uIndex[p]];
+            }
+            work[k] = sum / uDiag[k];
+        }
+        // L^T u = v
+        for (int k = m - 1; k >= 0; k--) {
+            double sum = work[k];
+            for (int p = lStart[k]; p < lStart[k + 1]; p++) {
+                sum -= lValue[p] * work[pinv[lIndex[p]]];
+            }
+            work[k] = sum;
+        }
+        // y = P^T u
+        for (int k = 0; k < m; k++) {
+            x[prow[k]] = work[k];
+            work[k] = 0.0;
+        }
+    }
+
+    /**
+     * Replaces the variable in a basis position by appending an eta column
+     * @param r the basis position whose variable leaves
+     * @param alpha the column of the entering variable in terms of the
+     *              current basis as computed by ftran()
+     */
+    public void update(int r, double[] alpha) {
+        if (numEtas == etaPosition.length) {
+            int capacity = 2*etaPosition.length;
+            etaPosition = Arrays.copyOf(etaPosition, capacity);
+            etaPivot = Arrays.copyOf(etaPivot, capacity);
+            etaStart = Arrays.copyOf(etaStart, capacity + 1);
+        }
+        etaPosition[numEtas] = r;
+        etaPivot[numEtas] = alpha[r];
+        etaStart[numEtas] = etaSize;
+        for (int i = 0; i < m; i++) {
+            if (i == r || alpha[i] == 0) continue;
+            if (etaSize == etaIndex.length) {
+                etaIndex = Arrays.copyOf(etaIndex, 2*etaIndex.length);
+                etaValue = Arrays.copyOf(etaValue, 2*etaValue.length);
+            }
+            etaIndex[etaSize] = i;
+            etaValue[etaSize] = alpha[i];
+            etaSize++;
+        }
+        numEtas++;
+        etaStart[numEtas] = etaSize;
+    }
+
+    /**
+     * Computes the reach of a column in the graph of L and solves
+     * L x = B[:, position] into work over the reach
+     * @param var the variable of the basis column
+     * @return the start of the reach which is stored in reach[top..m)
+     */
+    private int scatterAndSolve(int var) {
+        markGeneration++;
+        if (markGeneration == Integer.MAX_VALUE) {
+            Arrays.fill(mark, 0);
+            markGeneration = 1;
+        }
+        int top = m;
+        if (var >= numStructurals) {
+            int i = var - numStructurals;
+            top = depthFirstSearch(i, top);
+            work[i] = 1.0;
+        } else {
+            for (int p = columns.rowStart(var); p < columns.rowEnd(var); p++) {
+                int i = columns.getColumnIndex(p);
+                if (mark[i] != markGeneration) {
+                    top = depthFirstSearch(i, top);
+                }
+            }
+            for (int p = columns.rowStart(var); p < columns.rowEnd(var); p++) {
+                work[columns.getColumnIndex(p)] = columns.getValue(p);
+            }
+        }
+        // The reach is in topological order so each entry is final once it
+        // is visited
+        for (int t = top; t < m; t++) {
+            int i = reach[t];
+            int step = pinv[i];
+            if (step < 0) continue;
+            double v = work[i];
+            if (v == 0) continue;
+            // Columns of L for earlier steps are complete so each ends
+            // where the next one starts
+            for (int p = lStart[step]; p < lStart[step + 1]; p++) {
+                work[lIndex[p]] -= lValue[p] * v;
+            }
+        }
+        return top;
+    }
+
+    /**
+     * Iterative depth first search from a row through the columns of L
+     * which pushes rows onto reach[] in reverse topological order
+     * @param start the row to start from
+     * @param top the current start of the reach
+     * @return the new start of the reach
+     */
+    private int depthFirstSearch(int start, int top) {
+        // stack[] holds rows and work on the next child is resumed from
+        // the position kept in childPos of the frame
+        int head = 0;
+        stack[0] = start;
+        mark[start] = markGeneration;
+        int step = pinv[start];
+        childPos[0] = (step < 0) ? 0 : lStart[step];
+        while (head >= 0) {
+            int i = stack[head];
+            step = pinv[i];
+            boolean descended = false;
+            if (step >= 0) {
+                int end = lStart[step + 1];
+                for (int p = childPos[head]; p < end; p++) {
+                    int child = lIndex[p];
+                    if (mark[child] != markGeneration) {
+                        childPos[head] = p + 1;
+                        mark[child] = markGeneration;
+                        head++;
+                        stack[head] = child;
+                        int childStep = pinv[child];
+                        childPos[head] = (childStep < 0) ? 0 : lStart[childStep];
+                        descended = true;
+                        break;
+                    }
+                }
+            }
+            if (!descended) {
+                head--;
+                reach[--top] = i;
+            }
+        }
+        return top;
+    }
+
+    private void appendL(int row, double v) {
+        if (lSize == lIndex.length) {
+            lIndex = Arrays.copyOf(lIndex, 2*lIndex.length);
+            lValue = Arrays.copyOf(lValue, 2*lValue.length);
+        }
+        lIndex[lSize] = row;
+        lValue[lSize] = v;
+        lSize++;
+    }
+
+    private void appendU(int step, double v) {
+        if (uSize == uIndex.length) {
+            uIndex = Arrays.copyOf(uIndex, 2*uIndex.length);
+            uValue = Arrays.copyOf(uValue, 2*uValue.length);
+        }
+        uIndex[uSize] = step;
+        uValue[uSize] = v;
+        uSize++;
+    }
+
+    private int columnLength(int var) {
+        return (var >= numStructurals) ? 1 : columns.rowEnd(var) - columns.rowStart(var);
+    }
+}
@@ -0,0 +1,149 @@
+package solver;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// This class is for internal use only.
+//
+// Tableau storage living outside of the Java heap. The entries are split
+// into chunks of CHUNK_SIZE doubles since a single buffer is limited to
+// 2^31 bytes. The chunks are either direct buffers or regions of a
+// memory-mapped temporary file which lets the operating system page the
+// tableau to disk when it does not fit in memory.
+//
+// This is the fallback of TableauStorage.allocate() when
+// SegmentTableauStorage is not available. Direct buffers count against
+// -XX:MaxDirectMemorySize, which defaults to the maximum heap size, so an
+// off-heap tableau larger than the heap needs that limit raised. The Java
+// SE API cannot free a buffer on demand so close() only drops the
+// buffers and their memory is freed or unmapped once the garbage
+// collector finds them unreachable. Allocating a direct buffer that would
+// pass the limit runs the garbage collector first, so the buffers of
+// finished solves do not keep a new one from being allocated.
+public class BufferTableauStorage extends TableauStorage {
+    // 2^27 doubles = 1 GiB per chunk which is below the 2 GiB limit of a buffer
+    private static final int CHUNK_BITS = 27;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // Double views of the buffers holding the memory
+    private DoubleBuffer[] chunks;
+
+    private BufferTableauStorage(ByteBuffer[] buffers) {
+        chunks = new DoubleBuffer[buffers.length];
+        for (int i = 0; i < buffers.length; i++) {
+            chunks[i] = buffers[i].order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        }
+    }
+
+    /**
+     * @param size the number of entries
+     * @return the number of chunks needed to hold size entries
+     */
+    private static int numChunks(long size) {
+        return (int) ((size + CHUNK_SIZE - 1) >>> CHUNK_BITS);
+    }
+
+    /**
+     * @param size the number of entries
+     * @param chunk the index of a chunk
+     * @return the number of entries held by the chunk
+     */
+    private static int chunkLength(long size, int chunk) {
+        return (int) Math.min(CHUNK_SIZE, size - ((long) chunk << CHUNK_BITS));
+    }
+
+    /**
+     * Allocates zeroed storage in direct (off-heap) buffers
+     * @param size the number of entries
+     * @return the new storage
+     */
+    public static BufferTableauStorage allocateDirect(long size) {
+        ByteBuffer[] buffers = new ByteBuffer[numChunks(size)];
+        for (int i = 0; i < buffers.length; i++) {
+            // Direct buffers are zeroed when allocated
+            buffers[i] = ByteBuffer.allocateDirect(chunkLength(size, i)*Double.BYTES);
+        }
+        return new BufferTableauStorage(buffers);
+    }
+
+    /**
+     * Allocates zeroed storage in a memory-mapped temporary file. The file
+     * is deleted as soon as it is mapped so it never outlives the process.
+     * @param size the number of entries
+     * @param directory directory to create the file in or null to use the
+     *                  default temporary-file directory
+     * @return the new storage
+     * @exception UncheckedIOException if the file cannot be created or mapped
+     */
+    public static BufferTableauStorage mapTemporaryFile(long size, Path directory) {
+        try {
+            Path file = (directory == null)
+                    ? Files.createTempFile("tableau", ".bin")
+                    : Files.createTempFile(directory, "tableau", ".bin");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE)) {
+                ByteBuffer[] buffers = new ByteBuffer[numChunks(size)];
+                for (int i = 0; i < buffers.length; i++) {
+                    // Regions past the end of the file grow it with zeroes
+                    long position = ((long) i << CHUNK_BITS)*Double.BYTES;
+                    buffers[i] = channel.map(FileChannel.MapMode.READ_WRITE, position,
+                            (long) chunkLength(size, i)*Double.BYTES);
+                }
+                // The mappings stay valid after the channel is closed
+                return new BufferTableauStorage(buffers);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to map tableau file.", e);
+        }
+    }
+
+    @Override
+    public double get(long index) {
+        return chunks[(int) (index >>> CHUNK_BITS)].get((int) (index & CHUNK_MASK));
+    }
+
+    @Override
+    public void set(long index, double v) {
+        chunks[(int) (index >>> CHUNK_BITS)].put((int) (index & CHUNK_MASK), v);
+    }
+
+    @Override
+    public void read(long offset, double[] dst, int len) {
+        int j = 0;
+        while (j < len) {
+            long index = offset + j;
+            int position = (int) (index & CHUNK_MASK);
+            int n = Math.min(len - j, CHUNK_SIZE - position);
+            chunks[(int) (index >>> CHUNK_BITS)].get(position, dst, j, n);
+            j += n;
+        }
+    }
+
+    @Override
+    public void write(long offset, double[] src, int len) {
+        int j = 0;
+        while (j < len) {
+            long index = offset + j;
+            int position = (int) (index & CHUNK_MASK);
+            int n = Math.min(len - j, CHUNK_SIZE - position);
+            chunks[(int) (index >>> CHUNK_BITS)].put(position, src, j, n);
+            j += n;
+        }
+    }
+
+    /**
+     * Drops the buffers which the garbage collector then frees or unmaps
+     */
+    @Override
+    public void close() {
+        chunks = null;
+    }
+}
@@ -0,0 +1,184 @@
+package solver;
+
+// This class is for internal use only.
+//
+// The dual of a linear program in standard form written as a linear
+// program in standard form itself. The primal linear program
+//      maximize c * x
+//      subject to b - r <= A * x <= b and 0 <= x <= u
+// where some variables may be free has the dual
+//      minimize b * y - (b - r) * z + u * w
+//      subject to A^T * (y - z) + w >= c and y, z, w >= 0
+// whose row j is an equality if primal variable j is free. A dual variable
+// z only exists for constraints with a finite range and is merged into y
+// as a single free variable for equalities. A dual variable w only exists
+// for primal variables with an upper bound. The dual is negated into a
+// maximization with <= rows to fit standard form.
+//
+// The dual has a row per primal variable and a column per primal
+// constraint so a linear program with many more constraints than
+// variables is much smaller as its dual. The duals of the rows of the
+// optimal dual solution are the optimal primal variables.
+public class DualForm {
+    // The dual is solved instead when the estimated work of pivoting it is
+    // at most this fraction of the estimated work for the primal
+    private static final double DUAL_WORK_RATIO = 0.5;
+
+    private final StandardForm primal;
+    private final StandardForm dual;
+
+    /**
+     * Builds the dual of a linear program in standard form
+     * @param primal the linear program whose dual to build which is not
+     *               modified
+     */
+    public DualForm(StandardForm primal) {
+        this.primal = primal;
+        int m = primal.getNumConstraints();
+        int n = primal.getNumVariables();
+
+        // Number the dual variables first so that the rows of the dual can
+        // be filled one after another in column order
+        int[] yColumn = new int[m];
+        int[] zColumn = new int[m];
+        int[] wColumn = new int[n];
+        int numDualVariables = 0;
+        for (int i = 0; i < m; i++) {
+            double r = primal.getR(i);
+            yColumn[i] = numDualVariables++;
+            zColumn[i] = (r != 0 && r != Double.POSITIVE_INFINITY) ? numDualVariables++ : -1;
+        }
+        for (int j = 0; j < n; j++) {
+            wColumn[j] = (primal.getU(j) != Double.POSITIVE_INFINITY) ? numDualVariables++ : -1;
+        }
+
+        dual = new StandardForm(numDualVariables);
+        for (int i = 0; i < m; i++) {
+            double b = primal.getB(i);
+            dual.updateC(yColumn[i], -b);
+            if (primal.getR(i) == 0) {
+                dual.updateFree(yColumn[i], true);
+            }
+            if (zColumn[i] != -1) {
+                dual.updateC(zColumn[i], b - primal.getR(i));
+            }
+        }
+        for (int j = 0; j < n; j++) {
+            if (wColumn[j] != -1) {
+                dual.updateC(wColumn[j], -primal.getU(j));
+            }
+        }
+
+        // Dual row j is -(A^T_j * (y - z) + w_j) <= -c_j
+        SparseMatrix columns = primal.getMatrix().transpose();
+        for (int j = 0; j < n; j++) {
+            int row = dual.addEmptyConstraint();
+            for (int p = columns.rowStart(j); p < columns.rowEnd(j); p++) {
+                int i = columns.getColumnIndex(p);
+                dual.updateA(row, yColumn[i], -columns.getValue(p));
+                if (zColumn[i] != -1) {
+                    dual.updateA(row, zColumn[i], columns.getValue(p));
+                }
+            }
+            if (wColumn[j] != -1) {
+                dual.updateA(row, wColumn[j], -1.0);
+            }
+            dual.updateB(row, -primal.getC(j));
+            if (primal.isFree(j)) {
+                dual.updateR(row, 0.0);
+            }
+        }
+        // Negating the dual objective negates its optimal value which then
+        // matches the primal one
+        dual.objConst = -primal.objConst;
+    }
+
+    /**
+     * Compares the work of solving a linear program in standard form with
+     * the work of solving its dual. Each pivot updates a tableau or basis
+     * whose size grows with the number of rows and the number of pivots
+     * grows with the number of rows too. The dual only pays off when the
+     * linear program would need the auxiliary linear program though. A
+     * feasible starting basis of either kind is the mirror image of one
+     * for the dual which then takes the same pivots.
+     * @param primal a linear program in standard form
+     * @param dualSimplex whether the engine would start the dual simplex
+     *                    algorithm from a dual feasible basis
+     * @return true if solving the dual is expected to be much cheaper
+     */
+    public static boolean isCheaper(StandardForm primal, boolean dualSimplex) {
+        int m = primal.getNumConstraints();
+        int n = primal.getNumVariables();
+        // The dual has a column per constraint plus one for each range and
+        // upper bound
+        double dualColumns = m;
+        boolean primalFeasible = true;
+        for (int i = 0; i < m; i++) {
+            double b = primal.getB(i);
+            double r = primal.getR(i);
+            if (r != 0 && r != Double.POSITIVE_INFINITY) {
+                dualColumns++;
+            }
+            if (b < 0 || b > r) {
+                primalFeasible = false;
+            }
+        }
+        boolean dualFeasible = true;
+        for (int j = 0; j < n; j++) {
+            double c = primal.getC(j);
+            if (primal.getU(j) != Double.POSITIVE_INFINITY) {
+                dualColumns++;
+            } else if (c > 0 || (c < 0 && primal.isFree(j))) {
+                dualFeasible = false;
+            }
+        }
+        if (primalFeasible || (dualSimplex && dualFeasible)) {
+            return false;
+        }
+        return (double) n*n*dualColumns <= DUAL_WORK_RATIO*m*m*n;
+    }
+
+    /**
+     * @return the dual linear program in standard form
+     */
+    public StandardForm getDualForm() {
+        return dual;
+    }
+
+    /**
+     * Recovers the solution of the primal linear program from the optimal
+     * basis of its dual
+     * @param solution a solution of the dual linear program
+     * @param buffer array to write the variable values of the solution to
+     *               if it is long enough or null to allocate a new one
+     * @return the solution of the primal linear program or null if the
+     * dual is infeasible which leaves the primal either infeasible or
+     * unbounded
+     */
+    public Solution recover(Solution solution, double[] buffer) {
+        Solution res;
+        if (solution.getStatus() == SolutionResult.INFEASIBLE) {
+            return null;
+        } else if (solution.getStatus() == SolutionResult.UNBOUNDED) {
+            // A dual without an optimum bounds nothing from below
+            res = new Solution(SolutionResult.INFEASIBLE, null, 0.0);
+        } else {
+            int n = primal.getNumVariables();
+            double[] values = (buffer != null && buffer.length >= n) ? buffer : new double[n];
+            double objectiveValue = primal.objConst;
+            for (int j = 0; j < n; j++) {
+                // The dual of the row of a variable is its value. Roundoff
+                // may leave it a hair outside its bounds.
+                double value = solution.getDual(j);
+                if (!primal.isFree(j)) {
+                    value = Math.min(Math.max(value, 0.0), primal.getU(j));
+                }
+                values[j] = value;
+                objectiveValue += primal.getC(j)*value;
+            }
+            res = new Solution(SolutionResult.FEASIBLE, values, n, objectiveValue);
+        }
+        res.setStatistics(solution.getStatistics());
+        return res;
+    }
+}
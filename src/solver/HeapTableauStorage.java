@@ -0,0 +1,82 @@
+package solver;
+
+// This class is for internal use only.
+//
+// Tableau storage backed by a single double array on the Java heap
+public class HeapTableauStorage extends TableauStorage {
+    private final double[] data;
+
+    /**
+     * Allocates zeroed storage on the Java heap
+     * @param size the number of entries
+     * @exception IllegalArgumentException if size does not fit in an array
+     */
+    public HeapTableauStorage(long size) {
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Tableau is too large for the heap backend.");
+        }
+        data = new double[(int) size];
+    }
+
+    /**
+     * Wraps an existing array whose entries that will be used must be zero
+     * @param data the array to store the entries in
+     */
+    public HeapTableauStorage(double[] data) {
+        this.data = data;
+    }
+
+    @Override
+    public double get(long index) {
+        return data[(int) index];
+    }
+
+    @Override
+    public void set(long index, double v) {
+        data[(int) index] = v;
+    }
+
+    @Override
+    public void read(long offset, double[] dst, int len) {
+        System.arraycopy(data, (int) offset, dst, 0, len);
+    }
+
+    @Override
+    public void write(long offset, double[] src, int len) {
+        System.arraycopy(src, 0, data, (int) offset, len);
+    }
+
+    @Override
+    public void axpyDense(long offset, double factor, double[] src, int from, int to, int skip,
+                          double zeroTolerance) {
+        int base = (int) offset;
+        // Split the loop around the skipped column so the loops are branch free
+        int left = Math.min(skip, to);
+        if (from < left) {
+            RowKernels.axpy(data, base + from, src, from, left - from, factor, zeroTolerance);
+        }
+        int right = Math.max(skip + 1, from);
+        if (right < to) {
+            RowKernels.axpy(data, base + right, src, right, to - right, factor, zeroTolerance);
+        }
+    }
+
+    @Override
+    public void readColumn(long offset, int stride, double[] dst, int count) {
+        int index = (int) offset;
+        for (int i = 0; i < count; i++) {
+            dst[i] = data[index];
+            index += stride;
+        }
+    }
+
+    @Override
+    public void axpySparse(long offset, double factor, int[] cols, double[] vals, int nnz, double zeroTolerance) {
+        int base = (int) offset;
+        for (int t = 0; t < nnz; t++) {
+            int j = base + cols[t];
+            double v = data[j] - factor*vals[t];
+            data[j] = (Math.abs(v) < zeroTolerance) ? 0.0 : v;
+        }
+    }
+}
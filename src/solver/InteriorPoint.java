@@ -0,0 +1,561 @@
+package solver;
+
+import java.util.Arrays;
+
+// This class is for internal use only.
+//
+// Primal-dual interior point method on a linear program in standard form.
+// Every constraint with a nonzero range gets a slack variable so that the
+// linear program becomes
+//
+//      minimize g^T x subject to A x = b, x >= 0 and x_j <= u_j for j in U
+//
+// with g = -c over columns for the variables and slacks. Free variables are
+// split into a positive and a negative part while fixed variables and the
+// slacks of equalities are left out. The dual is
+//
+//      maximize b^T y - u^T v subject to A^T y + z - v = g and z, v >= 0
+//
+// Mehrotra's predictor-corrector method follows the central path
+// x_j z_j = w_j v_j = mu, where w = u - x, towards mu = 0 without needing
+// feasible iterates. Each iteration factorizes the normal equations
+// A Theta A^T once and solves them twice: for the affine scaling direction
+// that predicts how far mu can be reduced and for the direction that
+// corrects the complementarity products and recenters.
+//
+// Interior point solutions lie in the relative interior of the optimal face
+// instead of at a vertex. Crossover guesses the optimal basis from the
+// variables furthest from their bounds relative to their dual slacks. The
+// revised simplex method starts from that basis with the other variables
+// at their interior values, pushes each of them to a bound or into the
+// basis while staying feasible and pivots to an optimal basic solution
+// with its duals. Iterates that stall short of the
+// tolerances, usually because round-off in the normal equations keeps the
+// residuals from shrinking, are crossed over just the same. The dual
+// iterates of an infeasible linear program diverge along a Farkas
+// certificate and those of an unbounded one diverge without one. The
+// certificate is only checked up to a relative tolerance, which a feasible
+// linear program whose solutions are all huge can pass as well, so in both
+// cases the revised simplex method starting from the slack basis decides
+// the status.
+public class InteriorPoint {
+    // Relative infeasibilities and duality gap at which the iterates are
+    // optimal
+    private static final double OPTIMALITY_TOLERANCE = 1e-8;
+    private static final int MAX_ITERATIONS = 100;
+    // Fraction of the step to the boundary of the positive orthant taken
+    private static final double STEP_FACTOR = 0.995;
+    // Iterates larger than this relative to the data have diverged
+    private static final double DIVERGENCE_LIMIT = 1e12;
+    // Steps shorter than this make no progress
+    private static final double MIN_STEP = 1e-8;
+    // Complementarity below this fraction of the objective value is lost in
+    // round-off so further iterations make no progress
+    private static final double MIN_COMPLEMENTARITY = 1e-12;
+    // Starting values of the variables and dual slacks are at least this
+    private static final double MIN_START = 1e-2;
+
+    private final StandardForm standardForm;
+    private final SolverOptions options;
+    private final int m; // number of constraints
+    private final int n; // number of structural variables
+
+    // The columns of the interior point linear program. Column k belongs to
+    // variable[k] of the standard form numbered like the revised simplex
+    // method with slack i as n + i and is the negative part of a free
+    // variable if negative[k] is set.
+    private final int numColumns;
+    private final int[] variable;
+    private final boolean[] negative;
+    private final int[] colStart;
+    private final int[] colRow;
+    private final double[] colValue;
+    private final double[] b;
+    private final double[] g;
+    private final double[] u;
+    private final int numUpper;
+    // Some upper bound is negative
+    private final boolean infeasibleBounds;
+
+    // Iterates
+    private final double[] x;
+    private final double[] w;
+    private final double[] y;
+    private final double[] z;
+    private final double[] v;
+
+    // Residuals, directions and scratch space
+    private final double[] rp;
+    private final double[] ru;
+    private final double[] rd;
+    private final double[] rxz;
+    private final double[] rwv;
+    private final double[] theta;
+    private final double[] rho;
+    private final double[] dx;
+    private final double[] dw;
+    private final double[] dy;
+    private final double[] dz;
+    private final double[] dv;
+
+    private SparseCholesky cholesky;
+    private int numIterations;
+
+    private enum Status {
+        OPTIMAL,
+        // Infeasible according to the dual iterate up to a tolerance
+        INFEASIBLE,
+        // Stopped improving before reaching the tolerances
+        STALLED,
+        // Grew without bounds
+        DIVERGED
+    }
+
+    /**
+     * Sets up the interior point method on a linear program in standard
+     * form
+     * @param standardForm the linear program to solve
+     * @param options Settings for the revised simplex method finishing the
+     *                solve
+     */
+    public InteriorPoint(StandardForm standardForm, SolverOptions options) {
+        this.standardForm = standardForm;
+        this.options = options;
+        m = standardForm.getNumConstraints();
+        n = standardForm.getNumVariables();
+
+        boolean infeasible = false;
+        int count = 0;
+        for (int j = 0; j < n; j++) {
+            double upper = standardForm.getU(j);
+            if (standardForm.isFree(j)) {
+                count += 2;
+            } else if (upper > 0) {
+                count++;
+            } else if (upper < 0) {
+                infeasible = true;
+            }
+        }
+        for (int i = 0; i < m; i++) {
+            double r = standardForm.getR(i);
+            if (r > 0) {
+                count++;
+            } else if (r < 0) {
+                infeasible = true;
+            }
+        }
+        infeasibleBounds = infeasible;
+        numColumns = count;
+
+        SparseMatrix columns = standardForm.getMatrix().transpose();
+        variable = new int[numColumns];
+        negative = new boolean[numColumns];
+        colStart = new int[numColumns + 1];
+        colRow = new int[columns.getNumNonZeros() * 2 + m];
+        colValue = new double[colRow.length];
+        g = new double[numColumns];
+        u = new double[numColumns];
+        int k = 0;
+        int nnz = 0;
+        for (int j = 0; j < n; j++) {
+            boolean free = standardForm.isFree(j);
+            if (!free && !(standardForm.getU(j) > 0)) continue;
+            for (int part = 0; part < (free ? 2 : 1); part++) {
+                double sign = (part == 0) ? 1.0 : -1.0;
+                variable[k] = j;
+                negative[k] = part == 1;
+                for (int p = columns.rowStart(j); p < columns.rowEnd(j); p++) {
+                    colRow[nnz] = columns.getColumnIndex(p);
+                    colValue[nnz++] = sign*columns.getValue(p);
+                }
+                g[k] = -sign*standardForm.getC(j);
+                u[k] = free ? Double.POSITIVE_INFINITY : standardForm.getU(j);
+                colStart[++k] = nnz;
+            }
+        }
+        for (int i = 0; i < m; i++) {
+            if (!(standardForm.getR(i) > 0)) continue;
+            variable[k] = n + i;
+            colRow[nnz] = i;
+            colValue[nnz++] = 1.0;
+            u[k] = standardForm.getR(i);
+            colStart[++k] = nnz;
+        }
+        int upperCount = 0;
+        for (k = 0; k < numColumns; k++) {
+            if (u[k] != Double.POSITIVE_INFINITY) {
+                upperCount++;
+            }
+        }
+        numUpper = upperCount;
+        b = new double[m];
+        for (int i = 0; i < m; i++) {
+            b[i] = standardForm.getB(i);
+        }
+
+        x = new double[numColumns];
+        w = new double[numColumns];
+        y = new double[m];
+        z = new double[numColumns];
+        v = new double[numColumns];
+        rp = new double[m];
+        ru = new double[numColumns];
+        rd = new double[numColumns];
+        rxz = new double[numColumns];
+        rwv = new double[numColumns];
+        theta = new double[numColumns];
+        rho = new double[numColumns];
+        dx = new double[numColumns];
+        dw = new double[numColumns];
+        dy = new double[m];
+        dz = new double[numColumns];
+        dv = new double[numColumns];
+    }
+
+    /**
+     * Solves the linear program
+     * @return a solution to the linear program
+     */
+    public Solution solve() {
+        return solve(null);
+    }
+
+    /**
+     * Solves the linear program by the interior point method followed by
+     * crossover to an optimal basis
+     * @param buffer array to write the variable values of the solution to
+     *               if it is long enough or null to allocate a new one
+     * @return a solution to the linear program
+     */
+    public Solution solve(double[] buffer) {
+        numIterations = 0;
+        Status status = (infeasibleBounds || m == 0 || numColumns == 0) ? Status.DIVERGED : iterate();
+        RevisedSimplex revisedSimplex = new RevisedSimplex(standardForm, options);
+        // Iterates close to optimal still give a good guess while infeasible
+        // and diverged ones give none
+        if (status == Status.OPTIMAL || status == Status.STALLED) {
+            int[] basicVariables = new int[m];
+            double[] values = new double[n + m];
+            guessBasis(basicVariables, values);
+            revisedSimplex.setStartingPoint(basicVariables, values);
+        }
+        Solution solution = revisedSimplex.solve(buffer);
+        solution.getStatistics().setBarrierIterations(numIterations);
+        return solution;
+    }
+
+    /**
+     * Runs the predictor-corrector iterations
+     * @return the status the iterates ended in
+     */
+    private Status iterate() {
+        cholesky = new SparseCholesky(m, colStart, colRow, colValue);
+        startingPoint();
+        double bNorm = 0.0;
+        for (int i = 0; i < m; i++) {
+            bNorm = Math.max(bNorm, Math.abs(b[i]));
+        }
+        double uNorm = 0.0;
+        double gNorm = 0.0;
+        for (int k = 0; k < numColumns; k++) {
+            if (u[k] != Double.POSITIVE_INFINITY) {
+                uNorm = Math.max(uNorm, u[k]);
+            }
+            gNorm = Math.max(gNorm, Math.abs(g[k]));
+        }
+        double primalScale = 1.0 + Math.max(bNorm, uNorm);
+        double dualScale = 1.0 + gNorm;
+        int numPairs = numColumns + numUpper;
+
+        while (true) {
+            // Residuals of the primal and dual constraints
+            System.arraycopy(b, 0, rp, 0, m);
+            double primalObjective = 0.0;
+            double dualObjective = 0.0;
+            double primalInfeasibility = 0.0;
+            double dualInfeasibility = 0.0;
+            double primalSize = 0.0;
+            double dualSize = 0.0;
+            double complementarity = 0.0;
+            double farkasBound = 0.0;
+            double farkasViolation = 0.0;
+            for (int k = 0; k < numColumns; k++) {
+                double atY = 0.0;
+                for (int p = colStart[k]; p < colStart[k + 1]; p++) {
+                    rp[colRow[p]] -= colValue[p]*x[k];
+                    atY += colValue[p]*y[colRow[p]];
+                }
+                if (u[k] != Double.POSITIVE_INFINITY) {
+                    farkasBound += u[k]*Math.max(atY, 0.0);
+                } else {
+                    farkasViolation = Math.max(farkasViolation, atY);
+                }
+                rd[k] = g[k] - atY - z[k] + v[k];
+                dualInfeasibility = Math.max(dualInfeasibility, Math.abs(rd[k]));
+                primalObjective += g[k]*x[k];
+                complementarity += x[k]*z[k];
+                primalSize = Math.max(primalSize, x[k]);
+                dualSize = Math.max(dualSize, z[k]);
+                if (u[k] != Double.POSITIVE_INFINITY) {
+                    ru[k] = u[k] - x[k] - w[k];
+                    primalInfeasibility = Math.max(primalInfeasibility, Math.abs(ru[k]));
+                    dualObjective -= u[k]*v[k];
+                    complementarity += w[k]*v[k];
+                    dualSize = Math.max(dualSize, v[k]);
+                }
+            }
+            double by = 0.0;
+            for (int i = 0; i < m; i++) {
+                primalInfeasibility = Math.max(primalInfeasibility, Math.abs(rp[i]));
+                by += b[i]*y[i];
+                dualSize = Math.max(dualSize, Math.abs(y[i]));
+            }
+            dualObjective += by;
+            double mu = complementarity/numPairs;
+
+            if (primalInfeasibility <= OPTIMALITY_TOLERANCE*primalScale
+                    && dualInfeasibility <= OPTIMALITY_TOLERANCE*dualScale
+                    && Math.abs(primalObjective - dualObjective)
+                    <= OPTIMALITY_TOLERANCE*(1.0 + Math.abs(primalObjective))) {
+                return Status.OPTIMAL;
+            }
+            // By Farkas' lemma no x >= 0 with x_k <= u_k for k in U solves
+            // A x = b if some y has (A^T y)_k <= 0 for the columns without
+            // an upper bound and b^T y > sum over U of u_k max((A^T y)_k, 0)
+            // since b^T y = (A^T y)^T x for any solution x and the sum
+            // bounds the right side. The dual iterates of an infeasible
+            // linear program diverge along such a y. The tolerance lets
+            // a feasible linear program whose solutions are all beyond
+            // 1 / OPTIMALITY_TOLERANCE times the size of the certificate
+            // pass the check so the simplex method has to confirm it.
+            double farkasValue = by - farkasBound;
+            if (farkasValue > 0 && farkasViolation <= OPTIMALITY_TOLERANCE*farkasValue) {
+                return Status.INFEASIBLE;
+            }
+            if (primalSize > DIVERGENCE_LIMIT*primalScale || dualSize > DIVERGENCE_LIMIT*dualScale) {
+                return Status.DIVERGED;
+            }
+            if (numIterations == MAX_ITERATIONS || mu <= MIN_COMPLEMENTARITY*(1.0 + Math.abs(primalObjective))) {
+                return Status.STALLED;
+            }
+            numIterations++;
+
+            for (int k = 0; k < numColumns; k++) {
+                double d = z[k]/x[k];
+                if (u[k] != Double.POSITIVE_INFINITY) {
+                    d += v[k]/w[k];
+                }
+                theta[k] = 1.0/d;
+            }
+            cholesky.factorize(theta);
+
+            // Predictor: the affine scaling direction aims for mu = 0
+            for (int k = 0; k < numColumns; k++) {
+                rxz[k] = -x[k]*z[k];
+                rwv[k] = -w[k]*v[k];
+            }
+            direction();
+            double primalStep = Math.min(1.0, primalStep());
+            double dualStep = Math.min(1.0, dualStep());
+            double affineComplementarity = 0.0;
+            for (int k = 0; k < numColumns; k++) {
+                affineComplementarity += (x[k] + primalStep*dx[k])*(z[k] + dualStep*dz[k]);
+                if (u[k] != Double.POSITIVE_INFINITY) {
+                    affineComplementarity += (w[k] + primalStep*dw[k])*(v[k] + dualStep*dv[k]);
+                }
+            }
+            double ratio = affineComplementarity/numPairs/mu;
+            double sigmaMu = ratio*ratio*ratio*mu;
+
+            // Corrector: aim for the centering target sigma mu and cancel
+            // the second order term the predictor missed
+            for (int k = 0; k < numColumns; k++) {
+                rxz[k] = sigmaMu - x[k]*z[k] - dx[k]*dz[k];
+                rwv[k] = sigmaMu - w[k]*v[k] - dw[k]*dv[k];
+            }
+            direction();
+            primalStep = Math.min(1.0, STEP_FACTOR*primalStep());
+            dualStep = Math.min(1.0, STEP_FACTOR*dualStep());
+            if (primalStep < MIN_STEP && dualStep < MIN_STEP) {
+                return Status.STALLED;
+            }
+            for (int k = 0; k < numColumns; k++) {
+                x[k] += primalStep*dx[k];
+                z[k] += dualStep*dz[k];
+                if (u[k] != Double.POSITIVE_INFINITY) {
+                    w[k] += primalStep*dw[k];
+                    v[k] += dualStep*dv[k];
+                }
+            }
+            for (int i = 0; i < m; i++) {
+                y[i] += dualStep*dy[i];
+            }
+        }
+    }
+
+    /**
+     * Computes Mehrotra's starting point from the least squares solution of
+     * A x = b and the least squares dual slacks of A^T y + z = g shifted
+     * into the positive orthant
+     */
+    private void startingPoint() {
+        Arrays.fill(theta, 1.0);
+        cholesky.factorize(theta);
+
+        // x = A^T (A A^T)^-1 b
+        System.arraycopy(b, 0, dy, 0, m);
+        cholesky.solve(dy);
+        // y = (A A^T)^-1 A g and z = g - A^T y
+        Arrays.fill(y, 0.0);
+        for (int k = 0; k < numColumns; k++) {
+            for (int p = colStart[k]; p < colStart[k + 1]; p++) {
+                y[colRow[p]] += colValue[p]*g[k];
+            }
+        }
+        cholesky.solve(y);
+        double minX = 0.0;
+        double minZ = 0.0;
+        for (int k = 0; k < numColumns; k++) {
+            double atDy = 0.0;
+            double atY = 0.0;
+            for (int p = colStart[k]; p < colStart[k + 1]; p++) {
+                atDy += colValue[p]*dy[colRow[p]];
+                atY += colValue[p]*y[colRow[p]];
+            }
+            x[k] = atDy;
+            z[k] = g[k] - atY;
+            minX = Math.min(minX, x[k]);
+            minZ = Math.min(minZ, z[k]);
+        }
+
+        double sumX = 0.0;
+        double sumZ = 0.0;
+        double product = 0.0;
+        for (int k = 0; k < numColumns; k++) {
+            x[k] -= 1.5*minX;
+            z[k] -= 1.5*minZ;
+            sumX += x[k];
+            sumZ += z[k];
+            product += x[k]*z[k];
+        }
+        double shiftX = (sumZ > 0) ? 0.5*product/sumZ : 0.0;
+        double shiftZ = (sumX > 0) ? 0.5*product/sumX : 0.0;
+        for (int k = 0; k < numColumns; k++) {
+            x[k] = Math.max(x[k] + shiftX, MIN_START);
+            z[k] = Math.max(z[k] + shiftZ, MIN_START);
+            if (u[k] != Double.POSITIVE_INFINITY) {
+                // Start strictly between the bounds
+                x[k] = Math.min(x[k], 0.5*u[k]);
+                w[k] = u[k] - x[k];
+                v[k] = z[k];
+            }
+        }
+    }
+
+    /**
+     * Solves the Newton equations for the residuals and the complementarity
+     * targets in rxz and rwv with the current factorization. Eliminating
+     * the other directions leaves
+     *      A Theta A^T dy = rp - A Theta rho
+     * with rho = rxz / x - (rwv - v ru) / w - rd.
+     */
+    private void direction() {
+        System.arraycopy(rp, 0, dy, 0, m);
+        for (int k = 0; k < numColumns; k++) {
+            rho[k] = rxz[k]/x[k] - rd[k];
+            if (u[k] != Double.POSITIVE_INFINITY) {
+                rho[k] -= (rwv[k] - v[k]*ru[k])/w[k];
+            }
+            double t = theta[k]*rho[k];
+            for (int p = colStart[k]; p < colStart[k + 1]; p++) {
+                dy[colRow[p]] -= colValue[p]*t;
+            }
+        }
+        cholesky.solve(dy);
+        for (int k = 0; k < numColumns; k++) {
+            double atDy = 0.0;
+            for (int p = colStart[k]; p < colStart[k + 1]; p++) {
+                atDy += colValue[p]*dy[colRow[p]];
+            }
+            dx[k] = theta[k]*(atDy + rho[k]);
+            dz[k] = (rxz[k] - z[k]*dx[k])/x[k];
+            if (u[k] != Double.POSITIVE_INFINITY) {
+                dw[k] = ru[k] - dx[k];
+                dv[k] = (rwv[k] - v[k]*dw[k])/w[k];
+            } else {
+                dw[k] = 0.0;
+                dv[k] = 0.0;
+            }
+        }
+    }
+
+    /**
+     * @return the longest step along the primal direction that keeps x and
+     * w nonnegative
+     */
+    private double primalStep() {
+        double step = Double.POSITIVE_INFINITY;
+        for (int k = 0; k < numColumns; k++) {
+            if (dx[k] < 0) {
+                step = Math.min(step, -x[k]/dx[k]);
+            }
+            if (dw[k] < 0) {
+                step = Math.min(step, -w[k]/dw[k]);
+            }
+        }
+        return step;
+    }
+
+    /**
+     * @return the longest step along the dual direction that keeps z and v
+     * nonnegative
+     */
+    private double dualStep() {
+        double step = Double.POSITIVE_INFINITY;
+        for (int k = 0; k < numColumns; k++) {
+            if (dz[k] < 0) {
+                step = Math.min(step, -z[k]/dz[k]);
+            }
+            if (dv[k] < 0) {
+                step = Math.min(step, -v[k]/dv[k]);
+            }
+        }
+        return step;
+    }
+
+    /**
+     * Guesses the optimal basis from the last interior point. A variable is
+     * likely basic if it is far from its bounds compared to its dual
+     * slacks. Free variables always are while fixed variables and the
+     * slacks of equalities are not.
+     * @param basicVariables array to write the m basic variables to
+     * @param values array to write the values of the variables and slacks
+     *               of the standard form at the interior point to
+     */
+    private void guessBasis(int[] basicVariables, double[] values) {
+        double[] score = new double[n + m];
+        for (int j = 0; j < n; j++) {
+            if (standardForm.isFree(j)) {
+                score[j] = Double.POSITIVE_INFINITY;
+            }
+        }
+        for (int k = 0; k < numColumns; k++) {
+            int j = variable[k];
+            values[j] += negative[k] ? -x[k] : x[k];
+            if (j < n && standardForm.isFree(j)) continue;
+            score[j] = x[k]/z[k];
+            if (u[k] != Double.POSITIVE_INFINITY) {
+                score[j] = Math.min(score[j], w[k]/v[k]);
+            }
+        }
+
+        Integer[] order = new Integer[n + m];
+        for (int j = 0; j < n + m; j++) {
+            order[j] = j;
+        }
+        Arrays.sort(order, (j1, j2) -> Double.compare(score[j2], score[j1]));
+        for (int i = 0; i < m; i++) {
+            basicVariables[i] = order[i];
+        }
+    }
+}
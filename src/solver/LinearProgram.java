@@ -2,18 +2,35 @@ package solver;
 
 import java.util.ArrayList;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 public class LinearProgram {
     private final ArrayList<Variable> userVariables;
     private final ArrayList<Constraint> userConstraints;
     private ObjectiveFunction objective;
+    private SolverOptions options;
 
     private Solution currentSolution;
 
+    // The standard form linear program is cached between solves and only
+    // the parts of the model added since the last solve are compiled into
+    // it. Variables and constraints cannot be removed so anything before
+    // numCompiledVariables and numCompiledConstraints is already compiled.
+    private StandardForm compiledForm;
+    private int numCompiledVariables;
+    private int numCompiledConstraints;
+    // Objective function currently written into the cached standard form
+    private ObjectiveFunction compiledObjective;
+    // Presolved, dual and scaled forms derived from the cached standard
+    // form which are dropped whenever an edit is compiled into it
+    private SolvePlan plan;
+    // Variable values of the last solution which the next solve may
+    // overwrite instead of allocating a new array
+    private double[] solutionBuffer;
+
     public LinearProgram() {
         userVariables = new ArrayList<>();
         userConstraints = new ArrayList<>();
+        options = new SolverOptions();
     }
 
     /**
@@ -81,6 +98,19 @@ public class LinearProgram {
         this.objective = objective;
     }
 
+    public SolverOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * Sets the options used to solve the linear program
+     * @param options The solver options to use
+     */
+    public void setOptions(SolverOptions options) {
+        evictCurrentSolution();
+        this.options = options;
+    }
+
     /**
      * The linear program as currently configured may involve variables
      * that do not conform to the rules of standard form. Some variables
@@ -90,71 +120,60 @@ public class LinearProgram {
      * We also create "auxiliary" variables for conforming variables
      * as those will be the new variables used in the standard form
      * representation.
-     * @return The number of variables created for the standard form
-     * representation
+     * @param x The variable to create auxiliary variables for
+     * @param state The standard form linear program being constructed
      */
-    private int addAuxiliaryVariables() {
-        // Start fresh with variables
-        for (Variable x : userVariables) {
-            x.getAuxiliaryVariableIds().clear();
-        }
+    private void addAuxiliaryVariables(Variable x, StandardForm state) {
+        // Start fresh with the variable
+        x.getAuxiliaryVariableIds().clear();
 
-        // Add auxiliary variables
-        int numVariables = 0;
-        for (Variable x : userVariables) {
-            if (Double.isInfinite(x.getLowerBound()) && Double.isInfinite(x.getUpperBound())) {
-                // x is an unbounded variable so assign two auxiliary variables
-                //
-                // x = x1 - x2 where x1, x2 >= 0
-                x.getAuxiliaryVariableIds().add(numVariables);
-                numVariables++;
-                x.getAuxiliaryVariableIds().add(numVariables);
-                numVariables++;
-            } else {
-                // Suppose a, b are real numbers and a < b.
-                // CASE 1:
-                // x has a finite lower bound: a <= x <= b or a <= x
-                // Then,
-                //      0 <= x' <= b - a
-                // or   0 <= x'
-                //
-                //      where x' >= 0 and x' = x - a
-                //
-                // CASE 2:
-                // x has a finite upper bound: x <= b
-                // Then,
-                //      0 <= x'
-                //
-                //      where x' >= 0 and x' = b - x
-                //
-                // In all of the above cases, we can use one auxiliary variable
-
-                x.getAuxiliaryVariableIds().add(numVariables);
-                numVariables++;
-            }
-        }
+        if (Double.isInfinite(x.getLowerBound()) && Double.isInfinite(x.getUpperBound())) {
+            // x is an unbounded variable so assign one free auxiliary
+            // variable which the simplex algorithm handles directly
+            //
+            // x = x' where x' is free
+            x.getAuxiliaryVariableIds().add(state.addVariable());
+        } else {
+            // Suppose a, b are real numbers and a < b.
+            // CASE 1:
+            // x has a finite lower bound: a <= x <= b or a <= x
+            // Then,
+            //      0 <= x' <= b - a
+            // or   0 <= x'
+            //
+            //      where x' >= 0 and x' = x - a
+            //
+            // CASE 2:
+            // x has a finite upper bound: x <= b
+            // Then,
+            //      0 <= x'
+            //
+            //      where x' >= 0 and x' = b - x
+            //
+            // In all of the above cases, we can use one auxiliary variable
 
-        return numVariables;
+            x.getAuxiliaryVariableIds().add(state.addVariable());
+        }
     }
 
     /**
-     * Variables that have a finite lower and finite upper bound require
-     * an auxiliary constraint added into the standard form linear program
-     * to ensure we get a proper solution
+     * Variables that have a finite lower and finite upper bound give their
+     * auxiliary variable an upper bound in the standard form linear
+     * program which the simplex algorithm handles without a constraint.
+     * Unbounded variables make their auxiliary variable free.
+     * @param x The variable whose bounds may need an upper bound
      * @param state Standard form linear program being constructed
      */
-    private void addVariableConstraints(StandardForm state) {
-        for (Variable x : userVariables) {
-            if (Double.isFinite(x.getLowerBound()) && Double.isFinite(x.getUpperBound())) {
-                // a <= x <= b => 0 <= x' <= b - a
-                // where x' = x - a
-                int i = state.addEmptyConstraint();
-                int auxVariableId = x.getAuxiliaryVariableIds().get(0);
-                // x' by construction satisfies the nonnegativity constraint
-                // 0 <= x so we add the other constraint x' <= b - a
-                state.updateA(i, auxVariableId, 1.0);
-                state.b.set(i, x.getUpperBound() - x.getLowerBound());
-            }
+    private void addVariableBound(Variable x, StandardFormSink state) {
+        if (Double.isFinite(x.getLowerBound()) && Double.isFinite(x.getUpperBound())) {
+            // a <= x <= b => 0 <= x' <= b - a
+            // where x' = x - a
+            int auxVariableId = x.getAuxiliaryVariableIds().get(0);
+            // x' by construction satisfies the nonnegativity constraint
+            // 0 <= x so we add the other bound x' <= b - a
+            state.setVariableUpperBound(auxVariableId, x.getUpperBound() - x.getLowerBound());
+        } else if (Double.isInfinite(x.getLowerBound()) && Double.isInfinite(x.getUpperBound())) {
+            state.setVariableFree(x.getAuxiliaryVariableIds().get(0));
         }
     }
 
@@ -170,62 +189,77 @@ public class LinearProgram {
      *          program
      * @param state The standard form linear program being constructed
      */
-    private void addConstraint(Constraint c, StandardForm state) {
+    private void addConstraint(Constraint c, StandardFormSink state) {
         if (c.getRelation() == Relation.LEQ) {
-            // Logic for adding constraint is only added for the <= case
-            int i = state.addEmptyConstraint();
-            state.b.set(i, c.getB());
-
-            for (int k = 0; k < c.getVariables().size(); k++) {
-                Variable x = c.getVariables().get(k);
-                double w = c.getWeights().get(k);
-
-                boolean finiteLowerBound = Double.isFinite(x.getLowerBound());
-                boolean finiteUpperBound = Double.isFinite(x.getUpperBound());
-                // Perform substitution of variable x in terms of auxiliary variables
-                if (finiteLowerBound) {
-                    // a <= x <= b or a <= x
-                    // => x = a + x' where x' >= 0
-                    int auxVariableId = x.getAuxiliaryVariableIds().get(0);
-                    state.updateA(i, auxVariableId, w);
-                    state.b.set(i, state.b.get(i) - w * x.getLowerBound());
-                } else if (finiteUpperBound) {
-                    // x <= b
-                    // => x = b - x' where x' >= 0
-                    int auxVariableId = x.getAuxiliaryVariableIds().get(0);
-                    state.updateA(i, auxVariableId, -w);
-                    state.b.set(i, state.b.get(i) - w * x.getUpperBound());
-                } else {
-                    // x is an unbounded real number
-                    // => x = x1 - x2 where x1, x2 >= 0
-                    int x1 = x.getAuxiliaryVariableIds().get(0);
-                    int x2 = x.getAuxiliaryVariableIds().get(1);
-                    state.updateA(i, x1, w);
-                    state.updateA(i, x2, -w);
-                }
+            addConstraintRow(c, 1, state);
+        } else if (c.getRelation() == Relation.GEQ) {
+            // a * x >= b is the same as -a * x <= -b
+            addConstraintRow(c, -1, state);
+        } else if (c.getRelation() == Relation.EQ) {
+            // = is the same as <= with a range of zero which fixes the
+            // slack variable of the row at zero
+            int i = addConstraintRow(c, 1, state);
+            state.setConstraintRange(i, 0.0);
+        }
+    }
+
+    /**
+     * Adds the <= constraint sign * (a * x) <= sign * b in terms of the
+     * auxiliary variables. Negating the weights as they are written
+     * avoids building a flipped copy of the constraint.
+     * @param c The constraint to be added into the standard form linear
+     *          program
+     * @param sign 1 to add the constraint as is and -1 to add it negated
+     * @param state The standard form linear program being constructed
+     * @return the index of the new constraint
+     */
+    private int addConstraintRow(Constraint c, int sign, StandardFormSink state) {
+        int i = state.addEmptyConstraint();
+        double rhs = sign * c.getB();
+
+        for (int k = 0; k < c.getVariables().size(); k++) {
+            Variable x = c.getVariables().get(k);
+            double w = sign * c.getWeights().get(k);
+
+            boolean finiteLowerBound = Double.isFinite(x.getLowerBound());
+            boolean finiteUpperBound = Double.isFinite(x.getUpperBound());
+            // Perform substitution of variable x in terms of auxiliary variables
+            if (finiteLowerBound) {
+                // a <= x <= b or a <= x
+                // => x = a + x' where x' >= 0
+                int auxVariableId = x.getAuxiliaryVariableIds().get(0);
+                state.setConstraintWeight(i, auxVariableId, w);
+                rhs -= w * x.getLowerBound();
+            } else if (finiteUpperBound) {
+                // x <= b
+                // => x = b - x' where x' >= 0
+                int auxVariableId = x.getAuxiliaryVariableIds().get(0);
+                state.setConstraintWeight(i, auxVariableId, -w);
+                rhs -= w * x.getUpperBound();
+            } else {
+                // x is an unbounded real number
+                // => x = x' where x' is free
+                int auxVariableId = x.getAuxiliaryVariableIds().get(0);
+                state.setConstraintWeight(i, auxVariableId, w);
             }
-        } else {
-            // If the constraint is not using <=, then convert to an equivalent
-            // version.
-            Constraint flippedConstraint = new Constraint(
-                    c.getVariables(),
-                    new ArrayList<>(c.getWeights().stream().map(w -> -w).collect(Collectors.toList())),
-                    Relation.LEQ,
-                    -c.getB()
-            );
-            if (c.getRelation() == Relation.GEQ) {
-                addConstraint(flippedConstraint, state);
-            } else if (c.getRelation() == Relation.EQ) {
-                // = is the same as <= and >=
-                addConstraint(new Constraint(
-                        c.getVariables(),
-                        c.getWeights(),
-                        Relation.LEQ,
-                        c.getB()
-                ), state);
-                addConstraint(flippedConstraint, state);
+        }
+        state.setConstraintBound(i, rhs);
+        return i;
+    }
+
+    /**
+     * Removes an objective function previously written by
+     * addObjectiveFunction() by zeroing the weights it set
+     * @param objective The objective function to remove
+     * @param state The standard form linear program being constructed
+     */
+    private void removeObjectiveFunction(ObjectiveFunction objective, StandardFormSink state) {
+        for (Variable x : objective.getObjectiveVariables()) {
+            for (int auxVariableId : x.getAuxiliaryVariableIds()) {
+                state.setObjectiveWeight(auxVariableId, 0.0);
             }
         }
+        state.setObjectiveConstant(0.0);
     }
 
     /**
@@ -233,8 +267,8 @@ public class LinearProgram {
      * in terms of a maximization and be in terms of nonnegative auxiliary variables
      * @param state The standard form linear program being constructed
      */
-    private void addObjectiveFunction(StandardForm state) {
-        state.objConst = 0;
+    private void addObjectiveFunction(StandardFormSink state) {
+        double objConst = 0;
         // Minimization is the same as negating the objective function and maximizing
         int sign = (objective.getGoal() == ObjectiveGoal.MAXIMIZE) ? 1 : -1;
         for (int i = 0; i < objective.getObjectiveVariables().size(); i++) {
@@ -248,56 +282,234 @@ public class LinearProgram {
                 // a <= x <= b or a <= x
                 // => x = a + x' where x' >= 0
                 int auxVariableId = x.getAuxiliaryVariableIds().get(0);
-                state.c.set(auxVariableId, w);
-                state.objConst += w*x.getLowerBound();
+                state.setObjectiveWeight(auxVariableId, w);
+                objConst += w*x.getLowerBound();
             } else if (finiteUpperBound) {
                 // x <= b
                 // => x = b - x' where x' >= 0
                 int auxVariableId = x.getAuxiliaryVariableIds().get(0);
-                state.c.set(auxVariableId, -w);
-                state.objConst += w*x.getUpperBound();
+                state.setObjectiveWeight(auxVariableId, -w);
+                objConst += w*x.getUpperBound();
             } else {
                 // x is an unbounded real number
-                // => x = x1 - x2 where x1, x2 >= 0
-                int x1 = x.getAuxiliaryVariableIds().get(0);
-                int x2 = x.getAuxiliaryVariableIds().get(1);
-                state.c.set(x1, w);
-                state.c.set(x2, -w);
+                // => x = x' where x' is free
+                int auxVariableId = x.getAuxiliaryVariableIds().get(0);
+                state.setObjectiveWeight(auxVariableId, w);
             }
         }
+        state.setObjectiveConstant(objConst);
     }
 
     /**
-     * Constructs a linear program in standard form
-     * @return A standard form representation of the current linear program
+     * Brings the cached standard form linear program up to date with the
+     * model. Only variables and constraints added since the last call are
+     * compiled and the objective function is only rewritten when it was
+     * replaced so the cost is proportional to the size of the edit.
+     * @return The up to date standard form linear program
      * @exception RuntimeException if there is no objective function set
      */
-    public StandardForm buildStandardForm() {
+    private StandardForm updateStandardForm() {
         if (objective == null) {
             throw new RuntimeException("Objective function must be specified.");
         }
-        // Number of variables needed to represent linear program in standard form
-        int n = addAuxiliaryVariables();
-        StandardForm state = new StandardForm(n);
-        addVariableConstraints(state);
-        for (Constraint c : userConstraints) {
-            addConstraint(c, state);
+        if (compiledForm == null) {
+            compiledForm = new StandardForm(0);
+        }
+        StandardForm state = compiledForm;
+        if (numCompiledVariables < userVariables.size() || numCompiledConstraints < userConstraints.size()
+                || compiledObjective != objective) {
+            plan = null;
+        }
+
+        // New variables become new columns and boxed ones also get an
+        // upper bound
+        for (int i = numCompiledVariables; i < userVariables.size(); i++) {
+            addAuxiliaryVariables(userVariables.get(i), state);
+            addVariableBound(userVariables.get(i), state);
+        }
+        numCompiledVariables = userVariables.size();
+
+        // New constraints are appended after the existing rows
+        for (int i = numCompiledConstraints; i < userConstraints.size(); i++) {
+            addConstraint(userConstraints.get(i), state);
+        }
+        numCompiledConstraints = userConstraints.size();
+
+        if (compiledObjective != objective) {
+            if (compiledObjective != null) {
+                removeObjectiveFunction(compiledObjective, state);
+            }
+            addObjectiveFunction(state);
+            compiledObjective = objective;
         }
-        addObjectiveFunction(state);
 
         return state;
     }
 
+    /**
+     * Constructs a linear program in standard form. The returned linear
+     * program is a copy of the one cached for the solver so modifying it
+     * does not affect later solves and later edits of the model do not
+     * change it.
+     * @return A standard form representation of the current linear program
+     * @exception RuntimeException if there is no objective function set
+     */
+    public StandardForm buildStandardForm() {
+        StandardForm cached = updateStandardForm();
+        StandardForm res = new StandardForm(cached.getNumVariables());
+        cached.writeTo(res);
+        return res;
+    }
+
     /**
      * Solves the linear program
+     * @exception RuntimeException if there is no objective function set
      */
     public void solve() {
-        StandardForm standardForm = buildStandardForm();
-        SimplexState simplexState = new SimplexState(standardForm);
+        StandardForm standardForm = updateStandardForm();
+        // Presolve, the dual form and scaling only depend on the model and
+        // the options so they are redone only when either changed
+        if (plan == null || !plan.isFor(options)) {
+            plan = new SolvePlan(standardForm, options);
+        }
         // This should not be exposed to users as the solution
         // is in terms of auxiliary variables which are meaningless
         // to users.
-        currentSolution = simplexState.solve();
+        double[] buffer = options.isReuseBuffers() ? solutionBuffer : null;
+        Presolve presolve = plan.getPresolve();
+        if (presolve != null) {
+            // The engine solves the reduced linear program whose solution
+            // is mapped back into the buffer. The cached standard form
+            // itself is never reduced.
+            Solution reduced = null;
+            if (presolve.getStatus() == null) {
+                reduced = solvePlan(options.isReuseBuffers() ? plan.getReducedBuffer() : null);
+                if (reduced.getValues() != null) {
+                    plan.setReducedBuffer(reduced.getValues());
+                }
+            }
+            currentSolution = presolve.postsolve(reduced, buffer);
+        } else {
+            currentSolution = solvePlan(buffer);
+        }
+        if (currentSolution.getValues() != null) {
+            solutionBuffer = currentSolution.getValues();
+        }
+    }
+
+    /**
+     * Solves the reduced linear program of the plan, or the cached standard
+     * form if it is not presolved, or its dual if the dual is much smaller
+     * to pivot
+     * @param buffer array to write the variable values of the solution to
+     *               if it is long enough or null to allocate a new one
+     * @return a solution to the linear program
+     */
+    private Solution solvePlan(double[] buffer) {
+        DualForm dualForm = plan.getDualForm();
+        if (dualForm != null) {
+            Solution solution = dualForm.recover(solveWithEngine(plan.getDualEngineForm(), null), buffer);
+            // An infeasible dual does not tell an infeasible linear program
+            // from an unbounded one so the linear program itself is solved
+            if (solution != null) {
+                return solution;
+            }
+        }
+        return solveWithEngine(plan.getPrimalEngineForm(), buffer);
+    }
+
+    /**
+     * Solves a linear program in standard form with the engine chosen by
+     * the options
+     * @param engineForm the linear program to solve
+     * @param buffer array to write the variable values of the solution to
+     *               if it is long enough or null to allocate a new one
+     * @return a solution to the linear program
+     */
+    private Solution solveWithEngine(SolvePlan.EngineForm engineForm, double[] buffer) {
+        // Badly scaled weights are scaled before the engine sees them and
+        // the solution is unscaled afterwards. The cached standard form
+        // itself always stays unscaled.
+        StandardFormScaling scaling = engineForm.getScaling();
+        StandardForm standardForm = engineForm.getStandardForm();
+        Solution solution;
+        if (options.getEngine() == SolverEngine.REVISED || options.getEngine() == SolverEngine.INTERIOR_POINT) {
+            standardForm = engineForm.getScaledForm();
+            if (options.getEngine() == SolverEngine.REVISED) {
+                RevisedSimplex revisedSimplex = new RevisedSimplex(standardForm, options);
+                solution = revisedSimplex.solve(buffer);
+            } else {
+                InteriorPoint interiorPoint = new InteriorPoint(standardForm, options);
+                solution = interiorPoint.solve(buffer);
+            }
+        } else {
+            SolverWorkspace workspace = options.isReuseBuffers() ? SolverWorkspace.acquire() : null;
+            // Pivoting overwrites the slack form so the cached standard form is
+            // streamed into a fresh tableau for every solve
+            try (SimplexState simplexState = newSimplexState(standardForm, scaling, workspace)) {
+                // A dual feasible starting basis lets the dual simplex
+                // algorithm skip the auxiliary linear program
+                if (options.isDualSimplex() && !simplexState.isPrimalFeasible() && simplexState.isDualFeasible()) {
+                    solution = simplexState.solveDual(buffer);
+                } else {
+                    solution = simplexState.solve(buffer);
+                }
+                if (simplexState.hasLostAccuracy()) {
+                    solution = solveFromBasis(engineForm.getScaledForm(), simplexState, buffer);
+                }
+            }
+        }
+        if (scaling != null) {
+            scaling.unscale(solution);
+        }
+        return solution;
+    }
+
+    /**
+     * Finishes a solve the tableau stopped because Bland's rule landed on a
+     * pivot element that is likely round-off. The revised simplex method
+     * factorizes the tableau's basis from the original linear program so
+     * the round-off is gone and carries on from there.
+     * @param standardForm the possibly scaled linear program the tableau
+     *                     was built from
+     * @param simplexState the tableau that lost accuracy
+     * @param buffer array to write the variable values of the solution to
+     *               if it is long enough or null to allocate a new one
+     * @return a solution to the linear program
+     */
+    private Solution solveFromBasis(StandardForm standardForm, SimplexState simplexState, double[] buffer) {
+        RevisedSimplex revisedSimplex = new RevisedSimplex(standardForm, options);
+        int m = standardForm.getNumConstraints();
+        int[] basicVariables = new int[m];
+        double[] values = new double[standardForm.getNumVariables() + m];
+        // A basis still holding the auxiliary variable of the first phase
+        // is no basis of the linear program so the slack basis is used
+        if (simplexState.getBasis(basicVariables, values)) {
+            revisedSimplex.setStartingPoint(basicVariables, values);
+        }
+        Solution solution = revisedSimplex.solve(buffer);
+        solution.getStatistics().setTableauIterations(simplexState.getStatistics().getNumIterations());
+        return solution;
+    }
+
+    /**
+     * Streams the standard form linear program into a fresh slack form
+     * @param standardForm the linear program to solve
+     * @param scaling the scale factors to apply or null to leave the
+     *                linear program unscaled
+     * @param workspace Buffers to build the slack form in or null to
+     *                  allocate new ones
+     * @return the slack form of the possibly scaled linear program
+     */
+    private SimplexState newSimplexState(StandardForm standardForm, StandardFormScaling scaling,
+                                         SolverWorkspace workspace) {
+        if (scaling == null) {
+            return new SimplexState(standardForm, options, workspace);
+        }
+        SimplexState simplexState = new SimplexState(standardForm.getNumVariables(),
+                standardForm.getNumConstraints(), options, workspace);
+        scaling.writeTo(standardForm, simplexState);
+        return simplexState;
     }
 
     /**
@@ -326,25 +538,21 @@ public class LinearProgram {
             // a <= x <= b or a <= x
             // => x = a + x' where x' >= 0
             int aux = x.getAuxiliaryVariableIds().get(0);
-            double auxValue = currentSolution.getSolution().get(aux);
+            double auxValue = currentSolution.getValue(aux);
             double res = x.getLowerBound() + auxValue;
             return Optional.of(res);
         } else if (finiteUpperBound) {
             // x <= b
             // => x = b - x' where x' >= 0
             int aux = x.getAuxiliaryVariableIds().get(0);
-            double auxValue = currentSolution.getSolution().get(aux);
+            double auxValue = currentSolution.getValue(aux);
             double res = x.getUpperBound() - auxValue;
             return Optional.of(res);
         } else {
             // x is an unbounded real number
-            // => x = x1 - x2 where x1, x2 >= 0
-            int x1 = x.getAuxiliaryVariableIds().get(0);
-            int x2 = x.getAuxiliaryVariableIds().get(1);
-            double x1Value = currentSolution.getSolution().get(x1);
-            double x2Value = currentSolution.getSolution().get(x2);
-
-            double res = x1Value - x2Value;
+            // => x = x' where x' is free
+            int aux = x.getAuxiliaryVariableIds().get(0);
+            double res = currentSolution.getValue(aux);
             return Optional.of(res);
         }
     }
@@ -386,4 +594,17 @@ public class LinearProgram {
 
         return currentSolution.getStatus();
     }
+
+    /**
+     * Gets counts of the work done to solve the linear program
+     * @return the statistics of the last solve
+     */
+    public SolverStatistics getStatistics() {
+        // Solve an unsolved linear program
+        if (currentSolution == null) {
+            solve();
+        }
+
+        return currentSolution.getStatistics();
+    }
 }
@@ -0,0 +1,592 @@
+package solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+// This class is for internal use only.
+//
+// Removes rows and columns which the simplex algorithm would otherwise
+// carry through every pivot from a linear program in standard form and
+// maps solutions of the reduced linear program back afterwards.
+//
+// While presolving, column j is bounded by colLo[j] <= x_j <= colHi[j] and
+// row i by rowLo[i] <= a_i * x <= rowHi[i] where any bound may be
+// infinite. The reductions are
+//      - empty rows are dropped or prove infeasibility,
+//      - singleton rows become bounds on their variable,
+//      - duplicate rows, whose weights are a multiple of another row,
+//        are merged into that row,
+//      - fixed variables are substituted into the rows and objective,
+//      - variables in no row are fixed at their best bound,
+//      - finite bounds are tightened to the bounds implied by the rows
+//        and rows which the bounds already satisfy are dropped.
+// They are repeated until they stop finding anything. The remaining
+// columns are shifted onto a lower bound of zero again to form the
+// reduced linear program.
+public class Presolve {
+    // Absolute and relative tolerance for comparing bounds
+    private static final double TOLERANCE = 1e-9;
+    private static final int MAX_PASSES = 16;
+    // Implied bounds are only used if they shrink the range of a variable
+    // by at least this fraction of the bound
+    private static final double MIN_TIGHTENING = 1e-3;
+
+    private final int m;
+    private final int n;
+    private final SparseMatrix A;
+    private final SparseMatrix columns;
+    private final double[] c;
+
+    private final double[] rowLo;
+    private final double[] rowHi;
+    private final double[] colLo;
+    private final double[] colHi;
+    private final boolean[] rowRemoved;
+    private final boolean[] colRemoved;
+    // Number of entries of each row and column which are not removed
+    private final int[] rowCount;
+    private final int[] colCount;
+    // Values of the removed columns
+    private final double[] colValue;
+    private double objConst;
+
+    private boolean infeasible;
+    // Set if a variable in no row improves the objective function without
+    // limit so the linear program is unbounded unless it is infeasible
+    private boolean unboundedRay;
+
+    // Column j of the reduced linear program is x_j = offset[j] + sign[j] * x'_j
+    private final int[] reducedColumn;
+    private final double[] offset;
+    private final double[] sign;
+    private StandardForm reducedForm;
+    private int numRemovedRows;
+    private int numRemovedColumns;
+
+    /**
+     * Presolves a linear program in standard form
+     * @param standardForm the linear program to reduce which is not
+     *                     modified
+     */
+    public Presolve(StandardForm standardForm) {
+        m = standardForm.getNumConstraints();
+        n = standardForm.getNumVariables();
+        A = standardForm.getMatrix();
+        columns = A.transpose();
+        c = new double[n];
+
+        rowLo = new double[m];
+        rowHi = new double[m];
+        for (int i = 0; i < m; i++) {
+            rowHi[i] = standardForm.getB(i);
+            rowLo[i] = rowHi[i] - standardForm.getR(i);
+        }
+        colLo = new double[n];
+        colHi = new double[n];
+        for (int j = 0; j < n; j++) {
+            c[j] = standardForm.getC(j);
+            colLo[j] = standardForm.isFree(j) ? Double.NEGATIVE_INFINITY : 0.0;
+            colHi[j] = standardForm.isFree(j) ? Double.POSITIVE_INFINITY : standardForm.getU(j);
+        }
+        objConst = standardForm.objConst;
+
+        rowRemoved = new boolean[m];
+        colRemoved = new boolean[n];
+        rowCount = new int[m];
+        colCount = new int[n];
+        for (int i = 0; i < m; i++) {
+            rowCount[i] = A.rowEnd(i) - A.rowStart(i);
+        }
+        for (int j = 0; j < n; j++) {
+            colCount[j] = columns.rowEnd(j) - columns.rowStart(j);
+        }
+        colValue = new double[n];
+
+        reducedColumn = new int[n];
+        offset = new double[n];
+        sign = new double[n];
+
+        for (int pass = 0; pass < MAX_PASSES && !infeasible; pass++) {
+            boolean changed = removeFixedColumns();
+            changed |= !infeasible && removeEmptyColumns();
+            changed |= !infeasible && removeSmallRows();
+            changed |= !infeasible && removeDuplicateRows();
+            changed |= !infeasible && tightenBounds();
+            if (!changed) {
+                break;
+            }
+        }
+        if (!infeasible) {
+            buildReducedForm();
+        }
+    }
+
+    /**
+     * @param v a bound
+     * @return the tolerance for comparing against the bound
+     */
+    private static double tolerance(double v) {
+        return TOLERANCE*(1.0 + Math.abs(v));
+    }
+
+    /**
+     * Removes column j by substituting a value for its variable
+     * @param j the column
+     * @param v the value of the variable
+     */
+    private void fixColumn(int j, double v) {
+        colRemoved[j] = true;
+        colValue[j] = v;
+        for (int p = columns.rowStart(j); p < columns.rowEnd(j); p++) {
+            int i = columns.getColumnIndex(p);
+            if (!rowRemoved[i]) {
+                // Subtracting from an infinite bound leaves it infinite
+                rowLo[i] -= columns.getValue(p)*v;
+                rowHi[i] -= columns.getValue(p)*v;
+                rowCount[i]--;
+            }
+        }
+        objConst += c[j]*v;
+    }
+
+    /**
+     * Removes row i from the linear program
+     * @param i the row
+     */
+    private void removeRow(int i) {
+        rowRemoved[i] = true;
+        for (int p = A.rowStart(i); p < A.rowEnd(i); p++) {
+            int j = A.getColumnIndex(p);
+            if (!colRemoved[j]) {
+                colCount[j]--;
+            }
+        }
+    }
+
+    /**
+     * Intersects the bounds of column j with new bounds
+     * @param j the column
+     * @param lo the new lower bound
+     * @param hi the new upper bound
+     */
+    private void restrictColumn(int j, double lo, double hi) {
+        colLo[j] = Math.max(colLo[j], lo);
+        colHi[j] = Math.min(colHi[j], hi);
+        if (colLo[j] > colHi[j] + tolerance(colHi[j])) {
+            infeasible = true;
+        }
+    }
+
+    /**
+     * Substitutes the variables whose bounds are equal
+     * @return true if a column was removed
+     */
+    private boolean removeFixedColumns() {
+        boolean changed = false;
+        for (int j = 0; j < n && !infeasible; j++) {
+            if (colRemoved[j]) {
+                continue;
+            }
+            if (colLo[j] > colHi[j] + tolerance(colHi[j])) {
+                infeasible = true;
+            } else if (Double.isFinite(colLo[j]) && colHi[j] - colLo[j] <= tolerance(colLo[j])) {
+                fixColumn(j, colLo[j]);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Fixes the variables which appear in no row at the bound the
+     * objective function prefers
+     * @return true if a column was removed
+     */
+    private boolean removeEmptyColumns() {
+        boolean changed = false;
+        for (int j = 0; j < n; j++) {
+            if (colRemoved[j] || colCount[j] > 0) {
+                continue;
+            }
+            double best = (c[j] > 0) ? colHi[j] : (c[j] < 0) ? colLo[j] : 0.0;
+            if (Double.isInfinite(best)) {
+                // Any finite value in the bounds does for the rest of the
+                // linear program
+                unboundedRay = true;
+                best = 0.0;
+            }
+            fixColumn(j, Math.min(Math.max(best, colLo[j]), colHi[j]));
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * Drops empty rows and turns singleton rows into bounds on their
+     * variable
+     * @return true if a row was removed
+     */
+    private boolean removeSmallRows() {
+        boolean changed = false;
+        for (int i = 0; i < m && !infeasible; i++) {
+            if (rowRemoved[i] || rowCount[i] > 1) {
+                continue;
+            }
+            if (rowCount[i] == 0) {
+                // 0 must lie within the bounds of the row
+                if (rowLo[i] > tolerance(rowLo[i]) || rowHi[i] < -tolerance(rowHi[i])) {
+                    infeasible = true;
+                }
+            } else {
+                for (int p = A.rowStart(i); p < A.rowEnd(i); p++) {
+                    int j = A.getColumnIndex(p);
+                    if (!colRemoved[j]) {
+                        double a = A.getValue(p);
+                        if (a > 0) {
+                            restrictColumn(j, rowLo[i]/a, rowHi[i]/a);
+                        } else {
+                            restrictColumn(j, rowHi[i]/a, rowLo[i]/a);
+                        }
+                    }
+                }
+            }
+            removeRow(i);
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * Merges every row whose weights are a multiple of the weights of an
+     * earlier row into the earlier row
+     * @return true if a row was removed
+     */
+    private boolean removeDuplicateRows() {
+        boolean changed = false;
+        // Rows are grouped by the columns they use
+        HashMap<Integer, ArrayList<Integer>> rowsByPattern = new HashMap<>();
+        for (int i = 0; i < m && !infeasible; i++) {
+            if (rowRemoved[i]) {
+                continue;
+            }
+            int hash = rowCount[i];
+            for (int p = A.rowStart(i); p < A.rowEnd(i); p++) {
+                if (!colRemoved[A.getColumnIndex(p)]) {
+                    hash = 31*hash + A.getColumnIndex(p);
+                }
+            }
+            ArrayList<Integer> rows = rowsByPattern.computeIfAbsent(hash, h -> new ArrayList<>());
+            boolean merged = false;
+            for (int t = 0; t < rows.size() && !merged; t++) {
+                int k = rows.get(t);
+                double ratio = multiple(k, i);
+                if (ratio != 0) {
+                    // a_i = ratio * a_k so the bounds of row i bound a_k too
+                    double lo = (ratio > 0) ? rowLo[i]/ratio : rowHi[i]/ratio;
+                    double hi = (ratio > 0) ? rowHi[i]/ratio : rowLo[i]/ratio;
+                    rowLo[k] = Math.max(rowLo[k], lo);
+                    rowHi[k] = Math.min(rowHi[k], hi);
+                    if (rowLo[k] > rowHi[k] + tolerance(rowHi[k])) {
+                        infeasible = true;
+                    }
+                    removeRow(i);
+                    merged = true;
+                    changed = true;
+                }
+            }
+            if (!merged) {
+                rows.add(i);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @param k a row
+     * @param i another row
+     * @return the ratio of the weights of row i to the weights of row k
+     * if it is the same for every column that is not removed and 0
+     * otherwise
+     */
+    private double multiple(int k, int i) {
+        if (rowCount[k] != rowCount[i]) {
+            return 0;
+        }
+        double ratio = 0;
+        int q = A.rowStart(k);
+        for (int p = A.rowStart(i); p < A.rowEnd(i); p++) {
+            int j = A.getColumnIndex(p);
+            if (colRemoved[j]) {
+                continue;
+            }
+            while (colRemoved[A.getColumnIndex(q)]) {
+                q++;
+            }
+            if (A.getColumnIndex(q) != j) {
+                return 0;
+            }
+            if (ratio == 0) {
+                ratio = A.getValue(p)/A.getValue(q);
+            } else if (Math.abs(A.getValue(p) - ratio*A.getValue(q)) > TOLERANCE*Math.abs(A.getValue(p))) {
+                return 0;
+            }
+            q++;
+        }
+        return ratio;
+    }
+
+    /**
+     * Compares the range of values each row can take under the bounds of
+     * its variables with the bounds of the row. Rows which can't reach
+     * their bounds prove infeasibility, rows which can't leave them are
+     * dropped and the rest may imply tighter bounds for their variables.
+     * @return true if a row was removed or a bound was tightened
+     */
+    private boolean tightenBounds() {
+        boolean changed = false;
+        for (int i = 0; i < m && !infeasible; i++) {
+            if (rowRemoved[i]) {
+                continue;
+            }
+            // Smallest and largest activity of the row summed over the
+            // finite contributions while counting the infinite ones
+            double minActivity = 0.0;
+            double maxActivity = 0.0;
+            int minInfinite = 0;
+            int maxInfinite = 0;
+            for (int p = A.rowStart(i); p < A.rowEnd(i); p++) {
+                int j = A.getColumnIndex(p);
+                if (colRemoved[j]) {
+                    continue;
+                }
+                double a = A.getValue(p);
+                double lo = a*((a > 0) ? colLo[j] : colHi[j]);
+                double hi = a*((a > 0) ? colHi[j] : colLo[j]);
+                if (Double.isInfinite(lo)) {
+                    minInfinite++;
+                } else {
+                    minActivity += lo;
+                }
+                if (Double.isInfinite(hi)) {
+                    maxInfinite++;
+                } else {
+                    maxActivity += hi;
+                }
+            }
+
+            if ((minInfinite == 0 && minActivity > rowHi[i] + tolerance(rowHi[i]))
+                    || (maxInfinite == 0 && maxActivity < rowLo[i] - tolerance(rowLo[i]))) {
+                infeasible = true;
+                break;
+            }
+            boolean lowerRedundant = rowLo[i] == Double.NEGATIVE_INFINITY
+                    || (minInfinite == 0 && minActivity >= rowLo[i] - tolerance(rowLo[i]));
+            boolean upperRedundant = rowHi[i] == Double.POSITIVE_INFINITY
+                    || (maxInfinite == 0 && maxActivity <= rowHi[i] + tolerance(rowHi[i]));
+            if (lowerRedundant && upperRedundant) {
+                removeRow(i);
+                changed = true;
+                continue;
+            }
+
+            for (int p = A.rowStart(i); p < A.rowEnd(i); p++) {
+                int j = A.getColumnIndex(p);
+                if (colRemoved[j]) {
+                    continue;
+                }
+                double a = A.getValue(p);
+                double lo = a*((a > 0) ? colLo[j] : colHi[j]);
+                double hi = a*((a > 0) ? colHi[j] : colLo[j]);
+                // a * x_j <= rowHi - (smallest activity of the other columns)
+                double upper = Double.POSITIVE_INFINITY;
+                if (rowHi[i] != Double.POSITIVE_INFINITY) {
+                    if (minInfinite == 0) {
+                        upper = rowHi[i] - (minActivity - lo);
+                    } else if (minInfinite == 1 && Double.isInfinite(lo)) {
+                        upper = rowHi[i] - minActivity;
+                    }
+                }
+                // a * x_j >= rowLo - (largest activity of the other columns)
+                double lower = Double.NEGATIVE_INFINITY;
+                if (rowLo[i] != Double.NEGATIVE_INFINITY) {
+                    if (maxInfinite == 0) {
+                        lower = rowLo[i] - (maxActivity - hi);
+                    } else if (maxInfinite == 1 && Double.isInfinite(hi)) {
+                        lower = rowLo[i] - maxActivity;
+                    }
+                }
+                double newLo = (a > 0) ? lower/a : upper/a;
+                double newHi = (a > 0) ? upper/a : lower/a;
+                // Only bounds the variable already has are tightened. Turning
+                // an infinite bound into a large implied one buys nothing
+                // and loses precision in the bound flips through it.
+                if (colLo[j] != Double.NEGATIVE_INFINITY
+                        && newLo > colLo[j] + MIN_TIGHTENING*(1.0 + Math.abs(newLo))) {
+                    colLo[j] = newLo;
+                    changed = true;
+                }
+                if (colHi[j] != Double.POSITIVE_INFINITY
+                        && newHi < colHi[j] - MIN_TIGHTENING*(1.0 + Math.abs(newHi))) {
+                    colHi[j] = newHi;
+                    changed = true;
+                }
+                if (colLo[j] > colHi[j] + tolerance(colHi[j])) {
+                    infeasible = true;
+                    break;
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Writes the rows and columns that are left into a new linear program
+     * in standard form. Each column is shifted onto its finite lower bound
+     * or mirrored onto its finite upper bound and stays free if it has
+     * neither.
+     */
+    private void buildReducedForm() {
+        int numColumns = 0;
+        for (int j = 0; j < n; j++) {
+            reducedColumn[j] = colRemoved[j] ? -1 : numColumns++;
+        }
+        reducedForm = new StandardForm(numColumns);
+        for (int j = 0; j < n; j++) {
+            int col = reducedColumn[j];
+            if (col == -1) {
+                continue;
+            }
+            if (colLo[j] != Double.NEGATIVE_INFINITY) {
+                // x_j = colLo + x' where 0 <= x' <= colHi - colLo
+                offset[j] = colLo[j];
+                sign[j] = 1.0;
+                if (colHi[j] != Double.POSITIVE_INFINITY) {
+                    reducedForm.updateU(col, colHi[j] - colLo[j]);
+                }
+            } else if (colHi[j] != Double.POSITIVE_INFINITY) {
+                // x_j = colHi - x' where 0 <= x'
+                offset[j] = colHi[j];
+                sign[j] = -1.0;
+            } else {
+                offset[j] = 0.0;
+                sign[j] = 1.0;
+                reducedForm.updateFree(col, true);
+            }
+            reducedForm.updateC(col, sign[j]*c[j]);
+            objConst += c[j]*offset[j];
+        }
+        reducedForm.objConst = objConst;
+
+        for (int i = 0; i < m; i++) {
+            if (rowRemoved[i]) {
+                continue;
+            }
+            double shift = 0.0;
+            for (int p = A.rowStart(i); p < A.rowEnd(i); p++) {
+                int j = A.getColumnIndex(p);
+                if (!colRemoved[j]) {
+                    shift += A.getValue(p)*offset[j];
+                }
+            }
+            double lo = rowLo[i] - shift;
+            double hi = rowHi[i] - shift;
+            if (lo == Double.NEGATIVE_INFINITY && hi == Double.POSITIVE_INFINITY) {
+                rowRemoved[i] = true;
+                continue;
+            }
+            // A row without an upper bound is negated into a <= row
+            double rowSign = (hi != Double.POSITIVE_INFINITY) ? 1.0 : -1.0;
+            int row = reducedForm.addEmptyConstraint();
+            for (int p = A.rowStart(i); p < A.rowEnd(i); p++) {
+                int j = A.getColumnIndex(p);
+                if (!colRemoved[j]) {
+                    reducedForm.updateA(row, reducedColumn[j], rowSign*sign[j]*A.getValue(p));
+                }
+            }
+            if (rowSign > 0) {
+                reducedForm.updateB(row, hi);
+                if (lo != Double.NEGATIVE_INFINITY) {
+                    reducedForm.updateR(row, Math.max(hi - lo, 0.0));
+                }
+            } else {
+                reducedForm.updateB(row, -lo);
+            }
+        }
+        numRemovedRows = m - reducedForm.getNumConstraints();
+        numRemovedColumns = n - numColumns;
+    }
+
+    /**
+     * @return the status of the linear program if presolve already
+     * decided it and null if the reduced linear program has to be solved
+     */
+    public SolutionResult getStatus() {
+        if (infeasible) {
+            return SolutionResult.INFEASIBLE;
+        }
+        if (reducedForm.getNumVariables() == 0 && reducedForm.getNumConstraints() == 0) {
+            return unboundedRay ? SolutionResult.UNBOUNDED : SolutionResult.FEASIBLE;
+        }
+        return null;
+    }
+
+    /**
+     * @return the reduced linear program in standard form
+     */
+    public StandardForm getReducedForm() {
+        return reducedForm;
+    }
+
+    /**
+     * @return the number of rows presolve removed
+     */
+    public int getNumRemovedRows() {
+        return numRemovedRows;
+    }
+
+    /**
+     * @return the number of columns presolve removed
+     */
+    public int getNumRemovedColumns() {
+        return numRemovedColumns;
+    }
+
+    /**
+     * Maps a solution of the reduced linear program back to a solution of
+     * the linear program that was presolved
+     * @param reduced a solution of the reduced linear program or null if
+     *                getStatus() already decided the linear program
+     * @param buffer array to write the variable values of the solution to
+     *               if it is long enough or null to allocate a new one
+     * @return a solution of the linear program that was presolved
+     */
+    public Solution postsolve(Solution reduced, double[] buffer) {
+        SolutionResult status = (reduced != null) ? reduced.getStatus() : getStatus();
+        SolverStatistics statistics = (reduced != null) ? reduced.getStatistics() : new SolverStatistics();
+        statistics.setPresolveReductions(numRemovedRows, numRemovedColumns);
+
+        Solution res;
+        if (status == SolutionResult.INFEASIBLE) {
+            res = new Solution(SolutionResult.INFEASIBLE, null, 0.0);
+        } else if (status == SolutionResult.UNBOUNDED || unboundedRay) {
+            res = new Solution(SolutionResult.UNBOUNDED, null, Double.POSITIVE_INFINITY);
+        } else {
+            double[] values = (buffer != null && buffer.length >= n) ? buffer : new double[n];
+            for (int j = 0; j < n; j++) {
+                if (colRemoved[j]) {
+                    values[j] = colValue[j];
+                } else {
+                    // Roundoff may leave a variable a hair outside the
+                    // bounds which presolve already knows it satisfies
+                    double value = offset[j] + sign[j]*reduced.getValue(reducedColumn[j]);
+                    values[j] = Math.min(Math.max(value, colLo[j]), colHi[j]);
+                }
+            }
+            double objectiveValue = (reduced != null) ? reduced.getObjectiveValue() : objConst;
+            res = new Solution(SolutionResult.FEASIBLE, values, n, objectiveValue);
+        }
+        res.setStatistics(statistics);
+        return res;
+    }
+}
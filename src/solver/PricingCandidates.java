@@ -0,0 +1,85 @@
+package solver;
+
+// This class is for internal use only.
+//
+// Short list of the most attractive entering variables found by the last
+// full pricing pass. Multiple pricing picks the entering variables of the
+// following minor iterations from this list, repricing only its entries,
+// until none of them is attractive or the list has been used up.
+public class PricingCandidates {
+    private final int[] vars;
+    private final double[] scores;
+    private int size;
+    private int minorIterations;
+
+    /**
+     * @param capacity the largest number of candidates kept
+     */
+    public PricingCandidates(int capacity) {
+        vars = new int[capacity];
+        scores = new double[capacity];
+    }
+
+    /**
+     * Forgets every candidate before a full pricing pass
+     */
+    public void clear() {
+        size = 0;
+        minorIterations = 0;
+    }
+
+    /**
+     * @return true if a minor iteration may still pick from the list
+     */
+    public boolean hasMinorIteration() {
+        return size > 0 && minorIterations < vars.length - 1;
+    }
+
+    /**
+     * Records that a minor iteration picked its entering variable from the
+     * list
+     */
+    public void addMinorIteration() {
+        minorIterations++;
+    }
+
+    /**
+     * @return the number of candidates in the list
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param t an index into the list
+     * @return the candidate at the index where candidates are sorted from
+     * the highest score
+     */
+    public int get(int t) {
+        return vars[t];
+    }
+
+    /**
+     * Adds a variable to the list if its score is among the highest seen
+     * since the list was cleared. Ties go to the smallest variable.
+     * @param var a variable
+     * @param score the pricing score of the variable
+     */
+    public void offer(int var, double score) {
+        int t = size;
+        while (t > 0 && (scores[t - 1] < score || (scores[t - 1] == score && vars[t - 1] > var))) {
+            t--;
+        }
+        if (t == vars.length) {
+            return;
+        }
+        int last = Math.min(size, vars.length - 1);
+        System.arraycopy(vars, t, vars, t + 1, last - t);
+        System.arraycopy(scores, t, scores, t + 1, last - t);
+        vars[t] = var;
+        scores[t] = score;
+        if (size < vars.length) {
+            size++;
+        }
+    }
+}
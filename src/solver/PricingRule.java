@@ -0,0 +1,14 @@
+package solver;
+
+public enum PricingRule {
+    // First variable with a positive reduced cost by index which never
+    // cycles but needs many pivots
+    BLAND,
+    // Largest reduced cost
+    DANTZIG,
+    // Largest reduced cost relative to approximate edge lengths kept in a
+    // reference framework
+    DEVEX,
+    // Largest reduced cost relative to exact edge lengths
+    STEEPEST_EDGE
+}
@@ -0,0 +1,759 @@
+package solver;
+
+import java.util.Arrays;
+
+// This class is for internal use only.
+//
+// Revised simplex method on a linear program in standard form
+//
+//      maximize c^T x subject to A x + s = b and x, s >= 0
+//
+// Instead of updating a full tableau on every pivot only an LU
+// factorization of the basis is kept. The column of the entering variable
+// is computed on demand by FTRAN (B alpha = a_q) and the reduced costs by
+// BTRAN (y B = c_B) followed by d_j = c_j - y a_j, so an iteration costs
+// time in the number of nonzeros rather than m x n.
+//
+// Variables are numbered like the slack form of SimplexState: the
+// structural variables are 0, ..., n - 1 and the slack of constraint i
+// is n + i. The slacks form the starting basis unless crossover from an
+// interior point supplies another one.
+//
+// Variables may have upper bounds. A nonbasic variable sits at either of
+// its bounds so the ratio test also stops basic variables at their upper
+// bounds and lets the entering variable flip to its other bound without a
+// pivot when that comes first.
+public class RevisedSimplex {
+    // Tolerance for primal feasibility and for positive reduced costs
+    public static final double EPSILON = 0.0000001;
+    // Column entries smaller than this are never chosen as pivots
+    private static final double PIVOT_TOLERANCE = 1e-9;
+    // Amount basic variables may pass their bound by in the Harris ratio
+    // test in exchange for a larger pivot element
+    private static final double FEASIBILITY_TOLERANCE = 1e-9;
+    // Number of pivots in a row that do not move the basic solution after
+    // which entering variables are chosen by Bland's rule until it moves
+    private static final int DEGENERATE_PIVOT_LIMIT = 50;
+
+    private final int m; // number of constraints
+    private final int n; // number of structural variables
+
+    private final SparseMatrix columns; // column j of A is row j
+    private final double[] b;
+    private final double[] c;
+    private final double objConst;
+    private final double[] upper;     // variable -> upper bound
+    private final boolean[] atUpper;  // nonbasic variable -> at upper bound
+    private final boolean[] free;     // variable -> has no bounds at all
+
+    private final int[] basis;      // basis position -> variable
+    private final int[] positionOf; // variable -> basis position or -1
+    private final double[] xB;      // values of the basic variables
+    // Values of the nonbasic variables while crossover pushes them to
+    // their bounds and null once they all sit at a bound
+    private double[] superbasicValues;
+
+    private final BasisFactorization factorization;
+    private final int refactorizationInterval;
+
+    // Edge weights of the variables for Devex and steepest edge pricing
+    // which are null for the other rules. Steepest edge weights are the
+    // squared lengths 1 + ||B^-1 a_j||^2 of the edges updated exactly on
+    // every pivot while Devex weights only approximate them.
+    private final PricingRule pricingRule;
+    private final double[] weights;
+
+    // Partial pricing prices the variables in windows of this size starting
+    // where the last pass stopped and stops after the first window with an
+    // attractive variable. A size of zero prices every variable.
+    private final int pricingWindow;
+    private int pricingStart;
+    // Multiple pricing keeps the best variables of a pass for minor
+    // iterations which only reprice those
+    private final PricingCandidates candidates;
+
+    // Scratch vectors of length m
+    private final double[] alpha;
+    private final double[] y;
+    private final double[] rho;
+    private final double[] tau;
+
+    private SolverStatistics statistics = new SolverStatistics();
+
+    /**
+     * Sets up the revised simplex method on a linear program in standard
+     * form starting from the basis of slack variables
+     * @param standardForm the linear program to solve
+     * @param options Settings controlling how often the basis is
+     *                refactorized
+     */
+    public RevisedSimplex(StandardForm standardForm, SolverOptions options) {
+        m = standardForm.getNumConstraints();
+        n = standardForm.getNumVariables();
+
+        columns = standardForm.getMatrix().transpose();
+        b = new double[m];
+        for (int i = 0; i < m; i++) {
+            b[i] = standardForm.getB(i);
+        }
+        c = new double[n];
+        for (int j = 0; j < n; j++) {
+            c[j] = standardForm.getC(j);
+        }
+        objConst = standardForm.objConst;
+        upper = new double[n + m];
+        for (int j = 0; j < n; j++) {
+            upper[j] = standardForm.getU(j);
+        }
+        for (int i = 0; i < m; i++) {
+            // The range of a constraint bounds its slack variable
+            upper[n + i] = standardForm.getR(i);
+        }
+        atUpper = new boolean[n + m];
+        free = new boolean[n + m];
+        for (int j = 0; j < n; j++) {
+            free[j] = standardForm.isFree(j);
+        }
+
+        basis = new int[m];
+        positionOf = new int[n + m];
+        for (int j = 0; j < n; j++) {
+            positionOf[j] = -1;
+        }
+        for (int i = 0; i < m; i++) {
+            basis[i] = n + i;
+            positionOf[n + i] = i;
+        }
+        xB = new double[m];
+
+        factorization = new BasisFactorization(columns, m);
+        refactorizationInterval = options.getRefactorizationInterval();
+
+        alpha = new double[m];
+        y = new double[m];
+        rho = new double[m];
+        tau = new double[m];
+
+        pricingRule = options.getPricingRule();
+        if (pricingRule == PricingRule.DEVEX || pricingRule == PricingRule.STEEPEST_EDGE) {
+            weights = new double[n + m];
+            Arrays.fill(weights, 1.0);
+            if (pricingRule == PricingRule.STEEPEST_EDGE) {
+                // The slack basis is the identity so every edge is the
+                // column of the constraint matrix
+                for (int j = 0; j < n; j++) {
+                    for (int p = columns.rowStart(j); p < columns.rowEnd(j); p++) {
+                        double v = columns.getValue(p);
+                        weights[j] += v*v;
+                    }
+                }
+            }
+        } else {
+            weights = null;
+        }
+        pricingWindow = options.getPartialPricingWindow();
+        candidates = new PricingCandidates(options.getCandidateListSize());
+    }
+
+    /**
+     * Starts crossover from a point such as the solution of an interior
+     * point method instead of from the basis of slack variables. The
+     * nonbasic variables start at their values in the point and the first
+     * thing the solve does is push those strictly between their bounds to
+     * a bound. Variables that make the basis singular are swapped for slack
+     * variables once it is factorized.
+     * @param basicVariables the m variables to make basic
+     * @param values the values of all variables including the slacks
+     */
+    void setStartingPoint(int[] basicVariables, double[] values) {
+        Arrays.fill(positionOf, -1);
+        for (int i = 0; i < m; i++) {
+            basis[i] = basicVariables[i];
+            positionOf[basicVariables[i]] = i;
+        }
+        superbasicValues = new double[n + m];
+        for (int j = 0; j < n + m; j++) {
+            double value = values[j];
+            // Values within the tolerance of a bound are at the bound
+            if (!free[j]) {
+                if (value <= EPSILON) {
+                    value = 0.0;
+                } else if (value >= upper[j] - EPSILON) {
+                    value = upper[j];
+                }
+            }
+            superbasicValues[j] = value;
+            atUpper[j] = false;
+        }
+        // Edge weights computed for the slack basis do not fit this one
+        if (weights != null) {
+            Arrays.fill(weights, 1.0);
+        }
+    }
+
+    /**
+     * @return counts of the pivots performed by the last solve
+     */
+    public SolverStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Solves the linear program. A first phase minimizes the sum of the
+     * infeasibilities of the basic variables which needs no auxiliary
+     * variable. Entering variables are chosen by the pricing rule of the
+     * solver options and leaving variables by the Harris ratio test.
+     * @return a solution to the linear program
+     */
+    public Solution solve() {
+        return solve(null);
+    }
+
+    /**
+     * Solves the linear program
+     * @param buffer array to write the variable values of the solution to
+     *               if it is long enough or null to allocate a new one
+     * @return a solution to the linear program
+     */
+    public Solution solve(double[] buffer) {
+        statistics = new SolverStatistics();
+        for (int j = 0; j < n + m; j++) {
+            // No value satisfies a negative upper bound
+            if (upper[j] < 0) {
+                return finish(new Solution(SolutionResult.INFEASIBLE, null, 0.0));
+            }
+        }
+        refactorize();
+        if (superbasicValues != null) {
+            pushSuperbasics();
+        }
+        boolean refactorizedForPhaseOne = false;
+        int degeneratePivots = 0;
+        boolean lastPhaseOne = false;
+
+        while (true) {
+            boolean phaseOne = false;
+            for (int i = 0; i < m; i++) {
+                if (infeasibility(i) != 0.0) {
+                    phaseOne = true;
+                    break;
+                }
+            }
+
+            // Simplex multipliers of the current objective. In the first
+            // phase the objective is the sum of the basic variables below
+            // zero minus the sum of those above their upper bound which
+            // increases as they become feasible.
+            for (int i = 0; i < m; i++) {
+                y[i] = phaseOne ? infeasibility(i) : cost(basis[i]);
+            }
+            factorization.btran(y);
+
+            // Candidates of the other phase's objective are stale
+            if (phaseOne != lastPhaseOne) {
+                candidates.clear();
+                lastPhaseOne = phaseOne;
+            }
+
+            // Bland's rule enters the smallest variable whose reduced cost
+            // improves the objective while the other rules enter the one
+            // with the largest squared reduced cost per weight
+            boolean bland = pricingRule == PricingRule.BLAND || degeneratePivots >= DEGENERATE_PIVOT_LIMIT;
+            int q = -1;
+            if (bland) {
+                for (int j = 0; j < n + m; j++) {
+                    if (positionOf[j] == -1 && gain(j, reducedCost(j, phaseOne)) > EPSILON) {
+                        q = j;
+                        break;
+                    }
+                }
+            } else {
+                q = price(phaseOne);
+            }
+            if (q == -1) {
+                if (phaseOne) {
+                    return finish(new Solution(SolutionResult.INFEASIBLE, null, 0.0));
+                }
+                break;
+            }
+
+            // The entering variable increases from its lower bound or
+            // decreases from its upper bound. A free variable moves in
+            // whichever direction improves the objective.
+            loadColumn(q, alpha);
+            factorization.ftran(alpha);
+            double direction;
+            if (free[q]) {
+                direction = Math.signum(reducedCost(q, phaseOne));
+            } else {
+                direction = atUpper[q] ? -1.0 : 1.0;
+            }
+
+            // Find the leaving variable as the first basic variable to hit
+            // a bound. In the first phase infeasible basic variables
+            // block once they reach the bound they violate.
+            int r = -1;
+            double theta = Double.POSITIVE_INFINITY;
+            if (bland) {
+                for (int i = 0; i < m; i++) {
+                    double t = blockingStep(i, direction, 0.0);
+                    // Ties go to the smallest basic variable for Bland's rule
+                    if (t < theta || (t == theta && t != Double.POSITIVE_INFINITY && basis[i] < basis[r])) {
+                        r = i;
+                        theta = t;
+                    }
+                }
+                if (upper[q] <= theta) {
+                    r = -1;
+                    theta = upper[q];
+                }
+            } else {
+                // Harris ratio test: the first pass finds the largest step
+                // that keeps every basic variable within the feasibility
+                // tolerance of its bounds and the second pass picks the
+                // largest pivot element among the variables blocking within
+                // that step. Ties go to the smallest basic variable.
+                double maxStep = Double.POSITIVE_INFINITY;
+                for (int i = 0; i < m; i++) {
+                    maxStep = Math.min(maxStep, blockingStep(i, direction, FEASIBILITY_TOLERANCE));
+                }
+                if (upper[q] <= maxStep) {
+                    theta = upper[q];
+                } else {
+                    for (int i = 0; i < m; i++) {
+                        double t = blockingStep(i, direction, 0.0);
+                        if (t <= maxStep && (r == -1 || Math.abs(alpha[i]) > Math.abs(alpha[r])
+                                || (Math.abs(alpha[i]) == Math.abs(alpha[r]) && basis[i] < basis[r]))) {
+                            r = i;
+                            theta = t;
+                        }
+                    }
+                }
+            }
+            if (r == -1 && theta == Double.POSITIVE_INFINITY) {
+                if (!phaseOne) {
+                    return finish(new Solution(SolutionResult.UNBOUNDED, null, Double.POSITIVE_INFINITY));
+                }
+                // The sum of infeasibilities is bounded above by zero so
+                // this is round-off in the factorization
+                if (refactorizedForPhaseOne) {
+                    return finish(new Solution(SolutionResult.INFEASIBLE, null, 0.0));
+                }
+                refactorizedForPhaseOne = true;
+                refactorize();
+                continue;
+            }
+            refactorizedForPhaseOne = false;
+            degeneratePivots = (theta < EPSILON) ? degeneratePivots + 1 : 0;
+
+            if (r == -1) {
+                // The entering variable reaches its other bound first so it
+                // flips to it and the basis stays the same
+                for (int i = 0; i < m; i++) {
+                    xB[i] -= direction * theta * alpha[i];
+                }
+                atUpper[q] = !atUpper[q];
+                statistics.addBoundFlip();
+                continue;
+            }
+
+            if (weights != null) {
+                updateWeights(q, r);
+            }
+            if (bland && pricingRule != PricingRule.BLAND) {
+                statistics.addBlandIteration();
+            }
+
+            // Move to the adjacent basic solution
+            boolean leavesAtUpper = leavesAtUpper(r, direction);
+            for (int i = 0; i < m; i++) {
+                xB[i] -= direction * theta * alpha[i];
+            }
+            xB[r] = nonbasicValue(q) + direction * theta;
+            atUpper[q] = false;
+            atUpper[basis[r]] = leavesAtUpper;
+            positionOf[basis[r]] = -1;
+            basis[r] = q;
+            positionOf[q] = r;
+            statistics.addIteration(phaseOne);
+
+            if (factorization.getNumUpdates() + 1 >= refactorizationInterval) {
+                refactorize();
+            } else {
+                factorization.update(r, alpha);
+            }
+        }
+
+        // Optimal solution is the basic solution
+        double[] solution = (buffer != null && buffer.length >= n + m) ? buffer : new double[n + m];
+        double objectiveValue = objConst;
+        for (int j = 0; j < n + m; j++) {
+            solution[j] = (positionOf[j] != -1) ? xB[positionOf[j]] : nonbasicValue(j);
+            objectiveValue += cost(j) * solution[j];
+        }
+        Solution res = new Solution(SolutionResult.FEASIBLE, solution, n + m, objectiveValue);
+        // The simplex multipliers of the optimal basis are the duals
+        res.setDuals(Arrays.copyOf(y, m));
+        return finish(res);
+    }
+
+    /**
+     * Computes how far the entering variable whose column is in alpha can
+     * move before a basic variable blocks it
+     * @param i a basis position
+     * @param direction 1 if the entering variable increases and -1 if it
+     *                  decreases
+     * @param slack amount the basic variable may pass its bound by
+     * @return the step at which the basic variable blocks or positive
+     * infinity if it never does
+     */
+    private double blockingStep(int i, double direction, double slack) {
+        // Free variables never leave the basis once they enter it
+        if (free[basis[i]]) {
+            return Double.POSITIVE_INFINITY;
+        }
+        // The basic variable decreases by this much per unit of step
+        double rate = direction * alpha[i];
+        double u = upper[basis[i]];
+        if (rate > PIVOT_TOLERANCE) {
+            if (xB[i] > u + EPSILON) {
+                return (xB[i] - u + slack) / rate;
+            } else if (xB[i] >= -EPSILON) {
+                return (Math.max(xB[i], 0.0) + slack) / rate;
+            }
+        } else if (rate < -PIVOT_TOLERANCE) {
+            if (xB[i] < -EPSILON) {
+                return (xB[i] - slack) / rate;
+            } else if (u != Double.POSITIVE_INFINITY && xB[i] <= u + EPSILON) {
+                return (Math.max(u - xB[i], 0.0) + slack) / -rate;
+            }
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @param r the basis position of the leaving variable
+     * @param direction 1 if the entering variable increases and -1 if it
+     *                  decreases
+     * @return true if the leaving variable is blocked at its upper bound
+     * and false if it is blocked at zero
+     */
+    private boolean leavesAtUpper(int r, double direction) {
+        if (direction * alpha[r] > 0) {
+            return xB[r] > upper[basis[r]] + EPSILON;
+        }
+        return xB[r] >= -EPSILON;
+    }
+
+    /**
+     * @param j a nonbasic variable
+     * @return the value of the variable at the bound it sits at or its
+     * value during crossover
+     */
+    private double nonbasicValue(int j) {
+        if (superbasicValues != null) {
+            return superbasicValues[j];
+        }
+        return atUpper[j] ? upper[j] : 0.0;
+    }
+
+    /**
+     * @param j a nonbasic variable
+     * @param d the reduced cost of the variable
+     * @return how much the objective increases per unit the variable moves
+     * away from its bound
+     */
+    private double gain(int j, double d) {
+        if (free[j]) {
+            return Math.abs(d);
+        }
+        return atUpper[j] ? -d : d;
+    }
+
+    /**
+     * @param i a basis position
+     * @return the weight of the basic variable in the first phase
+     * objective which is 1 below zero, -1 above its upper bound and 0
+     * otherwise or if the variable is free
+     */
+    private double infeasibility(int i) {
+        if (free[basis[i]]) {
+            return 0.0;
+        } else if (xB[i] < -EPSILON) {
+            return 1.0;
+        } else if (xB[i] > upper[basis[i]] + EPSILON) {
+            return -1.0;
+        }
+        return 0.0;
+    }
+
+    /**
+     * Pushes every superbasic variable, a nonbasic variable strictly
+     * between its bounds, to one of them while the basic variables stay
+     * within theirs. A variable moves towards the bound that improves the
+     * objective and enters the basis in place of the first basic variable
+     * blocking it. A feasible starting point thus gives a feasible basis
+     * which the simplex method only has to make optimal.
+     */
+    private void pushSuperbasics() {
+        boolean pricesStale = true;
+        // Refactorizing may swap basic variables for slack variables which
+        // leaves them superbasic for the second pass
+        for (int pass = 0; pass < 2; pass++) {
+            for (int q = 0; q < n + m; q++) {
+                double value = superbasicValues[q];
+                if (positionOf[q] != -1 || value == 0.0 || (!free[q] && value == upper[q])) continue;
+                if (pricesStale) {
+                    for (int i = 0; i < m; i++) {
+                        y[i] = cost(basis[i]);
+                    }
+                    factorization.btran(y);
+                    pricesStale = false;
+                }
+                // Free variables move towards zero like the other variables
+                // without an upper bound
+                double d = reducedCost(q, false);
+                double target = (!free[q] && d > 0 && upper[q] != Double.POSITIVE_INFINITY) ? upper[q] : 0.0;
+                double direction = (target > value) ? 1.0 : -1.0;
+                loadColumn(q, alpha);
+                factorization.ftran(alpha);
+
+                int r = -1;
+                double theta = Math.abs(target - value);
+                for (int i = 0; i < m; i++) {
+                    double t = blockingStep(i, direction, 0.0);
+                    if (t < theta || (t == theta && r != -1 && Math.abs(alpha[i]) > Math.abs(alpha[r]))) {
+                        r = i;
+                        theta = t;
+                    }
+                }
+                boolean leavesAtUpper = (r != -1) && leavesAtUpper(r, direction);
+                for (int i = 0; i < m; i++) {
+                    xB[i] -= direction * theta * alpha[i];
+                }
+                if (r == -1) {
+                    superbasicValues[q] = target;
+                    continue;
+                }
+
+                int leaving = basis[r];
+                xB[r] = value + direction * theta;
+                superbasicValues[leaving] = leavesAtUpper ? upper[leaving] : 0.0;
+                positionOf[leaving] = -1;
+                basis[r] = q;
+                positionOf[q] = r;
+                statistics.addIteration(false);
+                pricesStale = true;
+
+                if (factorization.getNumUpdates() + 1 >= refactorizationInterval) {
+                    refactorize();
+                } else {
+                    factorization.update(r, alpha);
+                }
+            }
+        }
+
+        // Round-off may leave a few superbasic variables which go to their
+        // nearest bound and the first phase repairs what that breaks
+        for (int j = 0; j < n + m; j++) {
+            if (positionOf[j] == -1) {
+                atUpper[j] = !free[j] && upper[j] != Double.POSITIVE_INFINITY
+                        && superbasicValues[j] > 0.5 * upper[j];
+            }
+        }
+        superbasicValues = null;
+        refactorize();
+    }
+
+    /**
+     * Chooses the entering variable by the pricing rule. Minor iterations
+     * of multiple pricing only reprice the candidates of the last pass.
+     * Otherwise the variables are priced window by window for partial
+     * pricing.
+     * @param phaseOne whether the first phase objective is priced
+     * @return the entering variable or -1 if no nonbasic variable can
+     * improve the objective
+     */
+    private int price(boolean phaseOne) {
+        if (candidates.hasMinorIteration()) {
+            int q = -1;
+            double bestScore = 0.0;
+            for (int t = 0; t < candidates.size(); t++) {
+                int j = candidates.get(t);
+                if (positionOf[j] != -1) continue;
+                double d = reducedCost(j, phaseOne);
+                if (gain(j, d) <= EPSILON) continue;
+                double score = score(j, d);
+                if (q == -1 || score > bestScore || (score == bestScore && j < q)) {
+                    q = j;
+                    bestScore = score;
+                }
+            }
+            if (q != -1) {
+                candidates.addMinorIteration();
+                return q;
+            }
+        }
+
+        candidates.clear();
+        int numVars = n + m;
+        int window = (pricingWindow > 0) ? pricingWindow : numVars;
+        int start = (pricingStart < numVars) ? pricingStart : 0;
+        for (int scanned = 0; scanned < numVars && candidates.size() == 0; ) {
+            int end = Math.min(Math.min(start + window, numVars), start + numVars - scanned);
+            for (int j = start; j < end; j++) {
+                if (positionOf[j] != -1) continue;
+                double d = reducedCost(j, phaseOne);
+                if (gain(j, d) > EPSILON) {
+                    candidates.offer(j, score(j, d));
+                }
+            }
+            scanned += end - start;
+            start = (end == numVars) ? 0 : end;
+        }
+        pricingStart = start;
+        return (candidates.size() == 0) ? -1 : candidates.get(0);
+    }
+
+    /**
+     * @param j a nonbasic variable
+     * @param phaseOne whether the first phase objective is priced
+     * @return the reduced cost of the variable for the simplex multipliers
+     * in y
+     */
+    private double reducedCost(int j, boolean phaseOne) {
+        return (phaseOne ? 0.0 : cost(j)) - dot(y, j);
+    }
+
+    /**
+     * @param j a nonbasic variable
+     * @param d the reduced cost of the variable
+     * @return the squared reduced cost divided by the weight of the variable
+     */
+    private double score(int j, double d) {
+        return d*d / ((weights == null) ? 1.0 : weights[j]);
+    }
+
+    /**
+     * Updates the edge weights for the entering variable replacing the
+     * basic variable at a position. Needs the column of the entering
+     * variable in alpha and the basis before the change.
+     * @param q the entering variable
+     * @param r the basis position of the leaving variable
+     */
+    private void updateWeights(int q, int r) {
+        // Row r of the tableau is rho A with rho the row of the inverse
+        Arrays.fill(rho, 0.0);
+        rho[r] = 1.0;
+        factorization.btran(rho);
+        double pivot = alpha[r];
+        double weightQ;
+        if (pricingRule == PricingRule.STEEPEST_EDGE) {
+            weightQ = 1.0;
+            for (int i = 0; i < m; i++) {
+                weightQ += alpha[i]*alpha[i];
+            }
+            System.arraycopy(alpha, 0, tau, 0, m);
+            factorization.btran(tau);
+        } else {
+            weightQ = weights[q];
+        }
+
+        for (int j = 0; j < n + m; j++) {
+            if (positionOf[j] != -1 || j == q) continue;
+            double ratio = dot(rho, j) / pivot;
+            if (ratio == 0.0) continue;
+            if (pricingRule == PricingRule.STEEPEST_EDGE) {
+                double w = weights[j] - 2.0*ratio*dot(tau, j) + ratio*ratio*weightQ;
+                weights[j] = Math.max(w, 1.0 + ratio*ratio);
+            } else {
+                weights[j] = Math.max(weights[j], ratio*ratio*weightQ);
+            }
+        }
+        weights[basis[r]] = Math.max(weightQ / (pivot*pivot), 1.0);
+    }
+
+    /**
+     * Factorizes the basis from scratch and recomputes the values of the
+     * basic variables from it which also clears accumulated round-off.
+     * Basic variables that make the basis singular are swapped out for
+     * slack variables and leave at zero.
+     */
+    private void refactorize() {
+        int position = factorization.factorize(basis);
+        while (position != -1) {
+            int row = factorization.findUnpivotedRow(positionOf, n);
+            positionOf[basis[position]] = -1;
+            atUpper[basis[position]] = false;
+            basis[position] = n + row;
+            positionOf[n + row] = position;
+            position = factorization.factorize(basis);
+        }
+        // B xB = b - sum of the columns of nonbasic variables away from
+        // zero times their values
+        System.arraycopy(b, 0, xB, 0, m);
+        for (int j = 0; j < n + m; j++) {
+            if (positionOf[j] != -1) continue;
+            double value = nonbasicValue(j);
+            if (value == 0.0) continue;
+            if (j >= n) {
+                xB[j - n] -= value;
+                continue;
+            }
+            for (int p = columns.rowStart(j); p < columns.rowEnd(j); p++) {
+                xB[columns.getColumnIndex(p)] -= value * columns.getValue(p);
+            }
+        }
+        factorization.ftran(xB);
+    }
+
+    /**
+     * Attaches the statistics of this solve to its solution
+     * @param solution the solution found
+     * @return the solution
+     */
+    private Solution finish(Solution solution) {
+        solution.setStatistics(statistics);
+        return solution;
+    }
+
+    /**
+     * @param j a variable
+     * @return the weight of the variable in the objective function
+     */
+    private double cost(int j) {
+        return (j < n) ? c[j] : 0.0;
+    }
+
+    /**
+     * @param y a vector indexed by constraint
+     * @param j a variable
+     * @return the dot product of y with the column of the variable
+     */
+    private double dot(double[] y, int j) {
+        if (j >= n) {
+            return y[j - n];
+        }
+        double res = 0.0;
+        for (int p = columns.rowStart(j); p < columns.rowEnd(j); p++) {
+            res += y[columns.getColumnIndex(p)] * columns.getValue(p);
+        }
+        return res;
+    }
+
+    /**
+     * Writes the column of a variable in the constraint matrix
+     * @param j a variable
+     * @param dst a vector indexed by constraint
+     */
+    private void loadColumn(int j, double[] dst) {
+        Arrays.fill(dst, 0.0);
+        if (j >= n) {
+            dst[j - n] = 1.0;
+            return;
+        }
+        for (int p = columns.rowStart(j); p < columns.rowEnd(j); p++) {
+            dst[columns.getColumnIndex(p)] = columns.getValue(p);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package solver;
+
+// This class is for internal use only.
+//
+// Dense loops over rows and columns of the tableau that dominate the time
+// spent per pivot. When the solver.vectorKernels system property is true
+// and the jdk.incubator.vector module is available the loops run on SIMD
+// lanes through VectorKernels and otherwise fall back to plain scalar loops.
+//
+// The SIMD loops are opt-in because the Vector API runs far slower than
+// scalar code until the JIT has compiled it. That warm-up only pays off on
+// large dense tableaus: a solve of an 800 x 800 dense linear program is
+// about twice as fast on SIMD lanes, while the first max flow of the
+// stress test is about four times slower and later ones are still a bit
+// slower since its sparse pricing scans stop after a few entries.
+//
+// VectorKernels lives in the optional src-incubator source set which is
+// only compiled with the incubator module, so it is looked up by name
+// instead of referenced. Without the class or the module at run time the
+// scalar loops are used.
+public class RowKernels {
+    /**
+     * SIMD versions of the kernels which must produce the same results as
+     * the scalar loops
+     */
+    public interface Simd {
+        void axpy(double[] dst, int dstOffset, double[] src, int srcOffset, int len,
+                  double factor, double zeroTolerance);
+
+        void divide(double[] row, int len, double divisor, double zeroTolerance);
+
+        int nextAbove(double[] values, int from, int len, double threshold);
+
+        double minRatio(double[] numerators, double[] denominators, int len, double tolerance, double slack);
+    }
+
+    private static final Simd SIMD = loadSimd();
+
+    // Whether the kernels run on SIMD lanes
+    public static final boolean VECTORIZED = SIMD != null;
+
+    // Rows shorter than this are not worth setting up vector loops for
+    private static final int MIN_VECTOR_LENGTH = 16;
+
+    /**
+     * @return the SIMD kernels or null if they were not asked for or the
+     * incubator module or VectorKernels is missing
+     */
+    private static Simd loadSimd() {
+        if (!Boolean.getBoolean("solver.vectorKernels")
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            return (Simd) Class.forName("solver.VectorKernels").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Computes dst[dstOffset + j] = dst[dstOffset + j] - factor*src[srcOffset + j]
+     * for all j in [0, len) and flushes results with magnitude below
+     * zeroTolerance to zero
+     * @param dst array holding the row to update
+     * @param dstOffset offset of the first entry to update
+     * @param src array holding the row to subtract
+     * @param srcOffset offset of the first entry to subtract
+     * @param len the number of entries
+     * @param factor multiple of src to subtract
+     * @param zeroTolerance magnitude below which results become zero
+     */
+    public static void axpy(double[] dst, int dstOffset, double[] src, int srcOffset, int len,
+                            double factor, double zeroTolerance) {
+        if (VECTORIZED && len >= MIN_VECTOR_LENGTH) {
+            SIMD.axpy(dst, dstOffset, src, srcOffset, len, factor, zeroTolerance);
+            return;
+        }
+        for (int j = 0; j < len; j++) {
+            double v = dst[dstOffset + j] - factor*src[srcOffset + j];
+            dst[dstOffset + j] = (Math.abs(v) < zeroTolerance) ? 0.0 : v;
+        }
+    }
+
+    /**
+     * Divides the first len entries of row by divisor and flushes results
+     * with magnitude below zeroTolerance to zero
+     * @param row the row to scale
+     * @param len the number of entries
+     * @param divisor the value to divide by
+     * @param zeroTolerance magnitude below which results become zero
+     */
+    public static void divide(double[] row, int len, double divisor, double zeroTolerance) {
+        if (VECTORIZED && len >= MIN_VECTOR_LENGTH) {
+            SIMD.divide(row, len, divisor, zeroTolerance);
+            return;
+        }
+        for (int j = 0; j < len; j++) {
+            double v = row[j] / divisor;
+            row[j] = (Math.abs(v) < zeroTolerance) ? 0.0 : v;
+        }
+    }
+
+    /**
+     * Finds the next entry above a threshold
+     * @param values the entries to search
+     * @param from the first index to look at
+     * @param len one past the last index to look at
+     * @param threshold the value entries must exceed
+     * @return the smallest index j in [from, len) with values[j] > threshold
+     * or -1 if there is none
+     */
+    public static int nextAbove(double[] values, int from, int len, double threshold) {
+        if (VECTORIZED && len - from >= MIN_VECTOR_LENGTH) {
+            return SIMD.nextAbove(values, from, len, threshold);
+        }
+        for (int j = from; j < len; j++) {
+            if (values[j] > threshold) {
+                return j;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Computes the smallest ratio (max(numerators[i], 0) + slack) /
+     * denominators[i] over the entries with a denominator above a
+     * tolerance. This is the first pass of the Harris ratio test where the
+     * slack lets the numerators become slightly negative.
+     * @param numerators the numerators
+     * @param denominators the denominators
+     * @param len the number of entries
+     * @param tolerance denominators at most this large are skipped
+     * @param slack amount added to every numerator
+     * @return the smallest ratio or positive infinity if no denominator is
+     * above the tolerance
+     */
+    public static double minRatio(double[] numerators, double[] denominators, int len, double tolerance, double slack) {
+        if (VECTORIZED && len >= MIN_VECTOR_LENGTH) {
+            return SIMD.minRatio(numerators, denominators, len, tolerance, slack);
+        }
+        double res = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < len; i++) {
+            if (denominators[i] > tolerance) {
+                res = Math.min(res, (Math.max(numerators[i], 0.0) + slack) / denominators[i]);
+            }
+        }
+        return res;
+    }
+}
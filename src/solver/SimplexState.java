@@ -1,26 +1,162 @@
 package solver;
 
 import java.util.ArrayList;
-import java.util.TreeSet;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /*
 All references to "CLRS" refers to:
 Introduction to Algorithms Third Edition by Cormen, Leiserson, Rivest, and Stein
  */
-public class SimplexState {
+public class SimplexState implements StandardFormSink, AutoCloseable {
     private static final double EPSILON = 0.0000001;
+    // Values produced by a pivot smaller than this in magnitude are
+    // flushed to zero to limit fill-in from round off
+    private static final double ZERO_TOLERANCE = 1e-12;
+    // The pivot row is iterated as a packed list of nonzeros when at most
+    // this fraction of its entries are nonzero and as a dense row otherwise
+    private static final double SPARSE_ROW_DENSITY = 0.3;
+    // Number of columns of the pivot row applied to a block of rows at a
+    // time so the slice of the pivot row stays in cache
+    private static final int COLUMN_TILE = 1024;
+    // A parallel pivot does not split blocks with fewer rows than this
+    private static final int MIN_PARALLEL_ROWS = 16;
+    // Number of pivots in a row that do not increase the objective function
+    // after which entering variables are chosen by Bland's rule until the
+    // objective function increases again so that pivoting cannot cycle
+    private static final int DEGENERATE_PIVOT_LIMIT = 50;
+    // Weights of the entering variable at most this large are never chosen
+    // as pivot elements
+    private static final double PIVOT_TOLERANCE = 1e-9;
+    // Amount basic variables may become negative by in the Harris ratio
+    // test in exchange for a larger pivot element
+    private static final double FEASIBILITY_TOLERANCE = 1e-9;
+    // A pivot element of Bland's rule smaller than this fraction of the
+    // largest entry of its column is taken for round-off
+    private static final double UNSTABLE_PIVOT_RATIO = 1e-7;
+    // A crash pivot element must be at least this fraction of the largest
+    // weight in its column
+    private static final double CRASH_PIVOT_RATIO = 0.1;
+    // Size of the anti-degeneracy perturbations relative to the value
+    // perturbed. Each perturbation is between one and two times this.
+    private static final double PERTURBATION = 1e-6;
+    // Results of the primal ratio test other than a leaving row
+    private static final int UNBOUNDED_STEP = -1;
+    private static final int BOUND_FLIP = -2;
 
-    // Let n be the number of variables (basic + nonbasic variables)
+    // Let n be the number of variables (basic + nonbasic variables),
+    // m be the number of basic variables (one per constraint) and
+    // k = n - m be the number of nonbasic variables
     private int n;
+    private final int m;
+    private final int k;
+    // Row stride of the flattened A matrix. One extra column is
+    // reserved for the auxiliary variable of initializeSimplex() so
+    // the tableau never has to be reallocated while solving.
+    private final int stride;
 
-    public ArrayList<ArrayList<Double>> A; // n x n matrix
-    public ArrayList<Double> b; // n vector
-    public ArrayList<Double> c; // n vector
+    // The tableau only stores the m constraint rows over the k nonbasic
+    // columns. Row r holds the equation of the basic variable basicVars[r]
+    // and column q holds the weights of the nonbasic variable nonBasicVars[q]
+    // so the slack form reads
+    //      x_basicVars[r] = b[r] - sum_q A[r][q] x_nonBasicVars[q]
+    private final TableauStorage A; // m x k matrix stored row-major with stride stride
+    private final double[] b; // m vector indexed by row
+    private final double[] c; // k vector indexed by column
     private double objConst;
 
-    // Set of nonbasic and basic variables
-    private final TreeSet<Integer> nonBasic;
-    private final TreeSet<Integer> basic;
+    // The original objective function while initializeSimplex() solves the
+    // auxiliary linear program. Every pivot and complement of the first
+    // phase is applied to it as well so that it is already in terms of the
+    // final nonbasic variables when the first phase ends, like the
+    // auxiliary variable's column it is allocated once up front.
+    private final double[] phaseTwoC; // k vector indexed by column
+    private double phaseTwoObjConst;
+
+    // Basis header mapping rows to basic variables and columns to nonbasic
+    // variables along with the inverse maps from a variable to its row or
+    // column. A variable has row -1 if it is nonbasic and column -1 if it
+    // is basic.
+    private final int[] basicVars;
+    private final int[] nonBasicVars;
+    private final int[] rowOf;
+    private final int[] colOf;
+
+    // Upper bounds indexed by variable which are positive infinity for
+    // variables without one. A variable moved to its upper bound is
+    // complemented: it is replaced by u - x so that every nonbasic
+    // variable still sits at zero and every basic variable must stay
+    // between zero and its upper bound. complemented[j] is 1 while
+    // variable j is replaced and 0 otherwise.
+    private final double[] upperBounds;
+    private final int[] complemented;
+    private boolean hasUpperBounds;
+
+    // Free variables have no bounds at all. A nonbasic free variable sits
+    // at zero and is complemented with respect to zero, that is negated,
+    // whenever decreasing it improves the objective function. A basic free
+    // variable never leaves so its row never limits the ratio test.
+    // free[j] is 1 if variable j is free and 0 otherwise.
+    private final int[] free;
+    private boolean hasFreeVariables;
+
+    // Heap copy of the pivot row along with a packed copy of its nonzero
+    // entries used by pivot() and a heap copy of the entering variable's
+    // column used by the ratio test
+    private final double[] pivotRow;
+    private final double[] pivotCol;
+    private final int[] pivotCols;
+    private final double[] pivotVals;
+
+    // Thread pool for the row updates of large pivots which is null when
+    // pivots always run on the calling thread
+    private final ForkJoinPool pivotPool;
+    private final long parallelPivotThreshold;
+
+    // Buffers borrowed from the current thread which are null when this
+    // linear program allocated its own
+    private final SolverWorkspace workspace;
+
+    // Number of constraints received through addEmptyConstraint()
+    private int numLoadedConstraints;
+
+    // Rule choosing the entering variable along with its edge weights.
+    // Devex weights are indexed by variable and are null for other rules.
+    // Steepest edge weights are the squared norms of the columns which are
+    // recomputed after each pivot.
+    private final PricingRule pricingRule;
+    private double[] devexWeights;
+    private double[] columnNorms;
+    private boolean columnNormsStale;
+
+    // Partial pricing scans the columns in windows of this size starting
+    // where the last scan stopped and stops after the first window with an
+    // attractive column. A size of zero scans every column.
+    private final int pricingWindow;
+    private int pricingStart;
+    // Multiple pricing keeps the best columns of a scan for minor iterations
+    private final PricingCandidates candidates;
+
+    private final SolverStatistics statistics = new SolverStatistics();
+    private boolean phaseOne;
+    private final boolean useCrashBasis;
+
+    // Anti-degeneracy perturbation. While perturbed is set rhsShift[i] and
+    // costShift[j] are the amounts b[i] and c[j] differ from the linear
+    // program by and objShift is the amount objConst differs by. Every
+    // pivot and complement applies to the shifts as well so subtracting
+    // them restores the exact linear program in whatever basis pivoting
+    // ends in. Both arrays are null when perturbation is disabled.
+    private final double[] rhsShift; // m vector indexed by row
+    private final double[] costShift; // k vector indexed by column
+    private double objShift;
+    private boolean perturbed;
+
+    // Set once Bland's rule landed on a pivot element that is likely
+    // round-off, after which simplexPivot() no longer pivots and the basic
+    // solution is meaningless
+    private boolean lostAccuracy;
 
     /**
      * Creates a linear program in slack form given a linear program in
@@ -28,49 +164,175 @@ public class SimplexState {
      * @param standardForm Linear program in standard form
      */
     public SimplexState(StandardForm standardForm) {
+        this(standardForm, new SolverOptions());
+    }
+
+    /**
+     * Creates a linear program in slack form given a linear program in
+     * standard form
+     * @param standardForm Linear program in standard form
+     * @param options Settings controlling how the tableau is stored
+     */
+    public SimplexState(StandardForm standardForm, SolverOptions options) {
+        this(standardForm, options, null);
+    }
+
+    /**
+     * Creates a linear program in slack form given a linear program in
+     * standard form
+     * @param standardForm Linear program in standard form
+     * @param options Settings controlling how the tableau is stored
+     * @param workspace Buffers to build the slack form in or null to
+     *                  allocate new ones. The workspace is released by
+     *                  close().
+     */
+    public SimplexState(StandardForm standardForm, SolverOptions options, SolverWorkspace workspace) {
+        this(standardForm.getNumVariables(), standardForm.getNumConstraints(), options, workspace);
+        standardForm.writeTo(this);
+    }
+
+    /**
+     * Creates the slack form of a linear program in standard form whose
+     * objective function and constraints are all zero. The linear program
+     * is then filled in through the StandardFormSink methods before it is
+     * pivoted which builds the slack form without an intermediate
+     * StandardForm.
+     * @param numVariables the number of variables in standard form
+     * @param numConstraints the number of constraints that will be added
+     * @param options Settings controlling how the tableau is stored
+     * @param workspace Buffers to build the slack form in or null to
+     *                  allocate new ones. The workspace is released by
+     *                  close().
+     */
+    public SimplexState(int numVariables, int numConstraints, SolverOptions options, SolverWorkspace workspace) {
         // The nonbasic variables occur in the objective function
-        int numNonBasicVars = standardForm.c.size();
+        k = numVariables;
         // A basic slack variable is added for each constraint
-        int numBasicVars = standardForm.b.size();
+        m = numConstraints;
 
         // Convert standard form into slack form
-        n = numBasicVars + numNonBasicVars;
+        n = m + k;
+        stride = k + 1;
+
+        objConst = 0.0;
 
+        this.workspace = workspace;
+        if (workspace != null && options.getTableauBackend() == TableauBackend.HEAP) {
+            A = new HeapTableauStorage(doubles(SolverWorkspace.TABLEAU, Math.toIntExact((long) m*stride)));
+        } else {
+            A = TableauStorage.allocate(options.getTableauBackend(), (long) m*stride,
+                    options.getMappedFileDirectory());
+        }
+        b = doubles(SolverWorkspace.B, m);
+        c = doubles(SolverWorkspace.C, stride);
+        phaseTwoC = doubles(SolverWorkspace.OBJECTIVE, stride);
 
-        objConst = standardForm.objConst;
-        nonBasic = new TreeSet<>();
-        basic = new TreeSet<>();
+        // The header arrays have room for the auxiliary variable
+        basicVars = ints(SolverWorkspace.BASIC_VARS, m);
+        nonBasicVars = ints(SolverWorkspace.NONBASIC_VARS, stride);
+        rowOf = ints(SolverWorkspace.ROW_OF, n + 1);
+        colOf = ints(SolverWorkspace.COL_OF, n + 1);
+        upperBounds = doubles(SolverWorkspace.UPPER_BOUNDS, n + 1);
+        Arrays.fill(upperBounds, 0, n + 1, Double.POSITIVE_INFINITY);
+        complemented = ints(SolverWorkspace.COMPLEMENTED, n + 1);
+        free = ints(SolverWorkspace.FREE, n + 1);
 
-        A = getEmptyMatrix(n, n);
-        b = new ArrayList<>(n);
-        // Clone original c vector which we will extend later to
-        // include entries for the basic slack variables
-        c = new ArrayList<>(standardForm.c);
+        pivotRow = doubles(SolverWorkspace.PIVOT_ROW, stride);
+        pivotCol = doubles(SolverWorkspace.PIVOT_COL, m);
+        pivotCols = ints(SolverWorkspace.PIVOT_COLS, stride);
+        pivotVals = doubles(SolverWorkspace.PIVOT_VALS, stride);
 
-        // Mark which variables are currently nonbasic and basic
-        // Set appropriate entries in b and extend c vector
-        // Adapt A matrix to include slack variables
-        for (int i = 0; i < numNonBasicVars; i++) {
-            nonBasic.add(i);
-            b.add(0.0);
+        pivotPool = options.isParallelPivot() ? options.getPivotPool() : null;
+        parallelPivotThreshold = options.getParallelPivotThreshold();
+
+        pricingRule = options.getPricingRule();
+        if (pricingRule == PricingRule.DEVEX) {
+            // The reference framework is the starting set of nonbasic
+            // variables whose weights all start at one
+            devexWeights = new double[n + 1];
+            Arrays.fill(devexWeights, 1.0);
+        } else if (pricingRule == PricingRule.STEEPEST_EDGE) {
+            columnNorms = new double[stride];
+            columnNormsStale = true;
+        }
+        useCrashBasis = options.isCrashBasis();
+        if (options.isPerturbation()) {
+            rhsShift = doubles(SolverWorkspace.RHS_SHIFT, m);
+            costShift = doubles(SolverWorkspace.COST_SHIFT, stride);
+        } else {
+            rhsShift = null;
+            costShift = null;
         }
+        pricingWindow = options.getPartialPricingWindow();
+        candidates = new PricingCandidates(options.getCandidateListSize());
 
-        for (int i = 0; i < numBasicVars; i++) {
-            b.add(standardForm.b.get(i));
-            // Extend c vector
-            c.add(0.0);
+        // Mark which variables are currently nonbasic and basic
+        for (int j = 0; j < k; j++) {
+            nonBasicVars[j] = j;
+            colOf[j] = j;
+            rowOf[j] = -1;
+        }
 
+        for (int i = 0; i < m; i++) {
             // ith row holding basic slack variable
-            // should hold weights of nonbasic variables
+            // will hold weights of nonbasic variables
             //
             // We follow the convention in CLRS where initially the
-            // basic slack variables have index numNonBasicVars + i
+            // basic slack variables have index k + i
             // where 0 <= i < m
-            for (int j = 0; j < numNonBasicVars; j++) {
-                updateA(numNonBasicVars + i, j, standardForm.getA(i, j));
-            }
-            basic.add(numNonBasicVars + i);
+            basicVars[i] = k + i;
+            rowOf[k + i] = i;
+            colOf[k + i] = -1;
+        }
+        numLoadedConstraints = 0;
+    }
+
+    @Override
+    public int addEmptyConstraint() {
+        if (numLoadedConstraints == m) {
+            throw new IllegalStateException("All " + m + " constraints have already been added.");
         }
+        return numLoadedConstraints++;
+    }
+
+    @Override
+    public void setConstraintWeight(int i, int j, double v) {
+        // Constraint i is the equation of its basic slack variable in row i
+        A.set((long) i*stride + j, v);
+    }
+
+    @Override
+    public void setConstraintBound(int i, double v) {
+        b[i] = v;
+    }
+
+    @Override
+    public void setVariableFree(int j) {
+        free[j] = 1;
+        hasFreeVariables = true;
+    }
+
+    @Override
+    public void setConstraintRange(int i, double v) {
+        // The range bounds the slack variable of the constraint
+        upperBounds[k + i] = v;
+        hasUpperBounds = true;
+    }
+
+    @Override
+    public void setObjectiveWeight(int j, double v) {
+        c[j] = v;
+    }
+
+    @Override
+    public void setObjectiveConstant(double v) {
+        objConst = v;
+    }
+
+    @Override
+    public void setVariableUpperBound(int j, double v) {
+        upperBounds[j] = v;
+        hasUpperBounds = true;
     }
 
     /**
@@ -85,111 +347,1250 @@ public class SimplexState {
         int e = enteringVariable;
         int l = leavingVariable;
 
+        // The leaving variable's row becomes the entering variable's row
+        // and the entering variable's column becomes the leaving variable's
+        // column
+        int r = rowOf[l];
+        int q = colOf[e];
+        int width = numColumns();
+        long rowR = (long) r*stride;
+
+        // Remember the entering variable's weights in every constraint
+        // before any row is updated
+        A.readColumn(q, stride, pivotCol, m);
+
         // Create new constraint where entering variable is a new basic slack variable
-        b.set(e, b.get(l) / getA(l, e));
-        for (int j : nonBasic) {
-            if (j != e) {
-                updateA(e, j, getA(l, j) / getA(l, e));
+        // while gathering the nonzeros of the new row. The row is worked on in a
+        // heap copy so the other rows can be updated from it whatever the
+        // storage backend.
+        A.read(rowR, pivotRow, width);
+        double pivotElement = pivotRow[q];
+        b[r] = b[r] / pivotElement;
+        RowKernels.divide(pivotRow, width, pivotElement, ZERO_TOLERANCE);
+        int nnz = 0;
+        for (int j = 0; j < width; j++) {
+            double v = pivotRow[j];
+            if (v != 0 && j != q) {
+                pivotCols[nnz] = j;
+                pivotVals[nnz] = v;
+                nnz++;
             }
         }
-        updateA(e, l, 1.0/getA(l, e));
+        double inversePivot = 1.0/pivotElement;
+        pivotRow[q] = inversePivot;
+        A.write(rowR, pivotRow, width);
+        // Pick the representation of the pivot row to iterate over based
+        // on how dense it currently is
+        boolean sparseRow = nnz <= SPARSE_ROW_DENSITY * width;
 
         // With our new basic variable e, perform substitution in the other basic variable
-        // equations
-        for (int i : basic) {
-            if (i != l) {
-                b.set(i, b.get(i) - getA(i, e)*b.get(e));
-                for (int j : nonBasic) {
-                    if (j != e) {
-                        updateA(i, j, getA(i, j) - getA(i, e)*getA(e, j));
+        // equations. The rows are independent so large pivots split them
+        // across threads.
+        if (pivotPool != null && (long) m*width >= parallelPivotThreshold) {
+            pivotPool.invoke(new EliminationTask(0, m, r, q, width, nnz, sparseRow, inversePivot));
+        } else {
+            eliminateRows(0, m, r, q, width, nnz, sparseRow, inversePivot);
+        }
+        if (perturbed) {
+            // The shifts of b take part in the pivot like b does
+            double shiftR = rhsShift[r] * inversePivot;
+            rhsShift[r] = shiftR;
+            if (shiftR != 0) {
+                for (int i = 0; i < m; i++) {
+                    if (i != r && pivotCol[i] != 0) {
+                        rhsShift[i] = rhsShift[i] - pivotCol[i]*shiftR;
                     }
                 }
-                updateA(i, l, -getA(i, e)*getA(e, l));
             }
         }
 
-        // Update objective function
-        objConst = objConst + c.get(e) * b.get(e);
-        for (int j : nonBasic) {
-            if (j != e) {
-                c.set(j, c.get(j) - c.get(e)*getA(e, j));
-            }
-            c.set(l, -c.get(e)*getA(e, l));
+        // Update objective function along with the original one while the
+        // auxiliary linear program is solved
+        double ce = c[q];
+        double cs = perturbed ? costShift[q] : 0.0;
+        objConst = objConst + eliminateObjective(c, r, q, width, nnz, sparseRow, inversePivot);
+        if (perturbed) {
+            eliminateObjective(costShift, r, q, width, nnz, sparseRow, inversePivot);
+            // Only the product of the exact weight and the exact bound
+            // belongs to the linear program
+            objShift = objShift + ce*b[r] - (ce - cs)*(b[r] - rhsShift[r]);
+        }
+        if (phaseOne) {
+            phaseTwoObjConst = phaseTwoObjConst
+                    + eliminateObjective(phaseTwoC, r, q, width, nnz, sparseRow, inversePivot);
+        }
+
+        if (devexWeights != null) {
+            updateDevexWeights(e, l, nnz, inversePivot);
         }
+        columnNormsStale = true;
+        statistics.addIteration(phaseOne);
 
         // Update our basic and nonbasic variables
-        basic.remove(l);
-        nonBasic.add(l);
-        nonBasic.remove(e);
-        basic.add(e);
+        basicVars[r] = e;
+        rowOf[e] = r;
+        colOf[e] = -1;
+        nonBasicVars[q] = l;
+        colOf[l] = q;
+        rowOf[l] = -1;
+    }
+
+    /**
+     * Substitutes the entering variable's new equation into an objective
+     * function
+     * @param obj the weights of the objective function
+     * @param r the pivot row
+     * @param q the entering variable's column
+     * @param width the number of columns in use
+     * @param nnz the number of packed nonzeros of the pivot row
+     * @param sparseRow whether to iterate over the packed nonzeros
+     * @param inversePivot the reciprocal of the pivot element
+     * @return the change in the constant term of the objective function
+     */
+    private double eliminateObjective(double[] obj, int r, int q, int width, int nnz,
+                                      boolean sparseRow, double inversePivot) {
+        double ce = obj[q];
+        if (ce != 0) {
+            if (sparseRow) {
+                for (int t = 0; t < nnz; t++) {
+                    int j = pivotCols[t];
+                    obj[j] = flush(obj[j] - ce*pivotVals[t]);
+                }
+            } else {
+                RowKernels.axpy(obj, 0, pivotRow, 0, q, ce, ZERO_TOLERANCE);
+                RowKernels.axpy(obj, q + 1, pivotRow, q + 1, width - q - 1, ce, ZERO_TOLERANCE);
+            }
+        }
+        obj[q] = -ce*inversePivot;
+        return ce * b[r];
+    }
+
+    /**
+     * Substitutes the entering variable's new equation into the
+     * constraints of the rows in [from, to) other than the pivot row
+     * @param from the first row to update
+     * @param to one past the last row to update
+     * @param r the pivot row
+     * @param q the entering variable's column
+     * @param width the number of columns in use
+     * @param nnz the number of packed nonzeros of the pivot row
+     * @param sparseRow whether to iterate over the packed nonzeros
+     * @param inversePivot the reciprocal of the pivot element
+     */
+    private void eliminateRows(int from, int to, int r, int q, int width, int nnz,
+                               boolean sparseRow, double inversePivot) {
+        if (!sparseRow) {
+            // Apply the pivot row one tile of columns at a time to all
+            // rows in the block.
+            for (int j0 = 0; j0 < width; j0 += COLUMN_TILE) {
+                int j1 = Math.min(width, j0 + COLUMN_TILE);
+                for (int i = from; i < to; i++) {
+                    double aie = pivotCol[i];
+                    // Rows without the entering variable are unchanged
+                    if (i != r && aie != 0) {
+                        A.axpyDense((long) i*stride, aie, pivotRow, j0, j1, q, ZERO_TOLERANCE);
+                    }
+                }
+            }
+        }
+        for (int i = from; i < to; i++) {
+            double aie = pivotCol[i];
+            // Rows without the entering variable are unchanged
+            if (i != r && aie != 0) {
+                long rowI = (long) i*stride;
+                b[i] = flush(b[i] - aie*b[r]);
+                if (sparseRow) {
+                    A.axpySparse(rowI, aie, pivotCols, pivotVals, nnz, ZERO_TOLERANCE);
+                }
+                A.set(rowI + q, -aie*inversePivot);
+            }
+        }
+    }
+
+    /**
+     * Fork/join task running eliminateRows() over a block of rows by
+     * splitting it in half until the blocks are small. Tasks never leave
+     * the pivot that forks them so they are not meant to be serialized.
+     */
+    @SuppressWarnings("serial")
+    private class EliminationTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final int r;
+        private final int q;
+        private final int width;
+        private final int nnz;
+        private final boolean sparseRow;
+        private final double inversePivot;
+
+        EliminationTask(int from, int to, int r, int q, int width, int nnz,
+                        boolean sparseRow, double inversePivot) {
+            this.from = from;
+            this.to = to;
+            this.r = r;
+            this.q = q;
+            this.width = width;
+            this.nnz = nnz;
+            this.sparseRow = sparseRow;
+            this.inversePivot = inversePivot;
+        }
+
+        @Override
+        protected void compute() {
+            // Aim for a few blocks per thread so uneven blocks balance out
+            int grain = Math.max(MIN_PARALLEL_ROWS, m / (4*pivotPool.getParallelism()));
+            if (to - from <= grain) {
+                eliminateRows(from, to, r, q, width, nnz, sparseRow, inversePivot);
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new EliminationTask(from, mid, r, q, width, nnz, sparseRow, inversePivot),
+                        new EliminationTask(mid, to, r, q, width, nnz, sparseRow, inversePivot));
+            }
+        }
+    }
+
+    /**
+     * @param v a value computed during a pivot
+     * @return zero if v is negligible and otherwise v
+     */
+    private static double flush(double v) {
+        return (Math.abs(v) < ZERO_TOLERANCE) ? 0.0 : v;
     }
 
     /**
      * This function encodes the operation of lines 3-12 of the Simplex
-     * function on CLRS pp. 871 and uses Bland's rule to prevent cycling.
+     * function on CLRS pp. 871. The entering variable is chosen by the
+     * pricing rule of the solver options. Runs of degenerate pivots fall
+     * back to Bland's rule which prevents cycling.
      *
      * This function also assumes that the linear program at invocation
      * time has a basic solution. It will repeatedly pivot the linear
      * program against a variable with positive coefficient in the
      * objective function.
      *
+     * Bland's rule has to take the pivot element it lands on however small
+     * it is. Since the tableau is never refactorized a pivot on round-off
+     * would spoil every later one, so pivoting stops instead and
+     * hasLostAccuracy() tells the caller to carry on from the basis with
+     * an engine that factorizes it from the original linear program.
+     *
      * @return false if during pivoting an unbounded solution was found
      * and true otherwise
      */
     public boolean simplexPivot() {
+        if (lostAccuracy) {
+            return true;
+        }
+        int width = numColumns();
+        int degeneratePivots = 0;
+        candidates.clear();
         while (true) {
-            // Find entering variable
-            int e = -1;
-            for (int j : nonBasic) {
-                if (c.get(j) > 0) {
-                    e = j;
-                    break;
-                }
+            if (hasFreeVariables) {
+                negateFreeColumns(width);
             }
+            boolean bland = pricingRule == PricingRule.BLAND || degeneratePivots >= DEGENERATE_PIVOT_LIMIT;
+            int q = bland ? blandEnteringColumn(width) : pricedEnteringColumn(width);
 
             // The objective function cannot be increased
-            if (e == -1) break;
-
-            // Find leaving variable
-            int l = -1;
-            double deltaL = Double.POSITIVE_INFINITY;
-            for (int i : basic) {
-                if (getA(i, e) > 0) {
-                    double limit = b.get(i) / getA(i, e);
-                    // Must be < to get smallest index where min occurs for Bland's rule
-                    if (limit < deltaL) {
-                        l = i;
-                        deltaL = limit;
+            if (q == -1) break;
+
+            // Find the leaving row unless the entering variable reaches its
+            // own upper bound first
+            A.readColumn(q, stride, pivotCol, m);
+            if (hasFreeVariables) {
+                // Rows of basic free variables never block
+                for (int i = 0; i < m; i++) {
+                    if (free[basicVars[i]] != 0) {
+                        pivotCol[i] = 0.0;
                     }
                 }
             }
-
-            if (Double.isInfinite(deltaL)) {
+            double enteringBound = upperBounds[nonBasicVars[q]];
+            int r = bland ? blandLeavingRow(enteringBound) : harrisLeavingRow(enteringBound);
+            if (r == UNBOUNDED_STEP) {
                 return false;
+            }
+            if (r == BOUND_FLIP) {
+                // The entering variable moves to its upper bound without a
+                // pivot
+                complementColumn(q);
+                if (enteringBound < EPSILON) {
+                    degeneratePivots++;
+                    statistics.addDegeneratePivot();
+                } else {
+                    degeneratePivots = 0;
+                }
+                continue;
+            }
+
+            if (bland && isUnstablePivot(r)) {
+                lostAccuracy = true;
+                return true;
+            }
+
+            double step;
+            if (pivotCol[r] > 0) {
+                // Basic variables within the tolerance below zero count as
+                // zero so the step is never negative
+                if (b[r] < 0) {
+                    shiftBound(r, 0.0);
+                }
+                step = b[r] / pivotCol[r];
             } else {
-                pivot(e, l);
+                // The leaving variable reaches its upper bound so it is
+                // complemented and then leaves at zero like any other
+                double u = upperBounds[basicVars[r]];
+                if (b[r] > u) {
+                    shiftBound(r, u);
+                }
+                step = (u - b[r]) / -pivotCol[r];
+                complementRow(r);
+            }
+            if (bland && pricingRule != PricingRule.BLAND) {
+                statistics.addBlandIteration();
+            }
+            if (step < EPSILON) {
+                degeneratePivots++;
+                statistics.addDegeneratePivot();
+            } else {
+                degeneratePivots = 0;
+            }
+            pivot(nonBasicVars[q], basicVars[r]);
+        }
+        return true;
+    }
+
+    /**
+     * Moves a basic variable that the Harris ratio test let pass one of
+     * its bounds by a little back onto the bound. While perturbed the move
+     * is recorded as a shift so that removing the shifts restores the
+     * exact value.
+     * @param r the row of the variable
+     * @param v the bound
+     */
+    private void shiftBound(int r, double v) {
+        if (perturbed) {
+            rhsShift[r] = rhsShift[r] + v - b[r];
+        }
+        b[r] = v;
+    }
+
+    /**
+     * @param index the index of the perturbed entry
+     * @param v the value of the perturbed entry
+     * @return the size of the perturbation of the entry which varies from
+     * entry to entry so that perturbed values rarely tie
+     */
+    private static double perturbation(int index, double v) {
+        // Fibonacci hashing spreads consecutive indices over [0, 1)
+        double spread = ((index * 0x9E3779B97F4A7C15L) >>> 11) * 0x1.0p-53;
+        return PERTURBATION * (1.0 + Math.abs(v)) * (1.0 + spread);
+    }
+
+    /**
+     * Perturbs b by moving every basic variable slightly away from the
+     * nearer of its bounds so that the primal simplex algorithm rarely
+     * makes pivots that do not increase the objective function. Free
+     * variables and variables whose bounds are too close together are
+     * left alone.
+     */
+    private void perturbBounds() {
+        for (int i = 0; i < m; i++) {
+            int x = basicVars[i];
+            double u = upperBounds[x];
+            double delta = perturbation(i, b[i]);
+            if (free[x] != 0 || u < 4*delta) {
+                rhsShift[i] = 0.0;
+                continue;
+            }
+            if (u != Double.POSITIVE_INFINITY && b[i] > u / 2) {
+                delta = -delta;
+            }
+            b[i] = b[i] + delta;
+            rhsShift[i] = delta;
+        }
+        Arrays.fill(costShift, 0, numColumns(), 0.0);
+        objShift = 0.0;
+        perturbed = true;
+    }
+
+    /**
+     * Perturbs c by making every coefficient of a nonbasic variable
+     * slightly less attractive so that the dual simplex algorithm rarely
+     * makes pivots that do not decrease the objective function of the
+     * dual linear program. Coefficients of free variables must stay zero
+     * and are left alone.
+     */
+    private void perturbCosts() {
+        int width = numColumns();
+        for (int j = 0; j < width; j++) {
+            int x = nonBasicVars[j];
+            if (free[x] != 0) {
+                costShift[j] = 0.0;
+                continue;
+            }
+            double delta = perturbation(x, c[j]);
+            // The dual simplex algorithm moves variables with an upper
+            // bound and a positive coefficient to their upper bound which
+            // negates the coefficient
+            if (c[j] > EPSILON && upperBounds[x] != Double.POSITIVE_INFINITY) {
+                delta = -delta;
+            }
+            c[j] = c[j] - delta;
+            costShift[j] = -delta;
+        }
+        Arrays.fill(rhsShift, 0, m, 0.0);
+        objShift = 0.0;
+        perturbed = true;
+    }
+
+    /**
+     * Removes the perturbation which leaves the exact linear program in
+     * the final basis. The basic solution usually stays optimal but when a
+     * basic variable ends up outside its bounds a few dual simplex pivots,
+     * or the auxiliary linear program if the basis is not dual feasible
+     * either, make it feasible again. The perturbation is never applied
+     * twice so the pivots after it terminate like unperturbed ones.
+     * @return false if the linear program turns out to be infeasible and
+     * true otherwise
+     */
+    private boolean removePerturbation() {
+        for (int i = 0; i < m; i++) {
+            b[i] = flush(b[i] - rhsShift[i]);
+        }
+        int width = numColumns();
+        for (int j = 0; j < width; j++) {
+            c[j] = flush(c[j] - costShift[j]);
+        }
+        objConst = objConst - objShift;
+        perturbed = false;
+
+        for (int i = 0; i < m; i++) {
+            int x = basicVars[i];
+            if (free[x] == 0 && (b[i] < -EPSILON || b[i] > upperBounds[x] + EPSILON)) {
+                return isDualFeasible() ? dualSimplexPivot() : initializeSimplex();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Chooses the leaving row by the smallest limit on the entering
+     * variable whose column is in pivotCol with ties going to the
+     * smallest basic variable for Bland's rule
+     * @param enteringBound the upper bound of the entering variable
+     * @return the leaving row, BOUND_FLIP if the entering variable reaches
+     * its upper bound first or UNBOUNDED_STEP if nothing limits it
+     */
+    private int blandLeavingRow(double enteringBound) {
+        double deltaL = RowKernels.minRatio(b, pivotCol, m, PIVOT_TOLERANCE, 0.0);
+        if (hasUpperBounds) {
+            for (int i = 0; i < m; i++) {
+                deltaL = Math.min(deltaL, upperStep(i, 0.0));
+            }
+        }
+        if (enteringBound <= deltaL) {
+            return Double.isInfinite(enteringBound) ? UNBOUNDED_STEP : BOUND_FLIP;
+        }
+        int r = -1;
+        for (int i = 0; i < m; i++) {
+            if (blockingStep(i, 0.0) == deltaL && (r == -1 || basicVars[i] < basicVars[r])) {
+                r = i;
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @param r the leaving row chosen for the entering column in pivotCol
+     * @return true if the pivot element is so small next to the largest
+     * entry of its column that it is likely round-off
+     */
+    private boolean isUnstablePivot(int r) {
+        double largest = 0.0;
+        for (int i = 0; i < m; i++) {
+            largest = Math.max(largest, Math.abs(pivotCol[i]));
+        }
+        return Math.abs(pivotCol[r]) < UNSTABLE_PIVOT_RATIO*largest;
+    }
+
+    /**
+     * Chooses the leaving row by the Harris ratio test on the entering
+     * variable whose column is in pivotCol. The first pass finds the
+     * largest step that keeps every basic variable within the feasibility
+     * tolerance of its bounds. The second pass picks the largest pivot
+     * element among the rows that block within that step so nearly tied
+     * rows never force a tiny pivot element. Ties go to the smallest basic
+     * variable. An entering variable that reaches its own upper bound
+     * within that step flips to it instead which needs no pivot at all.
+     * @param enteringBound the upper bound of the entering variable
+     * @return the leaving row, BOUND_FLIP if the entering variable reaches
+     * its upper bound first or UNBOUNDED_STEP if nothing limits it
+     */
+    private int harrisLeavingRow(double enteringBound) {
+        double maxStep = RowKernels.minRatio(b, pivotCol, m, PIVOT_TOLERANCE, FEASIBILITY_TOLERANCE);
+        if (hasUpperBounds) {
+            for (int i = 0; i < m; i++) {
+                maxStep = Math.min(maxStep, upperStep(i, FEASIBILITY_TOLERANCE));
+            }
+        }
+        if (enteringBound <= maxStep) {
+            return Double.isInfinite(enteringBound) ? UNBOUNDED_STEP : BOUND_FLIP;
+        }
+        int r = -1;
+        for (int i = 0; i < m; i++) {
+            double w = Math.abs(pivotCol[i]);
+            if (blockingStep(i, 0.0) <= maxStep
+                    && (r == -1 || w > Math.abs(pivotCol[r]) || (w == Math.abs(pivotCol[r]) && basicVars[i] < basicVars[r]))) {
+                r = i;
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @param i a row
+     * @param slack amount the basic variable may pass its bound by
+     * @return how far the entering variable whose column is in pivotCol
+     * can increase before the basic variable of the row reaches a bound or
+     * positive infinity if it never does
+     */
+    private double blockingStep(int i, double slack) {
+        double w = pivotCol[i];
+        if (w > PIVOT_TOLERANCE) {
+            return (Math.max(b[i], 0.0) + slack) / w;
+        }
+        return upperStep(i, slack);
+    }
+
+    /**
+     * @param i a row
+     * @param slack amount the basic variable may pass its bound by
+     * @return how far the entering variable whose column is in pivotCol
+     * can increase before the basic variable of the row reaches its upper
+     * bound or positive infinity if it never does
+     */
+    private double upperStep(int i, double slack) {
+        double w = pivotCol[i];
+        double u = upperBounds[basicVars[i]];
+        if (w < -PIVOT_TOLERANCE && u != Double.POSITIVE_INFINITY) {
+            return (Math.max(u - b[i], 0.0) + slack) / -w;
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Moves a nonbasic variable to its other bound by replacing it with its
+     * upper bound minus itself which negates its column and its
+     * coefficient in the objective function
+     * @param q the column of the variable
+     */
+    private void complementColumn(int q) {
+        int j = nonBasicVars[q];
+        double u = upperBounds[j];
+        A.readColumn(q, stride, pivotCol, m);
+        for (int i = 0; i < m; i++) {
+            double w = pivotCol[i];
+            if (w != 0) {
+                b[i] = flush(b[i] - w*u);
+                A.set((long) i*stride + q, -w);
+            }
+        }
+        objConst = objConst + c[q]*u;
+        c[q] = -c[q];
+        if (phaseOne) {
+            phaseTwoObjConst = phaseTwoObjConst + phaseTwoC[q]*u;
+            phaseTwoC[q] = -phaseTwoC[q];
+        }
+        if (perturbed) {
+            objShift = objShift + costShift[q]*u;
+            costShift[q] = -costShift[q];
+        }
+        complemented[j] ^= 1;
+        statistics.addBoundFlip();
+    }
+
+    /**
+     * Replaces a basic variable by its upper bound minus itself which
+     * negates its row
+     * @param r the row of the variable
+     */
+    private void complementRow(int r) {
+        int l = basicVars[r];
+        int width = numColumns();
+        long rowR = (long) r*stride;
+        A.read(rowR, pivotRow, width);
+        for (int j = 0; j < width; j++) {
+            pivotRow[j] = -pivotRow[j];
+        }
+        A.write(rowR, pivotRow, width);
+        b[r] = upperBounds[l] - b[r];
+        if (perturbed) {
+            rhsShift[r] = -rhsShift[r];
+        }
+        complemented[l] ^= 1;
+    }
+
+    /**
+     * Replaces a nonbasic free variable by its negation which negates its
+     * column and its coefficient in the objective function
+     * @param q the column of the variable
+     */
+    private void negateColumn(int q) {
+        A.readColumn(q, stride, pivotCol, m);
+        for (int i = 0; i < m; i++) {
+            if (pivotCol[i] != 0) {
+                A.set((long) i*stride + q, -pivotCol[i]);
+            }
+        }
+        c[q] = -c[q];
+        if (phaseOne) {
+            phaseTwoC[q] = -phaseTwoC[q];
+        }
+        if (perturbed) {
+            costShift[q] = -costShift[q];
+        }
+        complemented[nonBasicVars[q]] ^= 1;
+    }
+
+    /**
+     * Negates the nonbasic free variables whose decrease improves the
+     * objective function so that pricing only has to look for positive
+     * coefficients
+     * @param width the number of columns in use
+     */
+    private void negateFreeColumns(int width) {
+        for (int j = 0; j < width; j++) {
+            if (c[j] < -EPSILON && free[nonBasicVars[j]] != 0) {
+                negateColumn(j);
+            }
+        }
+    }
+
+    /**
+     * @param j a variable
+     * @return the value a complemented variable is measured down from
+     * which is its upper bound or zero for a free variable
+     */
+    private double complementBase(int j) {
+        return (free[j] != 0) ? 0.0 : upperBounds[j];
+    }
+
+    /**
+     * Chooses the entering column by Bland's rule
+     * @param width the number of columns in use
+     * @return the column holding the smallest variable with a positive
+     * coefficient in the objective function or -1 if there is none
+     */
+    private int blandEnteringColumn(int width) {
+        int q = -1;
+        for (int j = RowKernels.nextAbove(c, 0, width, EPSILON); j != -1; j = RowKernels.nextAbove(c, j + 1, width, EPSILON)) {
+            if (q == -1 || nonBasicVars[j] < nonBasicVars[q]) {
+                q = j;
+            }
+        }
+        return q;
+    }
+
+    /**
+     * Chooses the entering column by the pricing rule which maximizes the
+     * squared coefficient in the objective function divided by the weight
+     * of the column. Dantzig's rule weighs every column the same while
+     * Devex and steepest edge weigh columns by the length of the edge
+     * the basic solution moves along so the increase per unit of distance
+     * is largest.
+     *
+     * Minor iterations of multiple pricing only reprice the candidates of
+     * the last scan. Otherwise the columns are scanned window by window for
+     * partial pricing.
+     * @param width the number of columns in use
+     * @return the chosen column or -1 if no variable has a positive
+     * coefficient in the objective function
+     */
+    private int pricedEnteringColumn(int width) {
+        if (candidates.hasMinorIteration()) {
+            int q = -1;
+            double bestScore = 0.0;
+            for (int t = 0; t < candidates.size(); t++) {
+                // Candidates that entered the basis have no column
+                int j = colOf[candidates.get(t)];
+                if (j == -1 || c[j] <= EPSILON) continue;
+                double score = score(j);
+                if (q == -1 || score > bestScore || (score == bestScore && nonBasicVars[j] < nonBasicVars[q])) {
+                    q = j;
+                    bestScore = score;
+                }
+            }
+            if (q != -1) {
+                candidates.addMinorIteration();
+                return q;
+            }
+        }
+
+        if (columnNorms != null && columnNormsStale) {
+            computeColumnNorms(width);
+        }
+        candidates.clear();
+        int window = (pricingWindow > 0) ? pricingWindow : width;
+        int start = (pricingStart < width) ? pricingStart : 0;
+        for (int scanned = 0; scanned < width && candidates.size() == 0; ) {
+            int end = Math.min(Math.min(start + window, width), start + width - scanned);
+            for (int j = RowKernels.nextAbove(c, start, end, EPSILON); j != -1; j = RowKernels.nextAbove(c, j + 1, end, EPSILON)) {
+                candidates.offer(nonBasicVars[j], score(j));
+            }
+            scanned += end - start;
+            start = (end == width) ? 0 : end;
+        }
+        pricingStart = start;
+        return (candidates.size() == 0) ? -1 : colOf[candidates.get(0)];
+    }
+
+    /**
+     * @param j a column with a positive coefficient in the objective function
+     * @return the squared coefficient divided by the weight of the column
+     */
+    private double score(int j) {
+        double weight;
+        if (devexWeights != null) {
+            weight = devexWeights[nonBasicVars[j]];
+        } else if (columnNorms != null) {
+            weight = 1.0 + columnNorms[j];
+        } else {
+            weight = 1.0;
+        }
+        return c[j]*c[j] / weight;
+    }
+
+    /**
+     * Computes the squared norm of every column for steepest edge pricing
+     * in one pass over the tableau. The edge of column j changes the basic
+     * variables by column j per unit of the entering variable so its
+     * length is sqrt(1 + norm).
+     * @param width the number of columns in use
+     */
+    private void computeColumnNorms(int width) {
+        Arrays.fill(columnNorms, 0.0);
+        for (int i = 0; i < m; i++) {
+            A.read((long) i*stride, pivotRow, width);
+            for (int j = 0; j < width; j++) {
+                double v = pivotRow[j];
+                columnNorms[j] += v*v;
+            }
+        }
+        columnNormsStale = false;
+    }
+
+    /**
+     * Updates the Devex reference weights after a pivot from the pivot row
+     * divided by the pivot element
+     * @param e the entering variable
+     * @param l the leaving variable
+     * @param nnz the number of packed nonzeros of the pivot row
+     * @param inversePivot the reciprocal of the pivot element
+     */
+    private void updateDevexWeights(int e, int l, int nnz, double inversePivot) {
+        double we = devexWeights[e];
+        for (int t = 0; t < nnz; t++) {
+            double ratio = pivotVals[t];
+            int j = nonBasicVars[pivotCols[t]];
+            devexWeights[j] = Math.max(devexWeights[j], ratio*ratio*we);
+        }
+        devexWeights[l] = Math.max(we*inversePivot*inversePivot, 1.0);
+    }
+
+    /**
+     * @return true if pivoting stopped short of a pivot element that is
+     * likely round-off, in which case the solution of the solve is
+     * meaningless and the basis has to be factorized again from the
+     * original linear program
+     */
+    public boolean hasLostAccuracy() {
+        return lostAccuracy;
+    }
+
+    /**
+     * Writes out the current basis in the numbering of the standard form,
+     * where the slack variable of constraint i follows the structural
+     * variables
+     * @param basicVariables array to write the m basic variables to
+     * @param values array to write the values of the structural and slack
+     *               variables in the basic solution to
+     * @return false if the auxiliary variable of initializeSimplex() is
+     * basic so the basis is not one of the linear program and true
+     * otherwise
+     */
+    public boolean getBasis(int[] basicVariables, double[] values) {
+        for (int i = 0; i < m; i++) {
+            if (basicVars[i] >= k + m) {
+                return false;
             }
+            basicVariables[i] = basicVars[i];
+        }
+        for (int j = 0; j < k + m; j++) {
+            double value = (rowOf[j] == -1) ? 0.0 : b[rowOf[j]];
+            values[j] = (complemented[j] != 0) ? complementBase(j) - value : value;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the basic solution is feasible which is when every
+     * basic variable is between zero and its upper bound
+     */
+    public boolean isPrimalFeasible() {
+        for (int i = 0; i < m; i++) {
+            if (free[basicVars[i]] != 0) continue;
+            if (b[i] < 0 || b[i] > upperBounds[basicVars[i]]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the basic solution of the dual linear program is
+     * feasible which is when no nonbasic variable has a positive
+     * coefficient in the objective function. Nonbasic variables with an
+     * upper bound count as feasible as moving them to it makes their
+     * coefficient negative. Nonbasic free variables need a coefficient of
+     * zero.
+     */
+    public boolean isDualFeasible() {
+        int width = numColumns();
+        for (int j = 0; j < width; j++) {
+            if (c[j] > EPSILON && upperBounds[nonBasicVars[j]] == Double.POSITIVE_INFINITY) return false;
+            if (c[j] < -EPSILON && free[nonBasicVars[j]] != 0) return false;
         }
         return true;
     }
 
+    /**
+     * Runs the dual simplex algorithm on a slack form whose basic solution
+     * is dual feasible. Each pivot makes a basic variable outside its
+     * bounds leave while keeping every coefficient in the objective
+     * function nonpositive, so once the basic solution is feasible it is
+     * optimal. This skips the auxiliary linear program of
+     * initializeSimplex().
+     *
+     * @return false if a basic variable can never be brought within its
+     * bounds implying that the linear program is infeasible and true
+     * otherwise
+     */
+    public boolean dualSimplexPivot() {
+        int width = numColumns();
+        // Nonbasic variables with a positive coefficient in the objective
+        // function start at their upper bound
+        for (int j = 0; j < width; j++) {
+            if (c[j] > EPSILON && upperBounds[nonBasicVars[j]] != Double.POSITIVE_INFINITY) {
+                complementColumn(j);
+            }
+        }
+
+        while (true) {
+            // Leaving row holds the basic variable farthest outside its
+            // bounds with ties going to the smallest basic variable
+            int r = -1;
+            double maxInfeasibility = 0.0;
+            for (int i = 0; i < m; i++) {
+                if (free[basicVars[i]] != 0) continue;
+                double infeasibility = Math.max(-b[i], b[i] - upperBounds[basicVars[i]]);
+                if (infeasibility > EPSILON && (r == -1 || infeasibility > maxInfeasibility
+                        || (infeasibility == maxInfeasibility && basicVars[i] < basicVars[r]))) {
+                    r = i;
+                    maxInfeasibility = infeasibility;
+                }
+            }
+
+            // The basic solution is feasible
+            if (r == -1) break;
+
+            // A basic variable above its upper bound is complemented so
+            // that it is negative instead
+            if (b[r] > 0) {
+                complementRow(r);
+            }
+
+            // Dual ratio test: the entering variable must increase the
+            // leaving variable so its weight in the row is negative. The
+            // smallest ratio c[j] / A[r][j] keeps every coefficient in the
+            // objective function nonpositive after the pivot.
+            //
+            // This is a bound flipping ratio test. Passing the ratio of a
+            // variable with an upper bound only makes its coefficient
+            // positive which moving it to its upper bound fixes. That also
+            // increases the leaving variable by the weight times the upper
+            // bound so while the leaving variable stays negative the test
+            // flips the variables and moves on to larger ratios. This
+            // takes one long step instead of a pivot for every ratio passed.
+            A.read((long) r*stride, pivotRow, width);
+            if (hasFreeVariables) {
+                // A free variable may enter in either direction so it is
+                // negated whenever that gives it a negative weight
+                for (int j = 0; j < width; j++) {
+                    if (pivotRow[j] > EPSILON && free[nonBasicVars[j]] != 0) {
+                        negateColumn(j);
+                        pivotRow[j] = -pivotRow[j];
+                    }
+                }
+            }
+            double remaining = -b[r];
+            int numFlips = 0;
+            int q;
+            while (true) {
+                double maxRatio = dualRatioBound(width);
+                if (maxRatio == Double.POSITIVE_INFINITY) {
+                    q = -1;
+                    break;
+                }
+                double increase = 0.0;
+                for (int j = 0; j < width; j++) {
+                    double w = pivotRow[j];
+                    if (w < -EPSILON && Math.max(c[j] / w, 0.0) <= maxRatio) {
+                        increase += -w*upperBounds[nonBasicVars[j]];
+                    }
+                }
+                if (remaining - increase <= EPSILON) {
+                    q = dualEnteringColumn(width, maxRatio);
+                    break;
+                }
+                remaining -= increase;
+                for (int j = 0; j < width; j++) {
+                    double w = pivotRow[j];
+                    if (w < -EPSILON && Math.max(c[j] / w, 0.0) <= maxRatio) {
+                        pivotCols[numFlips++] = j;
+                        // Passed columns are left out of later ratio tests
+                        pivotRow[j] = 0.0;
+                    }
+                }
+            }
+
+            // The basic variable can never get within its bounds
+            if (q == -1) return false;
+
+            for (int t = 0; t < numFlips; t++) {
+                complementColumn(pivotCols[t]);
+            }
+            if (perturbed && c[q] > 0) {
+                // The Harris ratio test let the entering coefficient be
+                // slightly positive which the pivot would spread to the
+                // other coefficients so the cost is shifted to zero
+                costShift[q] = costShift[q] - c[q];
+                c[q] = 0.0;
+            }
+            statistics.addDualIteration();
+            pivot(nonBasicVars[q], basicVars[r]);
+        }
+        return true;
+    }
+
+    /**
+     * First pass of the dual ratio test over the leaving row copied into
+     * pivotRow. As in the Harris ratio test coefficients may become
+     * positive by up to the feasibility tolerance.
+     * @param width the number of columns in use
+     * @return the largest ratio the entering column may have or positive
+     * infinity if no weight is negative
+     */
+    private double dualRatioBound(int width) {
+        double maxRatio = Double.POSITIVE_INFINITY;
+        for (int j = 0; j < width; j++) {
+            double w = pivotRow[j];
+            if (w < -EPSILON) {
+                maxRatio = Math.min(maxRatio, (Math.min(c[j], 0.0) - FEASIBILITY_TOLERANCE) / w);
+            }
+        }
+        return maxRatio;
+    }
+
+    /**
+     * Second pass of the dual ratio test which picks the largest weight
+     * among the columns within the ratio bound with ties going to the
+     * smallest variable
+     * @param width the number of columns in use
+     * @param maxRatio the bound found by dualRatioBound()
+     * @return the entering column
+     */
+    private int dualEnteringColumn(int width, double maxRatio) {
+        int q = -1;
+        for (int j = 0; j < width; j++) {
+            double w = pivotRow[j];
+            if (w >= -EPSILON) continue;
+            // Coefficients within EPSILON of zero count as zero
+            double ratio = Math.max(c[j] / w, 0.0);
+            if (ratio <= maxRatio && (q == -1 || w < pivotRow[q]
+                    || (w == pivotRow[q] && nonBasicVars[j] < nonBasicVars[q]))) {
+                q = j;
+            }
+        }
+        return q;
+    }
+
+    /**
+     * Builds a triangular starting basis in the manner of Bixby's crash
+     * before initializeSimplex() looks for a feasible basic solution. The
+     * slack variables that can be replaced are those fixed at zero by
+     * equality constraints, which would otherwise stall every pivot
+     * through their row, and those outside of their bounds, which the
+     * auxiliary linear program would otherwise have to repair.
+     *
+     * Structural columns are tried in order of preference: free variables
+     * first as they never leave again, then variables without an upper
+     * bound, then the rest, with the objective function shifting a column
+     * by up to one class and sparser columns first among equals. A column
+     * takes the replaceable row holding its largest weight if that weight
+     * is not small next to the rest of the column, and every other
+     * replaceable row it has a weight in is closed. No column chosen later
+     * then has a weight in an earlier pivot row so the basis is triangular
+     * and every crash pivot is on an original weight of the tableau.
+     * Pivots replacing a slack that is not fixed are skipped if they would
+     * move the basic solution further from feasible.
+     *
+     * @return the number of pivots made
+     */
+    public int crashBasis() {
+        int width = numColumns();
+        int[] open = ints(SolverWorkspace.CRASH_OPEN, m);
+        int numOpen = 0;
+        int numInfeasible = 0;
+        for (int i = 0; i < m; i++) {
+            int l = basicVars[i];
+            boolean infeasible = infeasibility(b[i], l) > 0.0;
+            if (infeasible) {
+                numInfeasible++;
+            }
+            if (l >= k && free[l] == 0 && (upperBounds[l] == 0.0 || infeasible)) {
+                open[i] = 1;
+                numOpen++;
+            }
+        }
+        if (numOpen == 0) {
+            return 0;
+        }
+
+        // Largest weight of every column and its number of weights in the
+        // open rows
+        double[] colMax = doubles(SolverWorkspace.CRASH_COL_MAX, width);
+        int[] count = ints(SolverWorkspace.CRASH_COUNT, width);
+        for (int i = 0; i < m; i++) {
+            A.read((long) i*stride, pivotRow, width);
+            for (int j = 0; j < width; j++) {
+                double w = Math.abs(pivotRow[j]);
+                colMax[j] = Math.max(colMax[j], w);
+                if (open[i] != 0 && w != 0.0) {
+                    count[j]++;
+                }
+            }
+        }
+        double maxCost = 0.0;
+        for (int j = 0; j < width; j++) {
+            maxCost = Math.max(maxCost, Math.abs(c[j]));
+        }
+        double[] preference = doubles(SolverWorkspace.CRASH_PREFERENCE, width);
+        int[] candidates = ints(SolverWorkspace.CRASH_CANDIDATES, width);
+        int numCandidates = 0;
+        for (int j = 0; j < width; j++) {
+            if (count[j] > 0 && canCrash(j)) {
+                preference[j] = crashClass(nonBasicVars[j]) - ((maxCost > 0.0) ? c[j] / maxCost : 0.0);
+                candidates[numCandidates++] = j;
+            }
+        }
+        sortCandidates(candidates, numCandidates, preference, count);
+
+        int[] crashRows = ints(SolverWorkspace.CRASH_ROWS, Math.min(numOpen, numCandidates));
+        int[] crashVars = ints(SolverWorkspace.CRASH_VARS, Math.min(numOpen, numCandidates));
+        int numChosen = 0;
+        for (int t = 0; t < numCandidates && numOpen > 0; t++) {
+            int q = candidates[t];
+            A.readColumn(q, stride, pivotCol, m);
+            int r = -1;
+            double minWeight = Math.max(PIVOT_TOLERANCE, CRASH_PIVOT_RATIO*colMax[q]);
+            for (int i = 0; i < m; i++) {
+                if (open[i] != 0 && Math.abs(pivotCol[i]) >= minWeight
+                        && (r == -1 || Math.abs(pivotCol[i]) > Math.abs(pivotCol[r]))) {
+                    r = i;
+                }
+            }
+            if (r == -1) continue;
+            crashRows[numChosen] = r;
+            crashVars[numChosen] = nonBasicVars[q];
+            numChosen++;
+            for (int i = 0; i < m; i++) {
+                if (open[i] != 0 && pivotCol[i] != 0.0) {
+                    open[i] = 0;
+                    numOpen--;
+                }
+            }
+        }
+
+        // Dropping a pivot keeps the rest triangular so each pivot element
+        // is still the original weight
+        int numPivots = 0;
+        for (int t = 0; t < numChosen; t++) {
+            int r = crashRows[t];
+            int q = colOf[crashVars[t]];
+            if (upperBounds[basicVars[r]] == 0.0 || infeasibilityChange(r, q) <= 0.0) {
+                pivot(crashVars[t], basicVars[r]);
+                statistics.addCrashPivot();
+                numPivots++;
+            }
+        }
+        for (int i = 0; i < m; i++) {
+            if (infeasibility(b[i], basicVars[i]) > 0.0) {
+                numInfeasible--;
+            }
+        }
+        statistics.setCrashInfeasibilitiesRemoved(numInfeasible);
+        return numPivots;
+    }
+
+    /**
+     * Heap sorts the crash candidates in place by preference, then by
+     * count, then by column so the order does not depend on the sort
+     * being stable
+     * @param candidates the columns to sort
+     * @param size the number of columns in candidates
+     * @param preference the preference of every column
+     * @param count the number of weights of every column in the open rows
+     */
+    private static void sortCandidates(int[] candidates, int size, double[] preference, int[] count) {
+        for (int i = size/2 - 1; i >= 0; i--) {
+            siftDown(candidates, size, i, preference, count);
+        }
+        for (int end = size - 1; end > 0; end--) {
+            int top = candidates[0];
+            candidates[0] = candidates[end];
+            candidates[end] = top;
+            siftDown(candidates, end, 0, preference, count);
+        }
+    }
+
+    /**
+     * Sifts a column down a binary max-heap of crash candidates
+     * @param heap the heap
+     * @param size the number of columns in the heap
+     * @param i the position of the column to sift down
+     * @param preference the preference of every column
+     * @param count the number of weights of every column in the open rows
+     */
+    private static void siftDown(int[] heap, int size, int i, double[] preference, int[] count) {
+        int key = heap[i];
+        while (2*i + 1 < size) {
+            int child = 2*i + 1;
+            if (child + 1 < size && crashesBefore(heap[child], heap[child + 1], preference, count)) {
+                child++;
+            }
+            if (!crashesBefore(key, heap[child], preference, count)) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = key;
+    }
+
+    /**
+     * @param p a column
+     * @param q another column
+     * @param preference the preference of every column
+     * @param count the number of weights of every column in the open rows
+     * @return true if column p is tried before column q by crashBasis()
+     */
+    private static boolean crashesBefore(int p, int q, double[] preference, int[] count) {
+        if (preference[p] != preference[q]) {
+            return preference[p] < preference[q];
+        }
+        if (count[p] != count[q]) {
+            return count[p] < count[q];
+        }
+        return p < q;
+    }
+
+    /**
+     * @param x a variable
+     * @param v a value of the variable
+     * @return how far the value is outside of the bounds of the variable
+     * beyond the feasibility tolerance or zero if it is within them
+     */
+    private double infeasibility(double v, int x) {
+        if (free[x] != 0) {
+            return 0.0;
+        }
+        if (v < -FEASIBILITY_TOLERANCE) {
+            return -v;
+        }
+        if (v > upperBounds[x] + FEASIBILITY_TOLERANCE) {
+            return v - upperBounds[x];
+        }
+        return 0.0;
+    }
+
+    /**
+     * @param r the row of the leaving variable
+     * @param q the column of the entering variable
+     * @return how much the sum of the infeasibilities of the basic
+     * variables would grow by pivoting on row r and column q
+     */
+    private double infeasibilityChange(int r, int q) {
+        A.readColumn(q, stride, pivotCol, m);
+        double step = b[r] / pivotCol[r];
+        double res = infeasibility(step, nonBasicVars[q]) - infeasibility(b[r], basicVars[r]);
+        for (int i = 0; i < m; i++) {
+            if (i != r && pivotCol[i] != 0.0) {
+                res += infeasibility(b[i] - pivotCol[i]*step, basicVars[i]) - infeasibility(b[i], basicVars[i]);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * @param j a column
+     * @return true if the nonbasic variable of the column is a structural
+     * variable which may enter the basis during crashBasis()
+     */
+    private boolean canCrash(int j) {
+        int x = nonBasicVars[j];
+        return x < k && upperBounds[x] != 0.0;
+    }
+
+    /**
+     * @param x a structural variable
+     * @return the class of the variable for crashBasis() where smaller is
+     * more desirable
+     */
+    private int crashClass(int x) {
+        if (free[x] != 0) {
+            return 0;
+        }
+        return (upperBounds[x] == Double.POSITIVE_INFINITY) ? 1 : 2;
+    }
+
     /**
      * Performs the Initialize-Simplex function on CLRS pp. 887.
      * It converts a linear program into a slack form where the basic
      * solution is feasible.
      *
      * @return false if it is not possible to perform conversion implying
-     * that the original linear program is infeasible and returns true
-     * otherwise
+     * that the original linear program is infeasible, or if pivoting lost
+     * accuracy, and returns true otherwise
      */
     public boolean initializeSimplex() {
-        int k = -1;
+        // The slack variable of an equality or ranged constraint starts
+        // above its upper bound when b is positive but past the range so it
+        // is complemented to start below zero instead
+        if (hasUpperBounds) {
+            for (int i = 0; i < m; i++) {
+                if (b[i] > upperBounds[basicVars[i]]) {
+                    complementRow(i);
+                }
+            }
+        }
+
+        int kRow = -1;
         double bk = Double.POSITIVE_INFINITY;
-        for (int i : basic) {
-            // The < is necessary for Bland's Rule
-            if (b.get(i) < bk) {
-                k = i;
-                bk = b.get(i);
+        for (int i = 0; i < m; i++) {
+            if (free[basicVars[i]] != 0) continue;
+            // Ties go to the smallest basic variable for Bland's Rule
+            if (b[i] < bk || (b[i] == bk && basicVars[i] < basicVars[kRow])) {
+                kRow = i;
+                bk = b[i];
             }
         }
         // Basic solution is feasible
@@ -197,51 +1598,51 @@ public class SimplexState {
 
         // Create auxiliary linear program to determine feasibility
 
-        // Clone objective function because in the auxiliary linear program we will
-        // be using a different objective function
-        ArrayList<Double> oldC = new ArrayList<>(c);
-        double oldObjConst = objConst;
-        // Remember what were the nonbasic variables
-        TreeSet<Integer> oldNonBasic = new TreeSet<>(nonBasic);
+        // Remember the original objective function because in the
+        // auxiliary linear program we will be using a different objective
+        // function. The pivots below keep it up to date.
+        System.arraycopy(c, 0, phaseTwoC, 0, k);
+        phaseTwoC[k] = 0.0;
+        phaseTwoObjConst = objConst;
 
         // In CLRS, the auxiliary variable is x0 which we will
-        // assign id being the last index
+        // assign id being the last index and the reserved last column
         int auxVar = n;
+        int auxCol = k;
 
-        // New row in A matrix for the auxiliary variable
-        ArrayList<Double> newRow = new ArrayList<>(n+1);
-        for (int i = 0; i < n; i++) {
-            if (basic.contains(i)) {
-                // Add auxiliary variable to each constraint
-                A.get(i).add(-1.0);
-            } else {
-                A.get(i).add(0.0);
+        for (int i = 0; i < m; i++) {
+            // Add auxiliary variable to each constraint so that raising it
+            // to -bk raises every basic variable by -bk. That could push a
+            // basic variable with an upper bound past it so such a variable
+            // instead gets the weight raising it exactly to zero if it is
+            // negative and is left alone otherwise.
+            double w = -1.0;
+            if (upperBounds[basicVars[i]] != Double.POSITIVE_INFINITY) {
+                w = (b[i] < 0) ? b[i] / -bk : 0.0;
             }
-            // Add n entries for the new row (but add last column for
-            // auxiliary variable later)
-            newRow.add(0.0);
-
-            // New objective function only has auxiliary variable in it
-            // so zero out all other variables
-            c.set(i, 0.0);
+            A.set((long) i*stride + auxCol, w);
         }
-        // Add new row in A matrix for the auxiliary variable
-        newRow.add(0.0);
-        A.add(newRow);
 
-        // Set the new objective function
+        // Set the new objective function which only has the auxiliary
+        // variable in it so zero out all other variables
         objConst = 0.0;
-        c.add(-1.0);
+        Arrays.fill(c, 0.0);
+        c[auxCol] = -1.0;
 
         // Bookkeep by "registering" this new auxiliary variable
         n++;
-        nonBasic.add(auxVar);
-        b.add(0.0);
+        nonBasicVars[auxCol] = auxVar;
+        colOf[auxVar] = auxCol;
+        rowOf[auxVar] = -1;
 
         // Pivot the auxiliary linear program so that basic solution is feasible
-        pivot(auxVar, k);
+        phaseOne = true;
+        pivot(auxVar, basicVars[kRow]);
         // Solve the auxiliary linear program
         simplexPivot();
+        if (lostAccuracy) {
+            return false;
+        }
         if (Math.abs(objConst) < EPSILON) {
             // Simplex pivoting will always end with a slack form where the
             // basic solution is feasible and optimal.
@@ -251,7 +1652,7 @@ public class SimplexState {
             // has objective value objConst, which is (basically) 0, implies that
             // the current, final slack form is feasible in the original
             // linear program and we know the auxiliary variable is 0.
-            if (basic.contains(auxVar)) {
+            if (rowOf[auxVar] != -1) {
                 // Perform degenerate pivot with the auxiliary variable
                 // to make it nonbasic so basic solution in the auxiliary
                 // linear program is also feasible in the original linear
@@ -266,57 +1667,48 @@ public class SimplexState {
                 //
                 // Choose the entering variable to pivot with the basic auxiliary variable
                 // to have the largest coefficient magnitude for numerical stability
+                long rowAux = (long) rowOf[auxVar]*stride;
                 int e = -1;
                 double maxWeight = Double.NEGATIVE_INFINITY;
-                for (int j : nonBasic) {
-                    double w = Math.abs(getA(auxVar, j));
-                    if (w > maxWeight) {
-                        e = j;
+                for (int j = 0; j <= k; j++) {
+                    double w = Math.abs(A.get(rowAux + j));
+                    if (w > maxWeight || (w == maxWeight && nonBasicVars[j] < e)) {
+                        e = nonBasicVars[j];
                         maxWeight = w;
                     }
                 }
                 pivot(e, auxVar);
             }
+            phaseOne = false;
 
-            // Restore original linear program by popping off the last
-            // entry/column which represents the auxiliary variable we
-            // added
-            b.remove(auxVar);
-            nonBasic.remove(auxVar);
-            n--;
-            for (int i = 0; i < n; i++) {
-                // Remove auxiliary variable from each constraint
-                A.get(i).remove(auxVar);
-            }
-            // Remove last row with auxiliary variable
-            A.remove(auxVar);
-
-            // Restore objective function
-            // Objective function may contain basic variables so substitute them
-            ArrayList<Double> substitutedC = new ArrayList<>(n);
-            for (int i = 0; i < n; i++) {
-                substitutedC.add(0.0);
-            }
-            for (int i : oldNonBasic) {
-                // Check if that variable is basic or nonbasic in the transformed
-                // linear program
-                if (nonBasic.contains(i)) {
-                    // The variable is still nonbasic so just add the weight
-                    substitutedC.set(i, substitutedC.get(i) + oldC.get(i));
-                } else {
-                    // The variable became basic so perform substitution
-                    oldObjConst = oldObjConst + oldC.get(i)*b.get(i);
-                    for (int j : nonBasic) {
-                        substitutedC.set(j, substitutedC.get(j) - oldC.get(i)*getA(i, j));
-                    }
+            // Restore original linear program by moving the variable in the
+            // reserved last column into the auxiliary variable's column which
+            // drops the auxiliary variable from every constraint
+            int q = colOf[auxVar];
+            if (q != auxCol) {
+                int moved = nonBasicVars[auxCol];
+                for (int i = 0; i < m; i++) {
+                    A.set((long) i*stride + q, A.get((long) i*stride + auxCol));
                 }
+                nonBasicVars[q] = moved;
+                colOf[moved] = q;
+                phaseTwoC[q] = phaseTwoC[auxCol];
+            }
+            for (int i = 0; i < m; i++) {
+                A.set((long) i*stride + auxCol, 0.0);
             }
+            colOf[auxVar] = -1;
+            n--;
 
-            c = substitutedC;
-            objConst = oldObjConst;
+            // Restore the original objective function which the pivots
+            // already expressed in terms of the nonbasic variables
+            System.arraycopy(phaseTwoC, 0, c, 0, k);
+            c[auxCol] = 0.0;
+            objConst = phaseTwoObjConst;
 
             return true;
         } else {
+            phaseOne = false;
             // Optimal solution to auxiliary linear program has non-zero objective value
             // which means there is no feasible solution
             return false;
@@ -329,64 +1721,193 @@ public class SimplexState {
      * @return a solution to the linear program
      */
     public Solution solve() {
-        boolean isFeasible = initializeSimplex();
+        return solve(null);
+    }
+
+    /**
+     * Solves the current linear program
+     * @param buffer array to write the variable values of the solution to
+     *               if it is long enough or null to allocate a new one
+     * @return a solution to the linear program
+     */
+    public Solution solve(double[] buffer) {
+        // Fixed slacks are crashed out even when the slack basis is feasible
+        // since a basic variable which can't move stalls every pivot through
+        // its row and can't be perturbed away from its bound
+        if (useCrashBasis) {
+            crashBasis();
+        }
+        boolean isFeasible = hasValidBounds() && initializeSimplex();
         if (!isFeasible) {
-            return new Solution(SolutionResult.INFEASIBLE, null, 0.0);
+            return finish(new Solution(SolutionResult.INFEASIBLE, null, 0.0));
         }
 
+        // Perturbing b only changes where the basic variables are so an
+        // unbounded perturbed linear program is unbounded too
+        if (rhsShift != null) {
+            perturbBounds();
+        }
         boolean isBounded = simplexPivot();
+        if (isBounded && perturbed && !lostAccuracy) {
+            if (!removePerturbation()) {
+                return finish(new Solution(SolutionResult.INFEASIBLE, null, 0.0));
+            }
+            isBounded = simplexPivot();
+        }
         if (!isBounded) {
-            return new Solution(SolutionResult.UNBOUNDED, null, Double.POSITIVE_INFINITY);
+            return finish(new Solution(SolutionResult.UNBOUNDED, null, Double.POSITIVE_INFINITY));
+        }
+        return basicSolution(buffer);
+    }
+
+    /**
+     * @return false if a variable has a negative upper bound which no value
+     * satisfies and true otherwise
+     */
+    private boolean hasValidBounds() {
+        for (int j = 0; j < n; j++) {
+            if (upperBounds[j] < 0) return false;
         }
+        return true;
+    }
+
+    /**
+     * Reads off the basic solution which is optimal once pivoting stops
+     * @param buffer array to write the variable values of the solution to
+     *               if it is long enough or null to allocate a new one
+     * @return the basic solution
+     */
+    private Solution basicSolution(double[] buffer) {
         // Optimal solution is the basic solution
-        ArrayList<Double> solution = new ArrayList<>(n);
+        double[] solution = (buffer != null && buffer.length >= n) ? buffer : new double[n];
         for (int i = 0; i < n; i++) {
-            if (nonBasic.contains(i)) {
-                solution.add(0.0);
-            } else {
-                solution.add(b.get(i));
+            double value = (rowOf[i] == -1) ? 0.0 : b[rowOf[i]];
+            // Complemented variables hold their distance to the upper bound
+            // while complemented free variables hold their negation
+            solution[i] = (complemented[i] != 0) ? complementBase(i) - value : value;
+        }
+        // The dual of a constraint is minus the objective weight of its
+        // slack variable which is zero while the slack variable is basic.
+        // Like the values the duals live in a buffer the next solve on
+        // this thread may reuse.
+        double[] duals = doubles(SolverWorkspace.DUALS, m);
+        for (int i = 0; i < m; i++) {
+            int col = colOf[k + i];
+            if (col != -1) {
+                duals[i] = (complemented[k + i] != 0) ? c[col] : -c[col];
             }
         }
-        return new Solution(SolutionResult.FEASIBLE, solution, objConst);
+        Solution res = new Solution(SolutionResult.FEASIBLE, solution, n, objConst);
+        res.setDuals(duals);
+        return finish(res);
     }
 
     /**
-     * Creates an empty m by n matrix initialized to all zeroes
-     * @param m number of rows
-     * @param n number of columns
-     * @return an empty m by n matrix
+     * Solves the current linear program with the dual simplex algorithm.
+     * The basic solution must be dual feasible.
+     * @param buffer array to write the variable values of the solution to
+     *               if it is long enough or null to allocate a new one
+     * @return a solution to the linear program
      */
-    private ArrayList<ArrayList<Double>> getEmptyMatrix(int m, int n) {
-        assert m >= 0 && n >= 0;
-        ArrayList<ArrayList<Double>> res = new ArrayList<>(m);
-        for (int i = 0; i < m; i++) {
-            ArrayList<Double> row = new ArrayList<>(n);
-            for (int j = 0; j < n; j++) {
-                row.add(0.0);
+    public Solution solveDual(double[] buffer) {
+        boolean isFeasible = hasValidBounds();
+        if (isFeasible) {
+            // Perturbing c only changes which dual basic solution is
+            // optimal so an infeasible perturbed linear program is
+            // infeasible too
+            if (costShift != null) {
+                perturbCosts();
             }
-            res.add(row);
+            isFeasible = dualSimplexPivot() && (!perturbed || removePerturbation());
+        }
+        if (!isFeasible) {
+            return finish(new Solution(SolutionResult.INFEASIBLE, null, 0.0));
+        }
+
+        // Primal pivots clean up coefficients that round-off left
+        // slightly positive
+        boolean isBounded = simplexPivot();
+        if (!isBounded) {
+            return finish(new Solution(SolutionResult.UNBOUNDED, null, Double.POSITIVE_INFINITY));
+        }
+        return basicSolution(buffer);
+    }
+
+    /**
+     * @return counts of the pivots performed so far
+     */
+    public SolverStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Attaches the statistics of this solve to its solution
+     * @param solution the solution found
+     * @return the solution
+     */
+    private Solution finish(Solution solution) {
+        solution.setStatistics(statistics);
+        return solution;
+    }
+
+    /**
+     * Releases the memory held by the tableau. The linear program must
+     * not be used afterwards.
+     */
+    @Override
+    public void close() {
+        A.close();
+        if (workspace != null) {
+            workspace.release();
         }
-        return res;
+    }
+
+    /**
+     * Gets a zeroed double buffer from the workspace or allocates one
+     * @param slot which workspace buffer to use
+     * @param length the minimum length of the buffer
+     * @return a buffer whose first length entries are zero
+     */
+    private double[] doubles(int slot, int length) {
+        return (workspace == null) ? new double[length] : workspace.doubles(slot, length);
+    }
+
+    /**
+     * Gets a zeroed int buffer from the workspace or allocates one
+     * @param slot which workspace buffer to use
+     * @param length the minimum length of the buffer
+     * @return a buffer whose first length entries are zero
+     */
+    private int[] ints(int slot, int length) {
+        return (workspace == null) ? new int[length] : workspace.ints(slot, length);
+    }
+
+    /**
+     * @return the number of columns currently in use which includes the
+     * auxiliary variable's column while initializeSimplex() runs
+     */
+    private int numColumns() {
+        return n - m;
     }
 
     /**
      * Helper function to assign a value to A[i][j]
-     * @param i the row
-     * @param j the column
+     * @param i the basic variable
+     * @param j the nonbasic variable
      * @param v the new value
      */
     public void updateA(int i, int j, double v) {
-        A.get(i).set(j, v);
+        A.set((long) rowOf[i]*stride + colOf[j], v);
     }
 
     /**
      * Helper function get A[i][j]
-     * @param i the row
-     * @param j the column
+     * @param i the basic variable
+     * @param j the nonbasic variable
      * @return the value of A[i][j]
      */
     public double getA(int i, int j) {
-        return A.get(i).get(j);
+        return A.get((long) rowOf[i]*stride + colOf[j]);
     }
 
     /**
@@ -402,8 +1923,9 @@ public class SimplexState {
 
         ArrayList<String> terms = new ArrayList<>();
         terms.add(objConst + "");
-        for (int i : nonBasic) {
-            double w = c.get(i);
+        for (int i = 0; i < n; i++) {
+            if (colOf[i] == -1) continue;
+            double w = c[colOf[i]];
             if (w != 0) {
                 terms.add(String.format("(%f)x_%d", w, i));
             }
@@ -413,16 +1935,18 @@ public class SimplexState {
         res.append("CONSTRAINTS:\n");
 
         // Print slack equality constraints
-        for (int i : basic) {
+        for (int i = 0; i < n; i++) {
+            if (rowOf[i] == -1) continue;
             terms = new ArrayList<>();
-            for (int j : nonBasic) {
+            for (int j = 0; j < n; j++) {
+                if (colOf[j] == -1) continue;
                 double w = getA(i, j);
                 if (w != 0) {
                     terms.add(String.format("(%f)x_%d", w, j));
                 }
             }
 
-            res.append(String.format("\tx_%d = %f - ( %s )", i, b.get(i), String.join(" + ", terms)));
+            res.append(String.format("\tx_%d = %f - ( %s )", i, b[rowOf[i]], String.join(" + ", terms)));
             res.append("\n");
         }
 
@@ -4,12 +4,41 @@ import java.util.ArrayList;
 
 public class Solution {
     private SolutionResult status;
-    private ArrayList<Double> solution;
+    // Values of the variables where only the first numValues entries are
+    // used. The array may be a buffer reused across solves.
+    private double[] values;
+    private int numValues;
     private double objectiveValue;
+    // Values of the dual variables of the constraints or null if the
+    // engine did not report them. The array may be a buffer reused across
+    // solves and may be longer than the number of constraints.
+    private double[] duals;
+    private SolverStatistics statistics = new SolverStatistics();
 
     public Solution(SolutionResult status, ArrayList<Double> solution, double objectiveValue) {
         this.status = status;
-        this.solution = solution;
+        if (solution != null) {
+            this.numValues = solution.size();
+            this.values = new double[numValues];
+            for (int i = 0; i < numValues; i++) {
+                this.values[i] = solution.get(i);
+            }
+        }
+        this.objectiveValue = objectiveValue;
+    }
+
+    /**
+     * Creates a solution whose variable values are held in an array
+     * @param status the status of the solution
+     * @param values the values of the variables or null if there is no
+     *               feasible solution
+     * @param numValues the number of variables held in values
+     * @param objectiveValue the objective value of the solution
+     */
+    public Solution(SolutionResult status, double[] values, int numValues, double objectiveValue) {
+        this.status = status;
+        this.values = values;
+        this.numValues = numValues;
         this.objectiveValue = objectiveValue;
     }
 
@@ -18,10 +47,75 @@ public class Solution {
     }
 
     public ArrayList<Double> getSolution() {
-        return solution;
+        if (values == null) {
+            return null;
+        }
+        ArrayList<Double> res = new ArrayList<>(numValues);
+        for (int i = 0; i < numValues; i++) {
+            res.add(values[i]);
+        }
+        return res;
+    }
+
+    /**
+     * @param i the variable
+     * @return the value of the ith variable in the solution
+     */
+    public double getValue(int i) {
+        if (i >= numValues) {
+            throw new IndexOutOfBoundsException("Variable " + i + " is not part of the solution.");
+        }
+        return values[i];
+    }
+
+    /**
+     * @return the array holding the variable values which may be reused
+     * as a buffer by the next solve or null if there are none
+     */
+    public double[] getValues() {
+        return values;
+    }
+
+    /**
+     * @return the number of variables held in the solution
+     */
+    int getNumValues() {
+        return numValues;
     }
 
     public double getObjectiveValue() {
         return objectiveValue;
     }
+
+    /**
+     * @param i the constraint
+     * @return the value of the dual variable of the ith constraint which
+     * is how much the objective value grows per unit its bound grows
+     */
+    double getDual(int i) {
+        return duals[i];
+    }
+
+    /**
+     * @return the values of the dual variables of the constraints or null
+     * if there are none
+     */
+    double[] getDuals() {
+        return duals;
+    }
+
+    void setDuals(double[] duals) {
+        this.duals = duals;
+    }
+
+    /**
+     * @return counts of the work done to find this solution
+     */
+    public SolverStatistics getStatistics() {
+        return statistics;
+    }
+
+    void setStatistics(SolverStatistics statistics) {
+        this.statistics = statistics;
+    }
 }
@@ -0,0 +1,170 @@
+package solver;
+
+// This class is for internal use only.
+//
+// The linear programs derived from a standard form before an engine sees
+// it: the presolved form, the dual form when it is much cheaper and the
+// scaled copy of each linear program an engine may solve. None of them
+// depend on anything but the standard form and a few options so
+// LinearProgram keeps the plan next to its cached standard form and
+// repeated solves of an unchanged model reuse it instead of presolving,
+// dualizing and scaling the model again. Forms only needed when an earlier
+// attempt fails, like the primal form after an infeasible dual, are built
+// the first time they are needed.
+public class SolvePlan {
+    // The options the plan was made with
+    private final boolean presolveEnabled;
+    private final boolean dualFormEnabled;
+    private final boolean scalingEnabled;
+    private final boolean dualSimplexStart;
+
+    private final Presolve presolve;
+    private final StandardForm primal;
+    private final DualForm dualForm;
+    private EngineForm primalEngineForm;
+    private EngineForm dualEngineForm;
+
+    // Variable values of the last solution of the reduced linear program
+    // which the next solve may overwrite
+    private double[] reducedBuffer;
+
+    /**
+     * A linear program as an engine sees it
+     */
+    public class EngineForm {
+        private final StandardForm standardForm;
+        private final StandardFormScaling scaling;
+        private StandardForm scaledForm;
+
+        private EngineForm(StandardForm standardForm) {
+            this.standardForm = standardForm;
+            StandardFormScaling res = scalingEnabled ? new StandardFormScaling(standardForm) : null;
+            scaling = (res != null && res.isIdentity()) ? null : res;
+        }
+
+        /**
+         * @return the unscaled linear program
+         */
+        public StandardForm getStandardForm() {
+            return standardForm;
+        }
+
+        /**
+         * @return the scale factors to apply or null if the linear program
+         * is solved unscaled
+         */
+        public StandardFormScaling getScaling() {
+            return scaling;
+        }
+
+        /**
+         * @return a scaled copy of the linear program which is the linear
+         * program itself when it is solved unscaled
+         */
+        public StandardForm getScaledForm() {
+            if (scaling == null) {
+                return standardForm;
+            }
+            if (scaledForm == null) {
+                scaledForm = new StandardForm(standardForm.getNumVariables());
+                scaling.writeTo(standardForm, scaledForm);
+            }
+            return scaledForm;
+        }
+    }
+
+    /**
+     * Presolves a linear program and decides whether its dual is solved
+     * instead
+     * @param standardForm the linear program which must not change while
+     *                     the plan is used
+     * @param options the options to plan for
+     */
+    public SolvePlan(StandardForm standardForm, SolverOptions options) {
+        presolveEnabled = options.isPresolve();
+        dualFormEnabled = options.isAutomaticDualForm();
+        scalingEnabled = options.isScaling();
+        dualSimplexStart = startsDualSimplex(options);
+
+        presolve = presolveEnabled ? new Presolve(standardForm) : null;
+        if (presolve != null && presolve.getStatus() != null) {
+            // Presolve already decided the linear program
+            primal = null;
+            dualForm = null;
+            return;
+        }
+        primal = (presolve != null) ? presolve.getReducedForm() : standardForm;
+        dualForm = (dualFormEnabled && DualForm.isCheaper(primal, dualSimplexStart)) ? new DualForm(primal) : null;
+    }
+
+    /**
+     * @param options solver options
+     * @return whether the engine starts the dual simplex algorithm from a
+     * dual feasible basis
+     */
+    private static boolean startsDualSimplex(SolverOptions options) {
+        return options.isDualSimplex() && options.getEngine() == SolverEngine.TABLEAU;
+    }
+
+    /**
+     * @param options the options of the next solve
+     * @return true if the plan was made with the same options
+     */
+    public boolean isFor(SolverOptions options) {
+        return presolveEnabled == options.isPresolve() && dualFormEnabled == options.isAutomaticDualForm()
+                && scalingEnabled == options.isScaling() && dualSimplexStart == startsDualSimplex(options);
+    }
+
+    /**
+     * @return the presolve of the linear program or null if it is not
+     * presolved
+     */
+    public Presolve getPresolve() {
+        return presolve;
+    }
+
+    /**
+     * @return the dual form to solve first or null if the dual is not
+     * cheaper
+     */
+    public DualForm getDualForm() {
+        return dualForm;
+    }
+
+    /**
+     * @return the reduced linear program, or the linear program itself if
+     * it is not presolved, as an engine sees it
+     */
+    public EngineForm getPrimalEngineForm() {
+        if (primalEngineForm == null) {
+            primalEngineForm = new EngineForm(primal);
+        }
+        return primalEngineForm;
+    }
+
+    /**
+     * @return the dual linear program as an engine sees it
+     */
+    public EngineForm getDualEngineForm() {
+        if (dualEngineForm == null) {
+            dualEngineForm = new EngineForm(dualForm.getDualForm());
+        }
+        return dualEngineForm;
+    }
+
+    /**
+     * @return the values of the last solution of the reduced linear
+     * program or null if there is none
+     */
+    public double[] getReducedBuffer() {
+        return reducedBuffer;
+    }
+
+    /**
+     * @param reducedBuffer the values of a solution of the reduced linear
+     *                      program
+     */
+    public void setReducedBuffer(double[] reducedBuffer) {
+        this.reducedBuffer = reducedBuffer;
+    }
+}
@@ -0,0 +1,11 @@
+package solver;
+
+public enum SolverEngine {
+    // Dense slack form tableau updated in full on every pivot
+    TABLEAU,
+    // Revised simplex method keeping an LU factorization of the basis
+    REVISED,
+    // Primal-dual interior point method whose solution is turned into an
+    // optimal basis by the revised simplex method
+    INTERIOR_POINT
+}
@@ -0,0 +1,285 @@
+package solver;
+
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+public class SolverOptions {
+    private TableauBackend tableauBackend = TableauBackend.HEAP;
+    private Path mappedFileDirectory = null;
+    private boolean parallelPivot = false;
+    private long parallelPivotThreshold = 1 << 18;
+    private ForkJoinPool pivotPool = null;
+    private boolean reuseBuffers = true;
+    private SolverEngine engine = SolverEngine.TABLEAU;
+    private int refactorizationInterval = 100;
+    private boolean dualSimplex = true;
+    private PricingRule pricingRule = PricingRule.DANTZIG;
+    private int partialPricingWindow = 0;
+    private int candidateListSize = 1;
+    private boolean crashBasis = true;
+    private boolean perturbation = true;
+    private boolean scaling = true;
+    private boolean presolve = true;
+    private boolean automaticDualForm = true;
+
+    /**
+     * Creates solver options holding the default settings
+     */
+    public SolverOptions() {
+    }
+
+    public TableauBackend getTableauBackend() {
+        return tableauBackend;
+    }
+
+    /**
+     * Chooses where the simplex tableau is stored. Tableaus that do not
+     * fit in the Java heap can be stored off-heap or in a memory-mapped
+     * temporary file. Off-heap tableaus count against
+     * -XX:MaxDirectMemorySize unless the optional memory segment backend
+     * is available and native access is enabled.
+     * @param tableauBackend the storage backend for the tableau
+     */
+    public void setTableauBackend(TableauBackend tableauBackend) {
+        this.tableauBackend = tableauBackend;
+    }
+
+    public Path getMappedFileDirectory() {
+        return mappedFileDirectory;
+    }
+
+    /**
+     * Sets the directory holding the temporary file of the memory-mapped
+     * tableau backend
+     * @param mappedFileDirectory the directory or null to use the default
+     *                            temporary-file directory
+     */
+    public void setMappedFileDirectory(Path mappedFileDirectory) {
+        this.mappedFileDirectory = mappedFileDirectory;
+    }
+
+    public boolean isParallelPivot() {
+        return parallelPivot;
+    }
+
+    /**
+     * Enables splitting the row updates of each pivot across threads.
+     * Pivots touching fewer tableau entries than the parallel pivot
+     * threshold still run on the calling thread.
+     * @param parallelPivot whether pivots may run on multiple threads
+     */
+    public void setParallelPivot(boolean parallelPivot) {
+        this.parallelPivot = parallelPivot;
+    }
+
+    public long getParallelPivotThreshold() {
+        return parallelPivotThreshold;
+    }
+
+    /**
+     * Sets the smallest number of tableau entries (rows times columns)
+     * for which a parallel pivot is worth the cost of splitting it
+     * across threads
+     * @param parallelPivotThreshold the minimum number of tableau entries
+     */
+    public void setParallelPivotThreshold(long parallelPivotThreshold) {
+        this.parallelPivotThreshold = parallelPivotThreshold;
+    }
+
+    public ForkJoinPool getPivotPool() {
+        return (pivotPool == null) ? ForkJoinPool.commonPool() : pivotPool;
+    }
+
+    public boolean isReuseBuffers() {
+        return reuseBuffers;
+    }
+
+    /**
+     * Enables reusing the tableau and basis bookkeeping of the previous
+     * solve on the same thread. This saves allocating them on every solve
+     * when many linear programs are solved one after another.
+     * @param reuseBuffers whether solves reuse per-thread buffers
+     */
+    public void setReuseBuffers(boolean reuseBuffers) {
+        this.reuseBuffers = reuseBuffers;
+    }
+
+    /**
+     * Sets the thread pool running parallel pivots
+     * @param pivotPool the pool to use or null to use the common pool
+     */
+    public void setPivotPool(ForkJoinPool pivotPool) {
+        this.pivotPool = pivotPool;
+    }
+
+    public SolverEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Chooses the algorithm that solves the linear program
+     * @param engine the solver engine to use
+     */
+    public void setEngine(SolverEngine engine) {
+        this.engine = engine;
+    }
+
+    public int getRefactorizationInterval() {
+        return refactorizationInterval;
+    }
+
+    /**
+     * Sets how many basis changes the revised simplex engine applies as
+     * eta updates before factorizing the basis from scratch
+     * @param refactorizationInterval the number of updates between
+     *                                factorizations
+     */
+    public void setRefactorizationInterval(int refactorizationInterval) {
+        if (refactorizationInterval < 1) {
+            throw new IllegalArgumentException("Refactorization interval must be positive.");
+        }
+        this.refactorizationInterval = refactorizationInterval;
+    }
+
+    public boolean isDualSimplex() {
+        return dualSimplex;
+    }
+
+    /**
+     * Enables solving with the dual simplex algorithm when the starting
+     * basic solution is dual feasible but not feasible, which skips the
+     * auxiliary linear program that finds a feasible basic solution
+     * @param dualSimplex whether the dual simplex algorithm may be used
+     */
+    public void setDualSimplex(boolean dualSimplex) {
+        this.dualSimplex = dualSimplex;
+    }
+
+    public PricingRule getPricingRule() {
+        return pricingRule;
+    }
+
+    /**
+     * Chooses how the entering variable of each pivot is picked. Every
+     * rule falls back to Bland's rule during long runs of degenerate pivots.
+     * @param pricingRule the pricing rule to use
+     */
+    public void setPricingRule(PricingRule pricingRule) {
+        this.pricingRule = pricingRule;
+    }
+
+    public int getPartialPricingWindow() {
+        return partialPricingWindow;
+    }
+
+    /**
+     * Enables partial pricing which looks for an entering variable in
+     * windows of columns, continuing where the last pivot stopped, instead
+     * of scanning every column on each pivot
+     * @param partialPricingWindow the number of columns per window or zero
+     *                             to scan every column
+     */
+    public void setPartialPricingWindow(int partialPricingWindow) {
+        if (partialPricingWindow < 0) {
+            throw new IllegalArgumentException("Partial pricing window must not be negative.");
+        }
+        this.partialPricingWindow = partialPricingWindow;
+    }
+
+    public int getCandidateListSize() {
+        return candidateListSize;
+    }
+
+    /**
+     * Enables multiple pricing which keeps the best columns found by a
+     * pricing scan and picks the entering variables of the following
+     * pivots from them until none is attractive anymore
+     * @param candidateListSize the number of columns kept or one to scan
+     *                          for every pivot
+     */
+    public void setCandidateListSize(int candidateListSize) {
+        if (candidateListSize < 1) {
+            throw new IllegalArgumentException("Candidate list size must be positive.");
+        }
+        this.candidateListSize = candidateListSize;
+    }
+
+    public boolean isCrashBasis() {
+        return crashBasis;
+    }
+
+    /**
+     * Enables building a triangular starting basis of the tableau engine
+     * from the structure of the constraints, which pivots structural
+     * variables into the rows of equality constraints and of constraints
+     * violated by the slack basis before the auxiliary linear program is
+     * solved. The crash runs on every solve while this is set, even when
+     * the slack basis is feasible, since a slack fixed at zero stalls every
+     * pivot through its row.
+     * @param crashBasis whether the starting basis may be crashed
+     */
+    public void setCrashBasis(boolean crashBasis) {
+        this.crashBasis = crashBasis;
+    }
+
+    public boolean isPerturbation() {
+        return perturbation;
+    }
+
+    /**
+     * Enables perturbing the linear program slightly while the tableau
+     * engine pivots so that degenerate pivots, which do not improve the
+     * objective function, become rare. The perturbation is removed once
+     * pivoting stops and the solution is for the exact linear program.
+     * @param perturbation whether the linear program may be perturbed
+     */
+    public void setPerturbation(boolean perturbation) {
+        this.perturbation = perturbation;
+    }
+
+    public boolean isScaling() {
+        return scaling;
+    }
+
+    /**
+     * Enables scaling the rows and columns of the linear program so that
+     * its weights are close to one in magnitude before it is solved.
+     * Solutions are unscaled again before they are returned.
+     * @param scaling whether the linear program may be scaled
+     */
+    public void setScaling(boolean scaling) {
+        this.scaling = scaling;
+    }
+
+    public boolean isPresolve() {
+        return presolve;
+    }
+
+    /**
+     * Enables removing empty, singleton and duplicate rows as well as
+     * fixed and unused variables before the linear program is solved.
+     * Presolve also tightens variable bounds implied by the constraints
+     * and may find the linear program infeasible or unbounded on its own.
+     * Solutions are mapped back to the full linear program.
+     * @param presolve whether the linear program may be presolved
+     */
+    public void setPresolve(boolean presolve) {
+        this.presolve = presolve;
+    }
+
+    public boolean isAutomaticDualForm() {
+        return automaticDualForm;
+    }
+
+    /**
+     * Enables solving the dual of the linear program instead when it has
+     * so many more constraints than variables that its dual is much
+     * smaller to pivot. The solution is recovered from the optimal basis
+     * of the dual and is no different from solving the linear program
+     * itself.
+     * @param automaticDualForm whether the dual may be solved instead
+     */
+    public void setAutomaticDualForm(boolean automaticDualForm) {
+        this.automaticDualForm = automaticDualForm;
+    }
+}
@@ -0,0 +1,166 @@
+package solver;
+
+// Counts of the work done by a solve
+public class SolverStatistics {
+    private int numIterations;
+    private int numPhaseOneIterations;
+    private int numDualIterations;
+    private int numBlandIterations;
+    private int numBoundFlips;
+    private int numCrashPivots;
+    private int numCrashInfeasibilitiesRemoved;
+    private int numDegeneratePivots;
+    private int numPresolvedRows;
+    private int numPresolvedColumns;
+    private int numBarrierIterations;
+    private int numTableauIterations;
+
+    /**
+     * @return the total number of pivots
+     */
+    public int getNumIterations() {
+        return numIterations;
+    }
+
+    /**
+     * @return the number of pivots spent finding a feasible basic solution
+     */
+    public int getNumPhaseOneIterations() {
+        return numPhaseOneIterations;
+    }
+
+    /**
+     * @return the number of pivots made by the dual simplex algorithm
+     */
+    public int getNumDualIterations() {
+        return numDualIterations;
+    }
+
+    /**
+     * @return the number of pivots chosen by Bland's rule after degenerate
+     * pivots stalled the selected pricing rule
+     */
+    public int getNumBlandIterations() {
+        return numBlandIterations;
+    }
+
+    /**
+     * @return the number of times a nonbasic variable moved from one of its
+     * bounds to the other without a pivot
+     */
+    public int getNumBoundFlips() {
+        return numBoundFlips;
+    }
+
+    /**
+     * @return the number of pivots made by the crash procedure building the
+     * starting basis which are also counted as iterations
+     */
+    public int getNumCrashPivots() {
+        return numCrashPivots;
+    }
+
+    /**
+     * @return the number of basic variables outside of their bounds in the
+     * slack basis minus the number in the basis built by the crash
+     * procedure, which the auxiliary linear program no longer has to
+     * repair
+     */
+    public int getNumCrashInfeasibilitiesRemoved() {
+        return numCrashInfeasibilitiesRemoved;
+    }
+
+    /**
+     * @return the number of primal pivots and bound flips that did not
+     * move the basic solution
+     */
+    public int getNumDegeneratePivots() {
+        return numDegeneratePivots;
+    }
+
+    /**
+     * @return the number of rows presolve removed before the linear
+     * program was pivoted
+     */
+    public int getNumPresolvedRows() {
+        return numPresolvedRows;
+    }
+
+    /**
+     * @return the number of columns presolve removed before the linear
+     * program was pivoted
+     */
+    public int getNumPresolvedColumns() {
+        return numPresolvedColumns;
+    }
+
+    /**
+     * @return the number of interior point iterations before crossover to
+     * an optimal basis
+     */
+    public int getNumBarrierIterations() {
+        return numBarrierIterations;
+    }
+
+    /**
+     * @return the number of tableau pivots made before a pivot element lost
+     * to round-off handed the basis to the revised simplex method, or zero
+     * if the tableau finished the solve
+     */
+    public int getNumTableauIterations() {
+        return numTableauIterations;
+    }
+
+    void addIteration(boolean phaseOne) {
+        numIterations++;
+        if (phaseOne) {
+            numPhaseOneIterations++;
+        }
+    }
+
+    void addDualIteration() {
+        numDualIterations++;
+    }
+
+    void addBlandIteration() {
+        numBlandIterations++;
+    }
+
+    void addBoundFlip() {
+        numBoundFlips++;
+    }
+
+    void addCrashPivot() {
+        numCrashPivots++;
+    }
+
+    void setCrashInfeasibilitiesRemoved(int numInfeasibilities) {
+        numCrashInfeasibilitiesRemoved = numInfeasibilities;
+    }
+
+    void addDegeneratePivot() {
+        numDegeneratePivots++;
+    }
+
+    void setPresolveReductions(int numRows, int numColumns) {
+        numPresolvedRows = numRows;
+        numPresolvedColumns = numColumns;
+    }
+
+    void setBarrierIterations(int numIterations) {
+        numBarrierIterations = numIterations;
+    }
+
+    void setTableauIterations(int numIterations) {
+        numTableauIterations = numIterations;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d iterations (%d crash removing %d infeasibilities, %d phase 1, %d dual, %d Bland, %d degenerate), "
+                        + "%d bound flips, %d rows and %d columns presolved, %d barrier iterations, %d tableau iterations",
+                numIterations, numCrashPivots, numCrashInfeasibilitiesRemoved, numPhaseOneIterations, numDualIterations, numBlandIterations,
+                numDegeneratePivots, numBoundFlips, numPresolvedRows, numPresolvedColumns, numBarrierIterations,
+                numTableauIterations);
+    }
+}
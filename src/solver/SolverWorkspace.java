@@ -0,0 +1,110 @@
+package solver;
+
+import java.util.Arrays;
+
+// This class is for internal use only.
+//
+// Buffers reused by consecutive solves on the same thread so that solving
+// many small linear programs does not allocate a new tableau and new basis
+// bookkeeping every time. Buffers only grow, so once a thread has solved
+// its largest linear program later solves allocate nothing for them.
+public class SolverWorkspace {
+    // Slots for double buffers
+    public static final int TABLEAU = 0;
+    public static final int B = 1;
+    public static final int C = 2;
+    public static final int PIVOT_ROW = 3;
+    public static final int PIVOT_COL = 4;
+    public static final int PIVOT_VALS = 5;
+    public static final int OBJECTIVE = 6;
+    public static final int UPPER_BOUNDS = 7;
+    public static final int RHS_SHIFT = 8;
+    public static final int COST_SHIFT = 9;
+    public static final int DUALS = 10;
+    public static final int CRASH_COL_MAX = 11;
+    public static final int CRASH_PREFERENCE = 12;
+    private static final int NUM_DOUBLE_SLOTS = 13;
+
+    // Slots for int buffers
+    public static final int BASIC_VARS = 0;
+    public static final int NONBASIC_VARS = 1;
+    public static final int ROW_OF = 2;
+    public static final int COL_OF = 3;
+    public static final int PIVOT_COLS = 4;
+    public static final int COMPLEMENTED = 5;
+    public static final int FREE = 6;
+    public static final int CRASH_OPEN = 7;
+    public static final int CRASH_COUNT = 8;
+    public static final int CRASH_CANDIDATES = 9;
+    public static final int CRASH_ROWS = 10;
+    public static final int CRASH_VARS = 11;
+    private static final int NUM_INT_SLOTS = 12;
+
+    private static final ThreadLocal<SolverWorkspace> CURRENT = ThreadLocal.withInitial(SolverWorkspace::new);
+
+    private final double[][] doubleBuffers = new double[NUM_DOUBLE_SLOTS][0];
+    private final int[][] intBuffers = new int[NUM_INT_SLOTS][0];
+    private boolean inUse = false;
+
+    private SolverWorkspace() {
+    }
+
+    /**
+     * Takes the current thread's workspace for the duration of a solve
+     * @return the current thread's workspace or null if it is already
+     * being used by another solve on this thread
+     */
+    public static SolverWorkspace acquire() {
+        SolverWorkspace res = CURRENT.get();
+        if (res.inUse) {
+            return null;
+        }
+        res.inUse = true;
+        return res;
+    }
+
+    /**
+     * Returns the workspace so the next solve on this thread can use it
+     */
+    public void release() {
+        inUse = false;
+    }
+
+    /**
+     * Gets a double buffer with at least the given length where the first
+     * length entries are zero
+     * @param slot which buffer to get
+     * @param length the minimum length
+     * @return the buffer
+     */
+    public double[] doubles(int slot, int length) {
+        double[] res = doubleBuffers[slot];
+        if (res.length < length) {
+            // Grow by half again so a sequence of slightly larger linear
+            // programs does not reallocate every time
+            res = new double[Math.max(length, res.length + (res.length >> 1))];
+            doubleBuffers[slot] = res;
+        } else {
+            Arrays.fill(res, 0, length, 0.0);
+        }
+        return res;
+    }
+
+    /**
+     * Gets an int buffer with at least the given length where the first
+     * length entries are zero
+     * @param slot which buffer to get
+     * @param length the minimum length
+     * @return the buffer
+     */
+    public int[] ints(int slot, int length) {
+        int[] res = intBuffers[slot];
+        if (res.length < length) {
+            res = new int[Math.max(length, res.length + (res.length >> 1))];
+            intBuffers[slot] = res;
+        } else {
+            Arrays.fill(res, 0, length, 0);
+        }
+        return res;
+    }
+}
@@ -0,0 +1,365 @@
+package solver;
+
+import java.util.Arrays;
+
+// This class is for internal use only.
+//
+// Sparse Cholesky factorization of the normal equations matrix
+//
+//      M = A * diag(theta) * A^T
+//
+// of an interior point method where A is a sparse m x N matrix and theta a
+// positive weight per column. The sparsity pattern of M only depends on A
+// so the rows are ordered once by the minimum degree heuristic, which
+// eliminates the row with the fewest neighbours in the elimination graph
+// first to keep the fill small, and the pattern of the factor
+//
+//      P M P^T = L L^T
+//
+// is found by the same elimination. Each factorization for new weights is
+// then numeric only and left-looking: column k of L is column k of M minus
+// the updates of the earlier columns with an entry in row k.
+//
+// Rows of A that depend on others give pivots that are zero up to
+// round-off. Their columns of L are dropped and the matching components of
+// the solution set to zero which solves the consistent part of the system.
+public class SparseCholesky {
+    // Pivots at most this fraction of the diagonal of M they came from are
+    // treated as zero
+    private static final double PIVOT_TOLERANCE = 1e-13;
+
+    private final int m;
+
+    // A stored by row and by column
+    private final int[] rowStart;
+    private final int[] rowColumn;
+    private final double[] rowValue;
+    private final int[] colStart;
+    private final int[] colRow;
+    private final double[] colValue;
+
+    private final int[] perm;  // elimination step -> row
+    private final int[] iperm; // row -> elimination step
+
+    // Strictly lower triangular part of L stored by column with the rows
+    // sorted by elimination step
+    private final int[] lStart;
+    private final int[] lIndex;
+    private final double[] lValue;
+    private final double[] diag;
+    private final boolean[] dropped;
+
+    // The columns of L with an entry in each row and the position of that
+    // entry in its column
+    private final int[] rowListStart;
+    private final int[] rowListColumn;
+    private final int[] rowListPosition;
+
+    private final double[] work;
+
+    /**
+     * Orders the rows of a sparse matrix and finds the sparsity pattern of
+     * the factor of its normal equations
+     * @param m the number of rows
+     * @param colStart start of each column in colRow and colValue followed
+     *                 by the number of nonzeros
+     * @param colRow the row of every nonzero stored by column
+     * @param colValue the value of every nonzero stored by column
+     */
+    public SparseCholesky(int m, int[] colStart, int[] colRow, double[] colValue) {
+        this.m = m;
+        this.colStart = colStart;
+        this.colRow = colRow;
+        this.colValue = colValue;
+        int numColumns = colStart.length - 1;
+        int nnz = colStart[numColumns];
+
+        rowStart = new int[m + 1];
+        for (int p = 0; p < nnz; p++) {
+            rowStart[colRow[p] + 1]++;
+        }
+        for (int i = 0; i < m; i++) {
+            rowStart[i + 1] += rowStart[i];
+        }
+        rowColumn = new int[nnz];
+        rowValue = new double[nnz];
+        int[] next = Arrays.copyOf(rowStart, m);
+        for (int k = 0; k < numColumns; k++) {
+            for (int p = colStart[k]; p < colStart[k + 1]; p++) {
+                int q = next[colRow[p]]++;
+                rowColumn[q] = k;
+                rowValue[q] = colValue[p];
+            }
+        }
+
+        perm = new int[m];
+        iperm = new int[m];
+        int[][] pattern = minimumDegree();
+
+        lStart = new int[m + 1];
+        for (int k = 0; k < m; k++) {
+            lStart[k + 1] = lStart[k] + pattern[k].length;
+        }
+        lIndex = new int[lStart[m]];
+        for (int k = 0; k < m; k++) {
+            for (int t = 0; t < pattern[k].length; t++) {
+                pattern[k][t] = iperm[pattern[k][t]];
+            }
+            Arrays.sort(pattern[k]);
+            System.arraycopy(pattern[k], 0, lIndex, lStart[k], pattern[k].length);
+        }
+        lValue = new double[lIndex.length];
+        diag = new double[m];
+        dropped = new boolean[m];
+
+        rowListStart = new int[m + 1];
+        for (int p = 0; p < lIndex.length; p++) {
+            rowListStart[lIndex[p] + 1]++;
+        }
+        for (int k = 0; k < m; k++) {
+            rowListStart[k + 1] += rowListStart[k];
+        }
+        rowListColumn = new int[lIndex.length];
+        rowListPosition = new int[lIndex.length];
+        next = Arrays.copyOf(rowListStart, m);
+        for (int j = 0; j < m; j++) {
+            for (int p = lStart[j]; p < lStart[j + 1]; p++) {
+                int t = next[lIndex[p]]++;
+                rowListColumn[t] = j;
+                rowListPosition[t] = p;
+            }
+        }
+
+        work = new double[m];
+    }
+
+    /**
+     * Eliminates the rows in minimum degree order on the graph of A A^T
+     * where two rows are neighbours if they share a column. Eliminating a
+     * row makes its remaining neighbours a clique and those neighbours are
+     * the pattern of its column of L.
+     * @return the rows of the pattern of each column of L in elimination
+     * order
+     */
+    private int[][] minimumDegree() {
+        int[][] adjacency = new int[m][];
+        int[] degree = new int[m];
+        int[] mark = new int[m];
+        Arrays.fill(mark, -1);
+        int[] list = new int[m];
+        for (int i = 0; i < m; i++) {
+            int size = 0;
+            mark[i] = i;
+            for (int p = rowStart[i]; p < rowStart[i + 1]; p++) {
+                int k = rowColumn[p];
+                for (int q = colStart[k]; q < colStart[k + 1]; q++) {
+                    int l = colRow[q];
+                    if (mark[l] != i) {
+                        mark[l] = i;
+                        list[size++] = l;
+                    }
+                }
+            }
+            adjacency[i] = Arrays.copyOf(list, size);
+            degree[i] = size;
+        }
+
+        // Heap of degree and row pairs. Rows are pushed again whenever
+        // their degree changes and stale entries are skipped.
+        long[] heap = new long[Math.max(16, m)];
+        int heapSize = 0;
+        for (int i = 0; i < m; i++) {
+            heap = push(heap, heapSize++, key(degree[i], i));
+        }
+
+        int[][] pattern = new int[m][];
+        boolean[] eliminated = new boolean[m];
+        Arrays.fill(mark, -1);
+        for (int step = 0; step < m; step++) {
+            int v;
+            while (true) {
+                long top = heap[0];
+                heap[0] = heap[--heapSize];
+                siftDown(heap, heapSize, 0);
+                v = (int) top;
+                if (!eliminated[v] && (int) (top >>> 32) == degree[v]) {
+                    break;
+                }
+            }
+            eliminated[v] = true;
+            perm[step] = v;
+            iperm[v] = step;
+
+            int[] neighbours = adjacency[v];
+            pattern[step] = neighbours;
+            adjacency[v] = null;
+            for (int u : neighbours) {
+                mark[u] = v;
+            }
+            for (int u : neighbours) {
+                // New neighbours of u are those of v it did not have
+                int[] old = adjacency[u];
+                int size = 0;
+                for (int w : old) {
+                    if (w != v) {
+                        list[size++] = w;
+                        if (mark[w] == v) {
+                            mark[w] = -2 - v;
+                        }
+                    }
+                }
+                for (int w : neighbours) {
+                    if (w != u && mark[w] == v) {
+                        list[size++] = w;
+                    }
+                }
+                for (int w : neighbours) {
+                    mark[w] = v;
+                }
+                adjacency[u] = Arrays.copyOf(list, size);
+                if (size != degree[u]) {
+                    degree[u] = size;
+                    heap = push(heap, heapSize++, key(size, u));
+                }
+            }
+        }
+        return pattern;
+    }
+
+    private static long key(int degree, int row) {
+        return ((long) degree << 32) | row;
+    }
+
+    /**
+     * Pushes a key onto a binary min-heap
+     * @param heap the heap which is grown if it is full
+     * @param size the number of keys in the heap
+     * @param key the key to push
+     * @return the heap
+     */
+    private static long[] push(long[] heap, int size, long key) {
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, 2*size);
+        }
+        int i = size;
+        while (i > 0 && heap[(i - 1)/2] > key) {
+            heap[i] = heap[(i - 1)/2];
+            i = (i - 1)/2;
+        }
+        heap[i] = key;
+        return heap;
+    }
+
+    private static void siftDown(long[] heap, int size, int i) {
+        long key = heap[i];
+        while (2*i + 1 < size) {
+            int child = 2*i + 1;
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (heap[child] >= key) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = key;
+    }
+
+    /**
+     * @return the number of nonzeros of L including its diagonal
+     */
+    public int getNumNonZeros() {
+        return lIndex.length + m;
+    }
+
+    /**
+     * Factorizes the normal equations matrix for new column weights
+     * @param theta the positive weight of every column
+     */
+    public void factorize(double[] theta) {
+        for (int k = 0; k < m; k++) {
+            // Scatter the lower part of column k of M
+            int i = perm[k];
+            for (int p = rowStart[i]; p < rowStart[i + 1]; p++) {
+                int col = rowColumn[p];
+                double t = rowValue[p]*theta[col];
+                for (int q = colStart[col]; q < colStart[col + 1]; q++) {
+                    int l = iperm[colRow[q]];
+                    if (l >= k) {
+                        work[l] += t*colValue[q];
+                    }
+                }
+            }
+            double original = work[k];
+
+            // Subtract the columns of L with an entry in row k. The rows of
+            // a column are sorted so the rows from k on follow that entry.
+            for (int t = rowListStart[k]; t < rowListStart[k + 1]; t++) {
+                int position = rowListPosition[t];
+                double lkj = lValue[position];
+                if (lkj == 0.0) continue;
+                int end = lStart[rowListColumn[t] + 1];
+                for (int p = position; p < end; p++) {
+                    work[lIndex[p]] -= lValue[p]*lkj;
+                }
+            }
+
+            double pivot = work[k];
+            work[k] = 0.0;
+            if (pivot <= PIVOT_TOLERANCE*original || !(pivot > 0.0)) {
+                dropped[k] = true;
+                diag[k] = 1.0;
+                for (int p = lStart[k]; p < lStart[k + 1]; p++) {
+                    lValue[p] = 0.0;
+                    work[lIndex[p]] = 0.0;
+                }
+                continue;
+            }
+            dropped[k] = false;
+            diag[k] = Math.sqrt(pivot);
+            for (int p = lStart[k]; p < lStart[k + 1]; p++) {
+                lValue[p] = work[lIndex[p]]/diag[k];
+                work[lIndex[p]] = 0.0;
+            }
+        }
+    }
+
+    /**
+     * Solves M x = rhs with the last factorization
+     * @param x the right hand side which is overwritten by the solution
+     */
+    public void solve(double[] x) {
+        for (int k = 0; k < m; k++) {
+            work[k] = x[perm[k]];
+        }
+        // L z = P rhs
+        for (int k = 0; k < m; k++) {
+            if (dropped[k]) {
+                work[k] = 0.0;
+                continue;
+            }
+            double v = work[k]/diag[k];
+            work[k] = v;
+            for (int p = lStart[k]; p < lStart[k + 1]; p++) {
+                work[lIndex[p]] -= lValue[p]*v;
+            }
+        }
+        // L^T P x = z
+        for (int k = m - 1; k >= 0; k--) {
+            if (dropped[k]) {
+                work[k] = 0.0;
+                continue;
+            }
+            double v = work[k];
+            for (int p = lStart[k]; p < lStart[k + 1]; p++) {
+                v -= lValue[p]*work[lIndex[p]];
+            }
+            work[k] = v/diag[k];
+        }
+        for (int k = 0; k < m; k++) {
+            x[perm[k]] = work[k];
+            work[k] = 0.0;
+        }
+    }
+}
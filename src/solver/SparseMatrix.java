@@ -0,0 +1,209 @@
+package solver;
+
+import java.util.Arrays;
+
+// This class is for internal use only.
+//
+// A sparse matrix stored in compressed sparse row (CSR) format. The
+// nonzero entries of row i are stored in positions
+// [rowStart(i), rowEnd(i)) sorted by column so a compressed sparse
+// column (CSC) view is obtained by taking the transpose.
+public class SparseMatrix {
+    private int numRows;
+    private int numCols;
+
+    private int[] rowStart; // numRows + 1 offsets into colIndex and values
+    private int[] colIndex;
+    private double[] values;
+
+    /**
+     * Creates a sparse matrix with no rows
+     * @param numCols the number of columns in the matrix
+     */
+    public SparseMatrix(int numCols) {
+        this.numRows = 0;
+        this.numCols = numCols;
+        rowStart = new int[4];
+        colIndex = new int[16];
+        values = new double[16];
+    }
+
+    public int getNumRows() {
+        return numRows;
+    }
+
+    public int getNumCols() {
+        return numCols;
+    }
+
+    /**
+     * @return the number of stored nonzero entries
+     */
+    public int getNumNonZeros() {
+        return rowStart[numRows];
+    }
+
+    /**
+     * @param i the row
+     * @return the position of the first entry of row i
+     */
+    public int rowStart(int i) {
+        return rowStart[i];
+    }
+
+    /**
+     * @param i the row
+     * @return one past the position of the last entry of row i
+     */
+    public int rowEnd(int i) {
+        return rowStart[i + 1];
+    }
+
+    /**
+     * @param p a position in [rowStart(i), rowEnd(i)) for some row i
+     * @return the column of the entry at position p
+     */
+    public int getColumnIndex(int p) {
+        return colIndex[p];
+    }
+
+    /**
+     * @param p a position in [rowStart(i), rowEnd(i)) for some row i
+     * @return the value of the entry at position p
+     */
+    public double getValue(int p) {
+        return values[p];
+    }
+
+    /**
+     * Adds an empty row to the bottom of the matrix
+     * @return the index of the new row
+     */
+    public int addEmptyRow() {
+        if (numRows + 2 > rowStart.length) {
+            rowStart = Arrays.copyOf(rowStart, 2*rowStart.length);
+        }
+        rowStart[numRows + 1] = rowStart[numRows];
+        return numRows++;
+    }
+
+    /**
+     * Adds an empty column to the right of the matrix. No entries move as
+     * rows only store their nonzero entries.
+     * @return the index of the new column
+     */
+    public int addEmptyColumn() {
+        return numCols++;
+    }
+
+    /**
+     * Gets the value of entry (i, j)
+     * @param i the row
+     * @param j the column
+     * @return the value of entry (i, j) which is zero if it is not stored
+     */
+    public double get(int i, int j) {
+        int p = find(i, j);
+        return (p >= 0) ? values[p] : 0.0;
+    }
+
+    /**
+     * Assigns a value to entry (i, j). Assigning zero removes the entry.
+     * Entries are cheapest to add to the last row as no other rows have
+     * to be shifted.
+     * @param i the row
+     * @param j the column
+     * @param v the new value
+     */
+    public void set(int i, int j, double v) {
+        if (i < 0 || i >= numRows || j < 0 || j >= numCols) {
+            throw new IndexOutOfBoundsException(String.format("Entry (%d, %d) is out of bounds.", i, j));
+        }
+        int p = find(i, j);
+        if (p >= 0) {
+            if (v != 0) {
+                values[p] = v;
+            } else {
+                // Remove the entry by shifting everything after it
+                int nnz = rowStart[numRows];
+                System.arraycopy(colIndex, p + 1, colIndex, p, nnz - p - 1);
+                System.arraycopy(values, p + 1, values, p, nnz - p - 1);
+                for (int r = i + 1; r <= numRows; r++) {
+                    rowStart[r]--;
+                }
+            }
+        } else if (v != 0) {
+            // Insert the entry at its sorted position within the row
+            int nnz = rowStart[numRows];
+            p = -(p + 1);
+            if (nnz == colIndex.length) {
+                colIndex = Arrays.copyOf(colIndex, 2*colIndex.length);
+                values = Arrays.copyOf(values, 2*values.length);
+            }
+            System.arraycopy(colIndex, p, colIndex, p + 1, nnz - p);
+            System.arraycopy(values, p, values, p + 1, nnz - p);
+            colIndex[p] = j;
+            values[p] = v;
+            for (int r = i + 1; r <= numRows; r++) {
+                rowStart[r]++;
+            }
+        }
+    }
+
+    /**
+     * Searches for entry (i, j)
+     * @param i the row
+     * @param j the column
+     * @return the position of the entry if it is stored and otherwise
+     * -(insertion position) - 1
+     */
+    private int find(int i, int j) {
+        int lo = rowStart[i];
+        int hi = rowStart[i + 1] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (colIndex[mid] < j) {
+                lo = mid + 1;
+            } else if (colIndex[mid] > j) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    /**
+     * Computes the transpose of this matrix. The rows of the transpose
+     * are the columns of this matrix so this doubles as a compressed
+     * sparse column view.
+     * @return the transpose of this matrix
+     */
+    public SparseMatrix transpose() {
+        int nnz = rowStart[numRows];
+        SparseMatrix res = new SparseMatrix(numRows);
+        res.numRows = numCols;
+        res.rowStart = new int[numCols + 1];
+        res.colIndex = new int[Math.max(nnz, 1)];
+        res.values = new double[Math.max(nnz, 1)];
+
+        // Count entries per column then turn the counts into offsets
+        for (int p = 0; p < nnz; p++) {
+            res.rowStart[colIndex[p] + 1]++;
+        }
+        for (int j = 0; j < numCols; j++) {
+            res.rowStart[j + 1] += res.rowStart[j];
+        }
+        // Scatter the entries. Rows are visited in order so the entries
+        // of each column end up sorted by row.
+        int[] next = Arrays.copyOf(res.rowStart, numCols);
+        for (int i = 0; i < numRows; i++) {
+            for (int p = rowStart[i]; p < rowStart[i + 1]; p++) {
+                int dst = next[colIndex[p]]++;
+                res.colIndex[dst] = i;
+                res.values[dst] = values[p];
+            }
+        }
+        return res;
+    }
+}
@@ -1,16 +1,38 @@
 package solver;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 // This class is for internal use only.
-public class StandardForm {
+public class StandardForm implements StandardFormSink {
     // Standard form variables
     // Let
     //      m be the number of constraints and
     //      n be the number of variables
-    public ArrayList<ArrayList<Double>> A; // m x n matrix
-    public ArrayList<Double> b; // m vector
-    public ArrayList<Double> c; // n vector
+    //
+    // A is stored as a sparse matrix so memory scales with the number
+    // of nonzero weights rather than m x n. The arrays for b, r, c and u are
+    // grown geometrically as constraints and variables are added so they
+    // may be longer than needed.
+    //
+    // The variables are nonnegative and bounded above by u which is
+    // positive infinity for variables without an upper bound. Keeping the
+    // upper bounds next to the constraints instead of as rows x_j <= u_j
+    // lets the simplex algorithm handle them without growing the tableau.
+    // A free variable is not even nonnegative which saves splitting it into
+    // the difference of two nonnegative variables.
+    //
+    // Constraint i also has a range r[i] so it reads b[i] - r[i] <= a * x <= b[i].
+    // The range is positive infinity for a plain <= constraint and zero
+    // for an equality which then takes a single row whose slack variable
+    // is fixed at zero rather than a pair of opposite <= rows.
+    private final SparseMatrix A; // m x n matrix
+    private double[] b; // m vector
+    private double[] r; // m vector
+    private double[] c; // n vector
+    private double[] u; // n vector
+    private boolean[] free; // n vector
+    private int m;
 
     // This optional constant term in the objective function does not change solutions
     // to the linear program and will be useful for the simplex algorithm. However,
@@ -18,7 +40,7 @@ public class StandardForm {
     // form but we add it because it is convenient.
     public double objConst;
 
-    private final int n;
+    private int n;
 
     /**
      * Creates an empty linear program in standard form with a set
@@ -28,16 +50,37 @@ public class StandardForm {
      */
     public StandardForm(int numVariables) {
         n = numVariables;
+        m = 0;
 
-        A = new ArrayList<>();
-        b = new ArrayList<>();
-        c = new ArrayList<>(numVariables);
+        A = new SparseMatrix(numVariables);
+        b = new double[0];
+        r = new double[0];
+        c = new double[numVariables];
+        u = new double[numVariables];
+        Arrays.fill(u, Double.POSITIVE_INFINITY);
+        free = new boolean[numVariables];
         objConst = 0.0;
+    }
 
-        // Initialize c vectors
-        for (int i = 0; i < numVariables; i++) {
-            c.add(0.0);
-        }
+    /**
+     * @return the number of constraints in the linear program
+     */
+    public int getNumConstraints() {
+        return m;
+    }
+
+    /**
+     * @return the number of variables in the linear program
+     */
+    public int getNumVariables() {
+        return n;
+    }
+
+    /**
+     * @return the sparse A matrix whose rows are the constraints
+     */
+    public SparseMatrix getMatrix() {
+        return A;
     }
 
     /**
@@ -47,7 +90,7 @@ public class StandardForm {
      * @param v the new value
      */
     public void updateA(int i, int j, double v) {
-        A.get(i).set(j, v);
+        A.set(i, j, v);
     }
 
     /**
@@ -57,7 +100,118 @@ public class StandardForm {
      * @return the value of A[i][j]
      */
     public double getA(int i, int j) {
-        return A.get(i).get(j);
+        return A.get(i, j);
+    }
+
+    /**
+     * Helper function to assign a value to b[i]
+     * @param i the row
+     * @param v the new value
+     */
+    public void updateB(int i, double v) {
+        b[i] = v;
+    }
+
+    /**
+     * Helper function to get b[i]
+     * @param i the row
+     * @return the value of b[i]
+     */
+    public double getB(int i) {
+        return b[i];
+    }
+
+    /**
+     * Helper function to assign a value to r[i]
+     * @param i the row
+     * @param v the new value
+     */
+    public void updateR(int i, double v) {
+        r[i] = v;
+    }
+
+    /**
+     * Helper function to get r[i]
+     * @param i the row
+     * @return the range of constraint i which is positive infinity if it
+     * has no lower limit
+     */
+    public double getR(int i) {
+        return r[i];
+    }
+
+    /**
+     * Helper function to assign a value to c[j]
+     * @param j the column
+     * @param v the new value
+     */
+    public void updateC(int j, double v) {
+        c[j] = v;
+    }
+
+    /**
+     * Helper function to get c[j]
+     * @param j the column
+     * @return the value of c[j]
+     */
+    public double getC(int j) {
+        return c[j];
+    }
+
+    /**
+     * Helper function to assign a value to u[j]
+     * @param j the column
+     * @param v the new value
+     */
+    public void updateU(int j, double v) {
+        u[j] = v;
+    }
+
+    /**
+     * Helper function to get u[j]
+     * @param j the column
+     * @return the upper bound of variable j which is positive infinity if
+     * it has none
+     */
+    public double getU(int j) {
+        return u[j];
+    }
+
+    /**
+     * Helper function to mark variable j as free or nonnegative
+     * @param j the column
+     * @param v true if the variable is free
+     */
+    public void updateFree(int j, boolean v) {
+        free[j] = v;
+    }
+
+    /**
+     * Helper function to check whether variable j is free
+     * @param j the column
+     * @return true if variable j may take any value and false if it is
+     * nonnegative
+     */
+    public boolean isFree(int j) {
+        return free[j];
+    }
+
+    /**
+     * Adds an empty column to A matrix and empty entry in c vector
+     * representing a new nonnegative variable without an upper bound that
+     * does not appear anywhere
+     * @return the index of the new variable added
+     */
+    public int addVariable() {
+        if (n == c.length) {
+            int capacity = Math.max(4, 2*c.length);
+            c = Arrays.copyOf(c, capacity);
+            u = Arrays.copyOf(u, capacity);
+            Arrays.fill(u, n, capacity, Double.POSITIVE_INFINITY);
+            free = Arrays.copyOf(free, capacity);
+        }
+        n++;
+        return A.addEmptyColumn();
     }
 
     /**
@@ -66,14 +220,135 @@ public class StandardForm {
      * @return the index of the new constraint added
      */
     public int addEmptyConstraint() {
-        int index = A.size();
-        ArrayList<Double> row = new ArrayList<>(n);
-        for (int i = 0; i < n; i++) {
-            row.add(0.0);
+        if (m == b.length) {
+            // Double capacity so that adding m constraints takes
+            // amortized constant time per constraint
+            int capacity = Math.max(4, 2*b.length);
+            b = Arrays.copyOf(b, capacity);
+            r = Arrays.copyOf(r, capacity);
+            Arrays.fill(r, m, capacity, Double.POSITIVE_INFINITY);
         }
-        A.add(row);
-        b.add(0.0);
-        return index;
+        // Entries of b past m are always zero and entries of r past m are
+        // always positive infinity so the new entry is already empty
+        m++;
+        return A.addEmptyRow();
+    }
+
+    @Override
+    public void setConstraintWeight(int i, int j, double v) {
+        updateA(i, j, v);
+    }
+
+    @Override
+    public void setConstraintBound(int i, double v) {
+        updateB(i, v);
+    }
+
+    @Override
+    public void setConstraintRange(int i, double v) {
+        updateR(i, v);
+    }
+
+    @Override
+    public void setObjectiveWeight(int j, double v) {
+        updateC(j, v);
+    }
+
+    @Override
+    public void setObjectiveConstant(double v) {
+        objConst = v;
+    }
+
+    @Override
+    public void setVariableUpperBound(int j, double v) {
+        updateU(j, v);
+    }
+
+    @Override
+    public void setVariableFree(int j) {
+        updateFree(j, true);
+    }
+
+    /**
+     * Replays this linear program into a sink one constraint at a time
+     * @param sink the sink receiving the linear program which must have
+     *             the same number of variables and no constraints
+     */
+    public void writeTo(StandardFormSink sink) {
+        for (int j = 0; j < n; j++) {
+            if (c[j] != 0) {
+                sink.setObjectiveWeight(j, c[j]);
+            }
+        }
+        sink.setObjectiveConstant(objConst);
+        for (int j = 0; j < n; j++) {
+            if (u[j] != Double.POSITIVE_INFINITY) {
+                sink.setVariableUpperBound(j, u[j]);
+            }
+            if (free[j]) {
+                sink.setVariableFree(j);
+            }
+        }
+        for (int i = 0; i < m; i++) {
+            int row = sink.addEmptyConstraint();
+            for (int p = A.rowStart(i); p < A.rowEnd(i); p++) {
+                sink.setConstraintWeight(row, A.getColumnIndex(p), A.getValue(p));
+            }
+            sink.setConstraintBound(row, b[i]);
+            if (r[i] != Double.POSITIVE_INFINITY) {
+                sink.setConstraintRange(row, r[i]);
+            }
+        }
+    }
+
+    /**
+     * Builds the dense m x n A matrix that used to be the public field A
+     * @return a new list of the rows of A
+     * @deprecated A is now sparse. Use getA(i, j) or getMatrix() instead.
+     * This copies the whole matrix and will be removed.
+     */
+    @Deprecated
+    public ArrayList<ArrayList<Double>> getAList() {
+        ArrayList<ArrayList<Double>> res = new ArrayList<>(m);
+        for (int i = 0; i < m; i++) {
+            ArrayList<Double> row = new ArrayList<>(n);
+            for (int j = 0; j < n; j++) {
+                row.add(0.0);
+            }
+            for (int p = A.rowStart(i); p < A.rowEnd(i); p++) {
+                row.set(A.getColumnIndex(p), A.getValue(p));
+            }
+            res.add(row);
+        }
+        return res;
+    }
+
+    /**
+     * Builds the m vector that used to be the public field b
+     * @return a new list of the entries of b
+     * @deprecated Use getB(i) instead. This copies b and will be removed.
+     */
+    @Deprecated
+    public ArrayList<Double> getBList() {
+        ArrayList<Double> res = new ArrayList<>(m);
+        for (int i = 0; i < m; i++) {
+            res.add(b[i]);
+        }
+        return res;
+    }
+
+    /**
+     * Builds the n vector that used to be the public field c
+     * @return a new list of the entries of c
+     * @deprecated Use getC(j) instead. This copies c and will be removed.
+     */
+    @Deprecated
+    public ArrayList<Double> getCList() {
+        ArrayList<Double> res = new ArrayList<>(n);
+        for (int j = 0; j < n; j++) {
+            res.add(c[j]);
+        }
+        return res;
     }
 
     /**
@@ -90,7 +365,7 @@ public class StandardForm {
         ArrayList<String> terms = new ArrayList<>();
         terms.add(objConst + "");
         for (int i = 0; i < n; i++) {
-            double w = c.get(i);
+            double w = c[i];
             if (w != 0) {
                 terms.add(String.format("(%f)x_%d", w, i));
             }
@@ -100,16 +375,32 @@ public class StandardForm {
         res.append("CONSTRAINTS:\n");
 
         // Print constraints
-        for (int i = 0; i < A.size(); i++) {
+        for (int i = 0; i < m; i++) {
             terms.clear();
-            for (int j = 0; j < n; j++) {
-                double w = getA(i, j);
-                if (w != 0) {
-                    terms.add(String.format("(%f)x_%d", w, j));
-                }
+            for (int p = A.rowStart(i); p < A.rowEnd(i); p++) {
+                terms.add(String.format("(%f)x_%d", A.getValue(p), A.getColumnIndex(p)));
+            }
+            res.append("\t");
+            if (r[i] != 0 && r[i] != Double.POSITIVE_INFINITY) {
+                res.append((b[i] - r[i]) + " <= ");
             }
-            res.append("\t" + String.join(" + ", terms));
-            res.append(" <= " + b.get(i) + "\n");
+            res.append(String.join(" + ", terms));
+            res.append((r[i] == 0 ? " = " : " <= ") + b[i] + "\n");
+        }
+
+        // Print upper bounds of the variables
+        terms.clear();
+        for (int j = 0; j < n; j++) {
+            if (u[j] != Double.POSITIVE_INFINITY) {
+                terms.add(String.format("\tx_%d <= %s\n", j, u[j]));
+            }
+            if (free[j]) {
+                terms.add(String.format("\tx_%d free\n", j));
+            }
+        }
+        if (!terms.isEmpty()) {
+            res.append("\nBOUNDS:\n");
+            res.append(String.join("", terms));
         }
 
         return res.toString();
@@ -0,0 +1,251 @@
+package solver;
+
+import java.util.Arrays;
+
+// This class is for internal use only.
+//
+// Row and column scale factors for a linear program in standard form.
+// Row i is multiplied by rowScale[i] and variable j is replaced by
+// colScale[j] * x'_j so that the scaled linear program has weights
+//      A'[i][j] = rowScale[i] * A[i][j] * colScale[j]
+// close to one in magnitude. Widely spread weights make the fixed
+// tolerances of the simplex algorithm too loose for the small weights and
+// too tight for the large ones.
+//
+// The factors come from a few passes of geometric mean scaling, which
+// divides each row and column by the square root of its smallest times
+// its largest weight, followed by equilibration which divides each row
+// and column by its largest weight. Every factor is rounded to a power of
+// two so scaling and unscaling do not round.
+public class StandardFormScaling {
+    // Weights spread by at most this ratio are left unscaled
+    private static final double SPREAD_THRESHOLD = 16.0;
+    private static final int MAX_GEOMETRIC_PASSES = 4;
+    // Geometric mean passes stop once a pass improves the spread of the
+    // weights by less than this ratio
+    private static final double MIN_IMPROVEMENT = 0.9;
+
+    private final int m;
+    private final int n;
+    private final double[] rowScale;
+    private final double[] colScale;
+    private final boolean identity;
+
+    /**
+     * Computes the scale factors of a linear program in standard form
+     * @param standardForm the linear program to scale
+     */
+    public StandardFormScaling(StandardForm standardForm) {
+        m = standardForm.getNumConstraints();
+        n = standardForm.getNumVariables();
+        rowScale = new double[m];
+        colScale = new double[n];
+        Arrays.fill(rowScale, 1.0);
+        Arrays.fill(colScale, 1.0);
+
+        SparseMatrix A = standardForm.getMatrix();
+        double spread = spread(A);
+        if (spread <= SPREAD_THRESHOLD) {
+            identity = true;
+            return;
+        }
+
+        double[] colMin = new double[n];
+        double[] colMax = new double[n];
+        for (int pass = 0; pass < MAX_GEOMETRIC_PASSES; pass++) {
+            for (int i = 0; i < m; i++) {
+                double min = Double.POSITIVE_INFINITY;
+                double max = 0.0;
+                for (int p = A.rowStart(i); p < A.rowEnd(i); p++) {
+                    double w = Math.abs(A.getValue(p))*colScale[A.getColumnIndex(p)];
+                    min = Math.min(min, w);
+                    max = Math.max(max, w);
+                }
+                if (max > 0) {
+                    rowScale[i] = 1.0/Math.sqrt(min*max);
+                }
+            }
+            columnRange(A, colMin, colMax);
+            for (int j = 0; j < n; j++) {
+                if (colMax[j] > 0) {
+                    colScale[j] /= Math.sqrt(colMin[j]*colMax[j]);
+                }
+            }
+
+            double scaledSpread = spread(A);
+            if (scaledSpread > MIN_IMPROVEMENT*spread) {
+                break;
+            }
+            spread = scaledSpread;
+        }
+
+        // Equilibrate so that the largest weight of every row and then of
+        // every column is one
+        for (int i = 0; i < m; i++) {
+            double max = 0.0;
+            for (int p = A.rowStart(i); p < A.rowEnd(i); p++) {
+                max = Math.max(max, Math.abs(A.getValue(p))*colScale[A.getColumnIndex(p)]);
+            }
+            if (max > 0) {
+                rowScale[i] = powerOfTwo(1.0/max);
+            }
+        }
+        columnRange(A, colMin, colMax);
+        for (int j = 0; j < n; j++) {
+            colScale[j] = (colMax[j] > 0) ? powerOfTwo(colScale[j]/colMax[j]) : 1.0;
+        }
+        identity = false;
+    }
+
+    /**
+     * Finds the smallest and largest magnitude of the scaled weights of
+     * every column
+     * @param A the unscaled constraint weights
+     * @param colMin array to write the smallest magnitudes to
+     * @param colMax array to write the largest magnitudes to which are
+     *               zero for empty columns
+     */
+    private void columnRange(SparseMatrix A, double[] colMin, double[] colMax) {
+        Arrays.fill(colMin, Double.POSITIVE_INFINITY);
+        Arrays.fill(colMax, 0.0);
+        for (int i = 0; i < m; i++) {
+            for (int p = A.rowStart(i); p < A.rowEnd(i); p++) {
+                int j = A.getColumnIndex(p);
+                double w = rowScale[i]*Math.abs(A.getValue(p))*colScale[j];
+                colMin[j] = Math.min(colMin[j], w);
+                colMax[j] = Math.max(colMax[j], w);
+            }
+        }
+    }
+
+    /**
+     * @param A the unscaled constraint weights
+     * @return the ratio of the largest to the smallest magnitude of the
+     * scaled weights or one if there are none
+     */
+    private double spread(SparseMatrix A) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = 0.0;
+        for (int i = 0; i < m; i++) {
+            for (int p = A.rowStart(i); p < A.rowEnd(i); p++) {
+                double w = rowScale[i]*Math.abs(A.getValue(p))*colScale[A.getColumnIndex(p)];
+                min = Math.min(min, w);
+                max = Math.max(max, w);
+            }
+        }
+        return (max > 0) ? max/min : 1.0;
+    }
+
+    /**
+     * @param v a positive number
+     * @return the power of two closest to v on a logarithmic scale
+     */
+    private static double powerOfTwo(double v) {
+        return Math.scalb(1.0, (int) Math.round(Math.log(v)/Math.log(2.0)));
+    }
+
+    /**
+     * @return true if every scale factor is one so the linear program does
+     * not need to be scaled
+     */
+    public boolean isIdentity() {
+        return identity;
+    }
+
+    /**
+     * @param i the row
+     * @return the factor row i is multiplied by
+     */
+    public double getRowScale(int i) {
+        return rowScale[i];
+    }
+
+    /**
+     * @param j the column
+     * @return the factor the scaled variable j is multiplied by to get the
+     * unscaled variable
+     */
+    public double getColumnScale(int j) {
+        return colScale[j];
+    }
+
+    /**
+     * Replays a linear program into a sink with the scale factors applied
+     * @param standardForm the linear program the scale factors were
+     *                     computed for
+     * @param sink the sink receiving the scaled linear program which must
+     *             have the same number of variables and no constraints
+     */
+    public void writeTo(StandardForm standardForm, StandardFormSink sink) {
+        standardForm.writeTo(new StandardFormSink() {
+            @Override
+            public int addEmptyConstraint() {
+                return sink.addEmptyConstraint();
+            }
+
+            @Override
+            public void setConstraintWeight(int i, int j, double v) {
+                sink.setConstraintWeight(i, j, rowScale[i]*v*colScale[j]);
+            }
+
+            @Override
+            public void setConstraintBound(int i, double v) {
+                sink.setConstraintBound(i, rowScale[i]*v);
+            }
+
+            @Override
+            public void setConstraintRange(int i, double v) {
+                sink.setConstraintRange(i, rowScale[i]*v);
+            }
+
+            @Override
+            public void setObjectiveWeight(int j, double v) {
+                sink.setObjectiveWeight(j, v*colScale[j]);
+            }
+
+            @Override
+            public void setObjectiveConstant(double v) {
+                sink.setObjectiveConstant(v);
+            }
+
+            @Override
+            public void setVariableUpperBound(int j, double v) {
+                sink.setVariableUpperBound(j, v/colScale[j]);
+            }
+
+            @Override
+            public void setVariableFree(int j) {
+                sink.setVariableFree(j);
+            }
+        });
+    }
+
+    /**
+     * Turns the variable values and duals of a solution to the scaled
+     * linear program into values for the unscaled one. The objective value
+     * is the same for both.
+     * @param solution a solution to the scaled linear program
+     */
+    public void unscale(Solution solution) {
+        // The duals of a scaled row are scaled by the inverse factor
+        double[] duals = solution.getDuals();
+        if (duals != null) {
+            for (int i = 0; i < m; i++) {
+                duals[i] *= rowScale[i];
+            }
+        }
+        double[] values = solution.getValues();
+        if (values == null) {
+            return;
+        }
+        int numValues = solution.getNumValues();
+        for (int j = 0; j < Math.min(n, numValues); j++) {
+            values[j] *= colScale[j];
+        }
+        // Slack variables of the engines that report them follow the
+        // variables and are scaled with their row
+        for (int i = 0; i < m && n + i < numValues; i++) {
+            values[n + i] /= rowScale[i];
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package solver;
+
+// This interface is for internal use only.
+//
+// Receives a linear program in standard form one constraint at a time.
+// LinearProgram compiles its variables and constraints into a sink which
+// lets it build either a StandardForm to look at or the slack form of a
+// SimplexState directly.
+public interface StandardFormSink {
+    /**
+     * Adds a new constraint whose weights and bound are all zero
+     * @return the index of the new constraint
+     */
+    int addEmptyConstraint();
+
+    /**
+     * Sets the weight of a variable in a constraint
+     * @param i the constraint
+     * @param j the variable
+     * @param v the new weight
+     */
+    void setConstraintWeight(int i, int j, double v);
+
+    /**
+     * Sets the bound b of a constraint of the form a * x <= b
+     * @param i the constraint
+     * @param v the new bound
+     */
+    void setConstraintBound(int i, double v);
+
+    /**
+     * Sets the range r of a constraint which then reads
+     * b - r <= a * x <= b. Constraints have no lower limit unless a range
+     * is set and a range of zero makes the constraint an equality.
+     * @param i the constraint
+     * @param v the new range
+     */
+    void setConstraintRange(int i, double v);
+
+    /**
+     * Sets the weight of a variable in the objective function
+     * @param j the variable
+     * @param v the new weight
+     */
+    void setObjectiveWeight(int j, double v);
+
+    /**
+     * Sets the constant term of the objective function
+     * @param v the new constant term
+     */
+    void setObjectiveConstant(double v);
+
+    /**
+     * Sets the upper bound of a variable. Variables are nonnegative and
+     * have no upper bound unless one is set.
+     * @param j the variable
+     * @param v the new upper bound
+     */
+    void setVariableUpperBound(int j, double v);
+
+    /**
+     * Makes a variable free so that it may take any value instead of only
+     * nonnegative ones. Free variables have no upper bound.
+     * @param j the variable
+     */
+    void setVariableFree(int j);
+}
@@ -0,0 +1,7 @@
+package solver;
+
+public enum TableauBackend {
+    HEAP,
+    OFF_HEAP,
+    MEMORY_MAPPED
+}
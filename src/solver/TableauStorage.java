@@ -0,0 +1,174 @@
+package solver;
+
+import java.nio.file.Path;
+
+// This class is for internal use only.
+//
+// Storage for the flattened tableau of a SimplexState. Indices are longs
+// so backends that live outside of the Java heap can hold tableaus with
+// more than 2^31 entries. The row kernels are written in terms of get and
+// set so a backend only has to override them to speed them up.
+//
+// The off-heap backends use SegmentTableauStorage from the optional
+// src-incubator source set when it was compiled and the
+// jdk.incubator.foreign module is present. Otherwise they fall back to
+// BufferTableauStorage whose direct buffers are capped by
+// -XX:MaxDirectMemorySize.
+public abstract class TableauStorage implements AutoCloseable {
+    /**
+     * Allocates storage outside of the Java heap
+     */
+    public interface OffHeapAllocator {
+        /**
+         * @param size the number of entries
+         * @return zeroed storage in native memory
+         */
+        TableauStorage allocateNative(long size);
+
+        /**
+         * @param size the number of entries
+         * @param directory directory to create the file in or null to use
+         *                  the default temporary-file directory
+         * @return zeroed storage in a memory-mapped temporary file
+         */
+        TableauStorage mapTemporaryFile(long size, Path directory);
+    }
+
+    private static final OffHeapAllocator SEGMENTS = loadSegments();
+
+    /**
+     * @return the allocator of SegmentTableauStorage or null if the
+     * incubator module or the class is missing
+     */
+    private static OffHeapAllocator loadSegments() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.foreign").isEmpty()) {
+            return null;
+        }
+        try {
+            return (OffHeapAllocator) Class.forName("solver.SegmentTableauStorage$Allocator")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Allocates zeroed storage using the requested backend
+     * @param backend where the entries should live
+     * @param size the number of entries
+     * @param directory directory for memory-mapped files or null to use
+     *                  the default temporary-file directory
+     * @return storage holding size zeroes
+     */
+    public static TableauStorage allocate(TableauBackend backend, long size, Path directory) {
+        switch (backend) {
+            case OFF_HEAP:
+                return (SEGMENTS != null) ? SEGMENTS.allocateNative(size) : BufferTableauStorage.allocateDirect(size);
+            case MEMORY_MAPPED:
+                return (SEGMENTS != null)
+                        ? SEGMENTS.mapTemporaryFile(size, directory)
+                        : BufferTableauStorage.mapTemporaryFile(size, directory);
+            default:
+                return new HeapTableauStorage(size);
+        }
+    }
+
+    /**
+     * @param index the index of an entry
+     * @return the value of the entry
+     */
+    public abstract double get(long index);
+
+    /**
+     * @param index the index of an entry
+     * @param v the new value of the entry
+     */
+    public abstract void set(long index, double v);
+
+    /**
+     * Releases the memory held by the storage. The storage must not be
+     * used afterwards.
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Copies len entries starting at offset into dst
+     * @param offset index of the first entry
+     * @param dst array receiving the entries
+     * @param len number of entries to copy
+     */
+    public void read(long offset, double[] dst, int len) {
+        for (int j = 0; j < len; j++) {
+            dst[j] = get(offset + j);
+        }
+    }
+
+    /**
+     * Copies len entries from src into the storage starting at offset
+     * @param offset index of the first entry
+     * @param src array holding the entries
+     * @param len number of entries to copy
+     */
+    public void write(long offset, double[] src, int len) {
+        for (int j = 0; j < len; j++) {
+            set(offset + j, src[j]);
+        }
+    }
+
+    /**
+     * Copies count entries spaced stride apart starting at offset into dst
+     * which reads a column of a row-major matrix
+     * @param offset index of the first entry
+     * @param stride distance between consecutive entries
+     * @param dst array receiving the entries
+     * @param count number of entries to copy
+     */
+    public void readColumn(long offset, int stride, double[] dst, int count) {
+        for (int i = 0; i < count; i++) {
+            dst[i] = get(offset + (long) i*stride);
+        }
+    }
+
+    /**
+     * Computes row[j] = row[j] - factor*src[j] for all j in [from, to)
+     * except j = skip where row is the entries starting at offset. Results
+     * with magnitude below zeroTolerance are flushed to zero.
+     * @param offset index of the first entry of the row
+     * @param factor multiple of src to subtract
+     * @param src dense row to subtract
+     * @param from the first column to update
+     * @param to one past the last column to update
+     * @param skip column to leave untouched
+     * @param zeroTolerance magnitude below which results become zero
+     */
+    public void axpyDense(long offset, double factor, double[] src, int from, int to, int skip,
+                          double zeroTolerance) {
+        for (int j = from; j < to; j++) {
+            if (j != skip) {
+                double v = get(offset + j) - factor*src[j];
+                set(offset + j, (Math.abs(v) < zeroTolerance) ? 0.0 : v);
+            }
+        }
+    }
+
+    /**
+     * Computes row[cols[t]] = row[cols[t]] - factor*vals[t] for all t in
+     * [0, nnz) where row is the entries starting at offset. Results with
+     * magnitude below zeroTolerance are flushed to zero.
+     * @param offset index of the first entry of the row
+     * @param factor multiple of the packed row to subtract
+     * @param cols columns of the packed row
+     * @param vals values of the packed row
+     * @param nnz the number of packed entries
+     * @param zeroTolerance magnitude below which results become zero
+     */
+    public void axpySparse(long offset, double factor, int[] cols, double[] vals, int nnz, double zeroTolerance) {
+        for (int t = 0; t < nnz; t++) {
+            long j = offset + cols[t];
+            double v = get(j) - factor*vals[t];
+            set(j, (Math.abs(v) < zeroTolerance) ? 0.0 : v);
+        }
+    }
+}
@@ -4,6 +4,9 @@ import solver.*;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
 
 public class LinearProgramTest {
     private final static double EPSILON = 0.0000001;
@@ -434,16 +437,1023 @@ public class LinearProgramTest {
         printTestStatus("Maximum Flow Test 1", passed);
     }
 
+    // Edits test 1 between solves so the cached standard form has rows,
+    // columns and objective functions added to it incrementally
+    public static void incrementalEditTest() {
+        LinearProgram p = new LinearProgram();
+        Variable x1 = p.registerNonnegativeVariable("x1");
+        Variable x2 = p.registerNonnegativeVariable("x2");
+        Variable x3 = p.registerNonnegativeVariable("x3");
+        Variable x4 = p.registerNonnegativeVariable("x4");
+
+        p.setObjective(new ObjectiveFunction(
+                ObjectiveGoal.MAXIMIZE,
+                new ArrayList<>(Arrays.asList(x1, x2, x3, x4)),
+                new ArrayList<>(Arrays.asList(88.0, 86.0, 100.0, 100.0))
+        ));
+
+        p.addConstraint(new Constraint(
+                new ArrayList<>(Arrays.asList(x1, x2, x3, x4)),
+                new ArrayList<>(Arrays.asList(3.0, 2.0, 2.0, 5.0)),
+                Relation.LEQ,
+                200.0
+        ));
+        p.addConstraint(new Constraint(
+                new ArrayList<>(Arrays.asList(x1, x2, x3, x4)),
+                new ArrayList<>(Arrays.asList(2.0, 2.0, 4.0, 5.0)),
+                Relation.LEQ,
+                100.0
+        ));
+        p.addConstraint(new Constraint(
+                new ArrayList<>(Arrays.asList(x1, x2, x3, x4)),
+                new ArrayList<>(Arrays.asList(1.0, 1.0, 1.0, 1.0)),
+                Relation.LEQ,
+                200.0
+        ));
+
+        p.solve();
+        boolean passed =
+            Math.abs(p.getObjectiveValue().get() - 4400) < EPSILON &&
+            Math.abs(p.evaluateVariable(x1).get() - 50) < EPSILON;
+
+        // Appending a row gives back test 1
+        p.addConstraint(new Constraint(
+                new ArrayList<>(Arrays.asList(x1)),
+                new ArrayList<>(Arrays.asList(1.0)),
+                Relation.LEQ,
+                40.0
+        ));
+        p.solve();
+        passed = passed &&
+            Math.abs(p.getObjectiveValue().get() - 4380) < EPSILON &&
+            Math.abs(p.evaluateVariable(x1).get() - 40) < EPSILON &&
+            Math.abs(p.evaluateVariable(x2).get() - 10) < EPSILON;
+
+        // Appending a boxed column along with a row using it and
+        // replacing the objective function
+        Variable x5 = p.registerVariable("x5", 1.0, 5.0);
+        p.addConstraint(new Constraint(
+                new ArrayList<>(Arrays.asList(x1, x5)),
+                new ArrayList<>(Arrays.asList(1.0, 1.0)),
+                Relation.GEQ,
+                3.0
+        ));
+        p.setObjective(new ObjectiveFunction(
+                ObjectiveGoal.MINIMIZE,
+                new ArrayList<>(Arrays.asList(x1, x5)),
+                new ArrayList<>(Arrays.asList(1.0, -1.0))
+        ));
+        p.solve();
+        passed = passed &&
+            Math.abs(p.getObjectiveValue().get() + 5) < EPSILON &&
+            Math.abs(p.evaluateVariable(x1).get() - 0) < EPSILON &&
+            Math.abs(p.evaluateVariable(x5).get() - 5) < EPSILON;
+
+        // Replacing the objective function again must not leave any of the
+        // old weights behind
+        p.setObjective(new ObjectiveFunction(
+                ObjectiveGoal.MINIMIZE,
+                new ArrayList<>(Arrays.asList(x5)),
+                new ArrayList<>(Arrays.asList(1.0))
+        ));
+        p.solve();
+        passed = passed &&
+            Math.abs(p.getObjectiveValue().get() - 1) < EPSILON &&
+            Math.abs(p.evaluateVariable(x5).get() - 1) < EPSILON &&
+            p.evaluateVariable(x1).get() >= 2 - EPSILON;
+
+        // The standard form handed out is a copy so changing it must not
+        // reach the one cached for the solver, which the next edit compiles
+        // onto
+        StandardForm form = p.buildStandardForm();
+        form.updateC(0, 1000.0);
+        form.updateB(0, -1000.0);
+        p.addConstraint(new Constraint(
+                new ArrayList<>(Arrays.asList(x5)),
+                new ArrayList<>(Arrays.asList(1.0)),
+                Relation.LEQ,
+                4.0
+        ));
+        p.solve();
+        passed = passed &&
+            Math.abs(p.getObjectiveValue().get() - 1) < EPSILON &&
+            Math.abs(p.evaluateVariable(x5).get() - 1) < EPSILON;
+        printTestStatus("Incremental Edit Test", passed);
+    }
+
+    // Diet problem whose starting basis is dual feasible but not feasible
+    // so it is solved by the dual simplex algorithm
+    public static void dualSimplexTest() {
+        boolean passed = true;
+        for (boolean dualSimplex : new boolean[]{true, false}) {
+            LinearProgram p = new LinearProgram();
+            SolverOptions options = new SolverOptions();
+            options.setDualSimplex(dualSimplex);
+            p.setOptions(options);
+            Variable x1 = p.registerNonnegativeVariable("x1");
+            Variable x2 = p.registerNonnegativeVariable("x2");
+
+            p.setObjective(new ObjectiveFunction(
+                    ObjectiveGoal.MINIMIZE,
+                    new ArrayList<>(Arrays.asList(x1, x2)),
+                    new ArrayList<>(Arrays.asList(2.0, 3.0))
+            ));
+
+            p.addConstraint(new Constraint(
+                    new ArrayList<>(Arrays.asList(x1, x2)),
+                    new ArrayList<>(Arrays.asList(1.0, 1.0)),
+                    Relation.GEQ,
+                    4.0
+            ));
+            p.addConstraint(new Constraint(
+                    new ArrayList<>(Arrays.asList(x1, x2)),
+                    new ArrayList<>(Arrays.asList(1.0, 3.0)),
+                    Relation.GEQ,
+                    6.0
+            ));
+
+            p.solve();
+            passed = passed &&
+                Math.abs(p.getObjectiveValue().get() - 9) < EPSILON &&
+                Math.abs(p.evaluateVariable(x1).get() - 3) < EPSILON &&
+                Math.abs(p.evaluateVariable(x2).get() - 1) < EPSILON;
+        }
+        printTestStatus("Dual Simplex Test", passed);
+    }
+
+    // Rows that almost tie in the ratio test where the exact minimum ratio
+    // has a pivot element close to zero
+    public static void harrisRatioTest() {
+        boolean passed = true;
+        for (SolverEngine engine : SolverEngine.values()) {
+            LinearProgram p = newProgram(engine, new SolverOptions());
+            Variable x1 = p.registerNonnegativeVariable("x1");
+            Variable x2 = p.registerNonnegativeVariable("x2");
+
+            p.setObjective(new ObjectiveFunction(
+                    ObjectiveGoal.MAXIMIZE,
+                    new ArrayList<>(Arrays.asList(x1, x2)),
+                    new ArrayList<>(Arrays.asList(3.0, 2.0))
+            ));
+
+            p.addConstraint(new Constraint(
+                    new ArrayList<>(Arrays.asList(x1, x2)),
+                    new ArrayList<>(Arrays.asList(1.0, 1.0)),
+                    Relation.LEQ,
+                    4.0
+            ));
+            p.addConstraint(new Constraint(
+                    new ArrayList<>(Arrays.asList(x1, x2)),
+                    new ArrayList<>(Arrays.asList(1.0, 3.0)),
+                    Relation.LEQ,
+                    6.0
+            ));
+            p.addConstraint(new Constraint(
+                    new ArrayList<>(Arrays.asList(x1, x2)),
+                    new ArrayList<>(Arrays.asList(1e-8, 1e-8)),
+                    Relation.LEQ,
+                    4e-8 - 1e-17
+            ));
+
+            p.solve();
+            passed = passed &&
+                Math.abs(p.getObjectiveValue().get() - 12) < EPSILON &&
+                Math.abs(p.evaluateVariable(x1).get() - 4) < EPSILON &&
+                Math.abs(p.evaluateVariable(x2).get()) < EPSILON;
+        }
+        printTestStatus("Harris Ratio Test", passed);
+    }
+
+    // Boxed variables are upper bounds in the standard form so the only
+    // constraint is the one added by the user
+    public static void boundedVariableTest() {
+        boolean passed = true;
+        for (SolverEngine engine : SolverEngine.values()) {
+            LinearProgram p = newProgram(engine, new SolverOptions());
+            Variable x1 = p.registerVariable("x1", 0.0, 3.0);
+            Variable x2 = p.registerVariable("x2", 1.0, 4.0);
+
+            p.setObjective(new ObjectiveFunction(
+                    ObjectiveGoal.MAXIMIZE,
+                    new ArrayList<>(Arrays.asList(x1, x2)),
+                    new ArrayList<>(Arrays.asList(2.0, 1.0))
+            ));
+
+            p.addConstraint(new Constraint(
+                    new ArrayList<>(Arrays.asList(x1, x2)),
+                    new ArrayList<>(Arrays.asList(1.0, 1.0)),
+                    Relation.LEQ,
+                    5.0
+            ));
+
+            p.solve();
+            passed = passed &&
+                p.buildStandardForm().getNumConstraints() == 1 &&
+                Math.abs(p.getObjectiveValue().get() - 8) < EPSILON &&
+                Math.abs(p.evaluateVariable(x1).get() - 3) < EPSILON &&
+                Math.abs(p.evaluateVariable(x2).get() - 2) < EPSILON;
+        }
+        printTestStatus("Bounded Variable Test", passed);
+    }
+
+    public static void equalityConstraintTest() {
+        boolean passed = true;
+        for (SolverEngine engine : SolverEngine.values()) {
+            LinearProgram p = newProgram(engine, new SolverOptions());
+            Variable x1 = p.registerNonnegativeVariable("x1");
+            Variable x2 = p.registerNonnegativeVariable("x2");
+            Variable x3 = p.registerNonnegativeVariable("x3");
+
+            p.setObjective(new ObjectiveFunction(
+                    ObjectiveGoal.MINIMIZE,
+                    new ArrayList<>(Arrays.asList(x1, x2, x3)),
+                    new ArrayList<>(Arrays.asList(1.0, 1.0, 3.0))
+            ));
+
+            p.addConstraint(new Constraint(
+                    new ArrayList<>(Arrays.asList(x1, x2, x3)),
+                    new ArrayList<>(Arrays.asList(1.0, 1.0, 1.0)),
+                    Relation.EQ,
+                    6.0
+            ));
+
+            p.addConstraint(new Constraint(
+                    new ArrayList<>(Arrays.asList(x1, x3)),
+                    new ArrayList<>(Arrays.asList(1.0, -1.0)),
+                    Relation.EQ,
+                    -1.0
+            ));
+
+            p.solve();
+            passed = passed &&
+                p.buildStandardForm().getNumConstraints() == 2 &&
+                Math.abs(p.getObjectiveValue().get() - 8) < EPSILON &&
+                Math.abs(p.evaluateVariable(x1).get() - 0) < EPSILON &&
+                Math.abs(p.evaluateVariable(x2).get() - 5) < EPSILON &&
+                Math.abs(p.evaluateVariable(x3).get() - 1) < EPSILON;
+        }
+        printTestStatus("Equality Constraint Test", passed);
+    }
+
+    public static void freeVariableTest() {
+        boolean passed = true;
+        for (SolverEngine engine : SolverEngine.values()) {
+            LinearProgram p = newProgram(engine, new SolverOptions());
+            Variable x1 = p.registerUnboundedVariable("x1");
+            Variable x2 = p.registerUnboundedVariable("x2");
+            Variable x3 = p.registerUnboundedVariable("x3");
+
+            p.setObjective(new ObjectiveFunction(
+                    ObjectiveGoal.MAXIMIZE,
+                    new ArrayList<>(Arrays.asList(x1, x3)),
+                    new ArrayList<>(Arrays.asList(-1.0, 1.0))
+            ));
+
+            p.addConstraint(new Constraint(
+                    new ArrayList<>(Arrays.asList(x1, x2)),
+                    new ArrayList<>(Arrays.asList(-1.0, 1.0)),
+                    Relation.LEQ,
+                    3.0
+            ));
+
+            p.addConstraint(new Constraint(
+                    new ArrayList<>(Arrays.asList(x2, x3)),
+                    new ArrayList<>(Arrays.asList(-1.0, 1.0)),
+                    Relation.LEQ,
+                    2.0
+            ));
+
+            p.addConstraint(new Constraint(
+                    new ArrayList<>(Arrays.asList(x1, x2)),
+                    new ArrayList<>(Arrays.asList(1.0, -1.0)),
+                    Relation.LEQ,
+                    -3.0
+            ));
+
+            p.addConstraint(new Constraint(
+                    new ArrayList<>(Arrays.asList(x1, x2, x3)),
+                    new ArrayList<>(Arrays.asList(1.0, 1.0, 1.0)),
+                    Relation.EQ,
+                    -4.0
+            ));
+
+            p.solve();
+            passed = passed &&
+                p.buildStandardForm().getNumVariables() == 3 &&
+                Math.abs(p.getObjectiveValue().get() - 5) < EPSILON &&
+                Math.abs(p.evaluateVariable(x1).get() + 4) < EPSILON &&
+                Math.abs(p.evaluateVariable(x2).get() + 1) < EPSILON &&
+                Math.abs(p.evaluateVariable(x3).get() - 1) < EPSILON;
+        }
+        printTestStatus("Free Variable Test", passed);
+    }
+
     public static void stressTest1() {
+        // Every engine, backend and pricing option must find a max flow
+        // that passes the Max-Flow Min-Cut check
+        LinkedHashMap<String, SolverOptions> configurations = new LinkedHashMap<>();
+        configurations.put("defaults", new SolverOptions());
+        for (TableauBackend backend : new TableauBackend[]{TableauBackend.OFF_HEAP, TableauBackend.MEMORY_MAPPED}) {
+            SolverOptions options = new SolverOptions();
+            options.setTableauBackend(backend);
+            configurations.put(backend + " tableau", options);
+        }
+        SolverOptions parallelOptions = new SolverOptions();
+        parallelOptions.setParallelPivot(true);
+        // Force even this small linear program onto the parallel path
+        parallelOptions.setParallelPivotThreshold(0);
+        configurations.put("parallel pivot", parallelOptions);
+        for (SolverEngine engine : SolverEngine.values()) {
+            for (PricingRule pricingRule : PricingRule.values()) {
+                SolverOptions options = new SolverOptions();
+                options.setEngine(engine);
+                options.setPricingRule(pricingRule);
+                configurations.put(engine + " engine, " + pricingRule + " pricing", options);
+            }
+            SolverOptions options = new SolverOptions();
+            options.setEngine(engine);
+            options.setPartialPricingWindow(8);
+            options.setCandidateListSize(4);
+            configurations.put(engine + " engine, partial and multiple pricing", options);
+        }
+        SolverOptions unperturbedOptions = new SolverOptions();
+        unperturbedOptions.setPerturbation(false);
+        configurations.put("perturbation off", unperturbedOptions);
+
         long time = 0;
         boolean passed = true;
-        try {
-            time = StressTester.maxFlow(10, 10);
-        } catch (Exception e) {
-            passed = false;
-            e.printStackTrace();
+        for (Map.Entry<String, SolverOptions> configuration : configurations.entrySet()) {
+            try {
+                time += StressTester.maxFlow(10, 10, configuration.getValue());
+            } catch (Exception e) {
+                passed = false;
+                System.out.println("Stress Test failed with " + configuration.getKey());
+                e.printStackTrace();
+            }
+        }
+        printTestStatus("Stress Test (n = k = 10, " + configurations.size() + " configurations) in " + time + " ms", passed);
+    }
+
+    // Options that solve a linear program as it was built so the pivots
+    // only depend on the option under test
+    private static SolverOptions unscaledOptions() {
+        SolverOptions options = new SolverOptions();
+        options.setScaling(false);
+        options.setPresolve(false);
+        options.setAutomaticDualForm(false);
+        return options;
+    }
+
+    // Empty linear program solved by the given engine with the given
+    // options, which the caller may still change through getOptions()
+    private static LinearProgram newProgram(SolverEngine engine, SolverOptions options) {
+        options.setEngine(engine);
+        LinearProgram p = new LinearProgram();
+        p.setOptions(options);
+        return p;
+    }
+
+    // Klee-Minty cube on which Dantzig's rule visits all 2^n vertices
+    // before reaching the optimum 5^n
+    private static ArrayList<Variable> kleeMinty(LinearProgram p, int n) {
+        ArrayList<Variable> variables = new ArrayList<>();
+        ArrayList<Double> costs = new ArrayList<>();
+        for (int j = 0; j < n; j++) {
+            variables.add(p.registerNonnegativeVariable("x" + j));
+            costs.add(Math.pow(2, n - 1 - j));
+        }
+        for (int i = 0; i < n; i++) {
+            ArrayList<Variable> rowVariables = new ArrayList<>();
+            ArrayList<Double> rowWeights = new ArrayList<>();
+            for (int j = 0; j < i; j++) {
+                rowVariables.add(variables.get(j));
+                rowWeights.add(Math.pow(2, i - j + 1));
+            }
+            rowVariables.add(variables.get(i));
+            rowWeights.add(1.0);
+            p.addConstraint(new Constraint(rowVariables, rowWeights, Relation.LEQ, Math.pow(5, i + 1)));
+        }
+        p.setObjective(new ObjectiveFunction(ObjectiveGoal.MAXIMIZE, variables, costs));
+        return variables;
+    }
+
+    // Random cone through the origin cut off by the unit simplex. Every
+    // row of the cone is tight at the starting vertex so the simplex
+    // method makes long runs of degenerate pivots before the objective
+    // function increases.
+    private static ArrayList<Variable> degenerateCone(LinearProgram p, long seed, int numVariables, int numConstraints) {
+        Random random = new Random(seed);
+        ArrayList<Variable> variables = new ArrayList<>();
+        ArrayList<Double> costs = new ArrayList<>();
+        ArrayList<Double> ones = new ArrayList<>();
+        for (int j = 0; j < numVariables; j++) {
+            variables.add(p.registerNonnegativeVariable("x" + j));
+            costs.add(1.0 + random.nextInt(10));
+            ones.add(1.0);
+        }
+        for (int i = 0; i < numConstraints; i++) {
+            ArrayList<Double> rowWeights = new ArrayList<>();
+            double sum = 0.0;
+            for (int j = 0; j < numVariables; j++) {
+                double w = random.nextInt(11) - 5;
+                rowWeights.add(w);
+                sum += w;
+            }
+            // Keep the direction of all ones inside the cone
+            if (sum > 0) {
+                rowWeights.set(numVariables - 1, rowWeights.get(numVariables - 1) - sum);
+            }
+            p.addConstraint(new Constraint(variables, rowWeights, Relation.LEQ, 0.0));
+        }
+        p.addConstraint(new Constraint(variables, ones, Relation.LEQ, 1.0));
+        p.setObjective(new ObjectiveFunction(ObjectiveGoal.MAXIMIZE, variables, costs));
+        return variables;
+    }
+
+    // Random sparse constraints through a known point so the linear
+    // program is feasible. Every third variable is free, the ones after
+    // them are boxed and the rest are nonnegative. Row i has relation
+    // relations[i % relations.length] and inequalities leave some room
+    // around the point. The objective function only charges for variables
+    // with a lower bound and only boxed variables may earn, so the minimum
+    // is finite. A badly scaled linear program multiplies every row and
+    // column by a power of ten from 1e-3 to 1e3.
+    private static ArrayList<Constraint> pointFeasible(LinearProgram p, long seed, int numVariables, int numConstraints,
+                                                       double density, boolean badlyScaled, Relation... relations) {
+        Random random = new Random(seed);
+        ArrayList<Variable> variables = new ArrayList<>();
+        ArrayList<Double> costs = new ArrayList<>();
+        double[] point = new double[numVariables];
+        double[] columnFactors = new double[numVariables];
+        for (int j = 0; j < numVariables; j++) {
+            columnFactors[j] = badlyScaled ? Math.pow(10, random.nextInt(7) - 3) : 1.0;
+            if (j % 3 == 0) {
+                variables.add(p.registerUnboundedVariable("x" + j));
+                point[j] = random.nextInt(11) - 5;
+                costs.add(0.0);
+            } else if (j % 3 == 1) {
+                variables.add(p.registerVariable("x" + j, 0.0, 10.0/columnFactors[j]));
+                point[j] = random.nextInt(11);
+                costs.add((random.nextInt(11) - 5)*columnFactors[j]);
+            } else {
+                variables.add(p.registerNonnegativeVariable("x" + j));
+                point[j] = random.nextInt(10);
+                costs.add((1 + random.nextInt(10))*columnFactors[j]);
+            }
+        }
+        ArrayList<Constraint> constraints = new ArrayList<>();
+        for (int i = 0; i < numConstraints; i++) {
+            double rowFactor = badlyScaled ? Math.pow(10, random.nextInt(7) - 3) : 1.0;
+            ArrayList<Variable> rowVariables = new ArrayList<>();
+            ArrayList<Double> rowWeights = new ArrayList<>();
+            double activity = 0.0;
+            for (int j = 0; j < numVariables; j++) {
+                if (random.nextDouble() < density) {
+                    double w = random.nextInt(11) - 5;
+                    rowVariables.add(variables.get(j));
+                    rowWeights.add(rowFactor*w*columnFactors[j]);
+                    activity += rowFactor*w*point[j];
+                }
+            }
+            Relation relation = relations[i % relations.length];
+            double room = rowFactor*random.nextInt(20);
+            double rhs = activity + ((relation == Relation.LEQ) ? room : (relation == Relation.GEQ) ? -room : 0.0);
+            Constraint c = new Constraint(rowVariables, rowWeights, relation, rhs);
+            constraints.add(c);
+            p.addConstraint(c);
+        }
+        p.setObjective(new ObjectiveFunction(ObjectiveGoal.MINIMIZE, variables, costs));
+        return constraints;
+    }
+
+    // Whether the values of the last solve satisfy every constraint
+    private static boolean satisfies(LinearProgram p, ArrayList<Constraint> constraints) {
+        for (Constraint c : constraints) {
+            double lhs = 0.0;
+            double scale = Math.abs(c.getB());
+            for (int t = 0; t < c.getVariables().size(); t++) {
+                double term = c.getWeights().get(t)*p.evaluateVariable(c.getVariables().get(t)).get();
+                lhs += term;
+                scale = Math.max(scale, Math.abs(term));
+            }
+            double tolerance = EPSILON*Math.max(1.0, scale);
+            boolean satisfied = (c.getRelation() == Relation.LEQ) ? lhs <= c.getB() + tolerance
+                    : (c.getRelation() == Relation.GEQ) ? lhs >= c.getB() - tolerance
+                    : Math.abs(lhs - c.getB()) <= tolerance;
+            if (!satisfied) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static void tableauBackendTest() {
+        // Each backend stores the same doubles so every backend takes the
+        // same pivots to the same solution. The tableau of a solve is freed
+        // when it finishes and a second solve gets a new one.
+        int[] iterations = new int[TableauBackend.values().length];
+        double[][] values = new double[iterations.length][];
+        boolean passed = true;
+        for (TableauBackend backend : TableauBackend.values()) {
+            LinearProgram p = new LinearProgram();
+            SolverOptions options = unscaledOptions();
+            options.setTableauBackend(backend);
+            p.setOptions(options);
+            ArrayList<Variable> variables = degenerateCone(p, 1, 30, 200);
+
+            for (int solve = 0; solve < 2; solve++) {
+                p.solve();
+                double[] solveValues = new double[variables.size()];
+                for (int j = 0; j < variables.size(); j++) {
+                    solveValues[j] = p.evaluateVariable(variables.get(j)).get();
+                }
+                if (solve == 0) {
+                    values[backend.ordinal()] = solveValues;
+                } else {
+                    passed &= Arrays.equals(solveValues, values[backend.ordinal()]);
+                }
+            }
+            iterations[backend.ordinal()] = p.getStatistics().getNumIterations();
+        }
+        for (int k = 1; k < iterations.length; k++) {
+            passed &= iterations[k] == iterations[0] && Arrays.equals(values[k], values[0]);
         }
-        printTestStatus("Stress Test (n = k = 10) in " + time + " ms", passed);
+        printTestStatus("Tableau Backend Test (" + iterations[0] + " pivots on every backend)", passed);
+    }
+
+    public static void parallelPivotTest() {
+        // Threads update disjoint blocks of rows with the same arithmetic
+        // as a serial pivot so both take the same pivots to the same
+        // solution
+        int[] iterations = new int[2];
+        double[][] values = new double[2][];
+        for (int parallel = 0; parallel < 2; parallel++) {
+            LinearProgram p = new LinearProgram();
+            SolverOptions options = unscaledOptions();
+            options.setParallelPivot(parallel == 1);
+            // Force even this small linear program onto the parallel path
+            options.setParallelPivotThreshold(0);
+            p.setOptions(options);
+            ArrayList<Variable> variables = degenerateCone(p, 1, 30, 200);
+
+            p.solve();
+            iterations[parallel] = p.getStatistics().getNumIterations();
+            values[parallel] = new double[variables.size()];
+            for (int j = 0; j < variables.size(); j++) {
+                values[parallel][j] = p.evaluateVariable(variables.get(j)).get();
+            }
+        }
+        boolean passed = iterations[0] == iterations[1] && Arrays.equals(values[0], values[1]);
+        printTestStatus("Parallel Pivot Test (" + iterations[1] + " parallel pivots)", passed);
+    }
+
+    public static void revisedSimplexTest() {
+        // The basis factorization only changes round-off so the revised
+        // simplex method takes the same pivots however often it
+        // refactorizes and agrees with the tableau
+        LinearProgram tableau = new LinearProgram();
+        tableau.setOptions(unscaledOptions());
+        degenerateCone(tableau, 3, 30, 200);
+        tableau.solve();
+        double objectiveValue = tableau.getObjectiveValue().get();
+
+        int iterations = -1;
+        boolean passed = true;
+        for (int refactorizationInterval : new int[]{1, new SolverOptions().getRefactorizationInterval(), 1000000}) {
+            LinearProgram p = newProgram(SolverEngine.REVISED, unscaledOptions());
+            p.getOptions().setRefactorizationInterval(refactorizationInterval);
+            degenerateCone(p, 3, 30, 200);
+
+            p.solve();
+            passed &= Math.abs(p.getObjectiveValue().get() - objectiveValue) < EPSILON &&
+                (iterations == -1 || p.getStatistics().getNumIterations() == iterations);
+            iterations = p.getStatistics().getNumIterations();
+        }
+        printTestStatus("Revised Simplex Test (" + iterations + " pivots)", passed);
+    }
+
+    public static void pricingRuleTest() {
+        // Dantzig's rule visits every vertex of the Klee-Minty cube while
+        // weighing columns by their edge lengths cuts through it
+        int n = 8;
+        boolean passed = true;
+        String counts = "";
+        for (SolverEngine engine : new SolverEngine[]{SolverEngine.TABLEAU, SolverEngine.REVISED}) {
+            int[] iterations = new int[PricingRule.values().length];
+            for (PricingRule pricingRule : PricingRule.values()) {
+                LinearProgram p = newProgram(engine, unscaledOptions());
+                p.getOptions().setPricingRule(pricingRule);
+                kleeMinty(p, n);
+
+                p.solve();
+                iterations[pricingRule.ordinal()] = p.getStatistics().getNumIterations();
+                passed &= Math.abs(p.getObjectiveValue().get() - Math.pow(5, n)) < EPSILON*Math.pow(5, n) &&
+                    p.getStatistics().getNumBlandIterations() == 0;
+            }
+            passed &= iterations[PricingRule.DANTZIG.ordinal()] == (1 << n) - 1 &&
+                iterations[PricingRule.DEVEX.ordinal()] < iterations[PricingRule.DANTZIG.ordinal()] &&
+                iterations[PricingRule.STEEPEST_EDGE.ordinal()] < iterations[PricingRule.DEVEX.ordinal()];
+            counts = Arrays.toString(iterations);
+        }
+        printTestStatus("Pricing Rule Test (" + counts + " pivots by rule)", passed);
+
+        // Long runs of degenerate pivots on an unperturbed cone fall back
+        // to Bland's rule which must still reach the optimum. On the tableau
+        // Bland's rule lands on a pivot element lost to round-off and the
+        // revised simplex method finishes from its basis.
+        passed = true;
+        int blandIterations = 0;
+        int tableauIterations = 0;
+        for (SolverEngine engine : new SolverEngine[]{SolverEngine.TABLEAU, SolverEngine.REVISED}) {
+            double[] objectiveValues = new double[2];
+            int k = 0;
+            for (PricingRule pricingRule : new PricingRule[]{PricingRule.DANTZIG, PricingRule.BLAND}) {
+                LinearProgram p = newProgram(engine, unscaledOptions());
+                p.getOptions().setPricingRule(pricingRule);
+                p.getOptions().setPerturbation(false);
+                degenerateCone(p, 3, 30, 200);
+
+                p.solve();
+                objectiveValues[k++] = p.getObjectiveValue().get();
+                if (pricingRule == PricingRule.DANTZIG) {
+                    blandIterations = p.getStatistics().getNumBlandIterations();
+                    passed &= blandIterations > 0;
+                } else if (engine == SolverEngine.TABLEAU) {
+                    tableauIterations = p.getStatistics().getNumTableauIterations();
+                    passed &= tableauIterations > 0;
+                }
+            }
+            passed &= Math.abs(objectiveValues[0] - objectiveValues[1]) < EPSILON;
+        }
+        printTestStatus("Bland Fallback Test (" + blandIterations + " Bland pivots, " + tableauIterations
+                + " tableau pivots before refactorizing)", passed);
+    }
+
+    public static void partialPricingTest() {
+        // max x1 + 10 x2 subject to x1 + x2 <= 1. Pricing every column
+        // enters x2 right away while a window of one column enters x1
+        // first and finds x2 in the next window.
+        boolean passed = true;
+        for (SolverEngine engine : new SolverEngine[]{SolverEngine.TABLEAU, SolverEngine.REVISED}) {
+            for (int window : new int[]{0, 1}) {
+                LinearProgram p = newProgram(engine, unscaledOptions());
+                p.getOptions().setPricingRule(PricingRule.DANTZIG);
+                p.getOptions().setPartialPricingWindow(window);
+                Variable x1 = p.registerNonnegativeVariable("x1");
+                Variable x2 = p.registerNonnegativeVariable("x2");
+
+                p.setObjective(new ObjectiveFunction(
+                        ObjectiveGoal.MAXIMIZE,
+                        new ArrayList<>(Arrays.asList(x1, x2)),
+                        new ArrayList<>(Arrays.asList(1.0, 10.0))
+                ));
+
+                p.addConstraint(new Constraint(
+                        new ArrayList<>(Arrays.asList(x1, x2)),
+                        new ArrayList<>(Arrays.asList(1.0, 1.0)),
+                        Relation.LEQ,
+                        1.0
+                ));
+
+                p.solve();
+                passed &= Math.abs(p.getObjectiveValue().get() - 10) < EPSILON &&
+                    p.getStatistics().getNumIterations() == ((window == 0) ? 1 : 2);
+            }
+        }
+
+        // Partial and multiple pricing only change the order of the pivots
+        // on a larger linear program
+        for (SolverEngine engine : new SolverEngine[]{SolverEngine.TABLEAU, SolverEngine.REVISED}) {
+            double[] objectiveValues = new double[2];
+            for (int partial = 0; partial < 2; partial++) {
+                LinearProgram p = newProgram(engine, unscaledOptions());
+                if (partial == 1) {
+                    p.getOptions().setPartialPricingWindow(8);
+                    p.getOptions().setCandidateListSize(4);
+                }
+                degenerateCone(p, 2, 30, 200);
+
+                p.solve();
+                objectiveValues[partial] = p.getObjectiveValue().get();
+            }
+            passed &= Math.abs(objectiveValues[0] - objectiveValues[1]) < EPSILON;
+        }
+        printTestStatus("Partial Pricing Test", passed);
+    }
+
+    public static void crashBasisTest() {
+        // Equality constraints through a known point solved with and
+        // without a crash basis
+        int[] iterations = new int[2];
+        double[] objectiveValues = new double[2];
+        int crashPivots = 0;
+        int infeasibilitiesRemoved = 0;
+        for (int crash = 0; crash < 2; crash++) {
+            LinearProgram p = new LinearProgram();
+            SolverOptions options = new SolverOptions();
+            options.setDualSimplex(false);
+            options.setCrashBasis(crash == 1);
+            p.setOptions(options);
+            pointFeasible(p, 42, 60, 40, 0.2, false, Relation.EQ);
+
+            p.solve();
+            iterations[crash] = p.getStatistics().getNumIterations();
+            objectiveValues[crash] = p.getObjectiveValue().get();
+            crashPivots = p.getStatistics().getNumCrashPivots();
+            infeasibilitiesRemoved = p.getStatistics().getNumCrashInfeasibilitiesRemoved();
+        }
+        // Every equality row starts with a fixed slack, most of them
+        // infeasible, and the crash replaces those a triangular basis
+        // can reach
+        boolean passed = Math.abs(objectiveValues[0] - objectiveValues[1]) < EPSILON*Math.max(1.0, Math.abs(objectiveValues[0])) &&
+            crashPivots > 0 && infeasibilitiesRemoved > 0 && iterations[1] < iterations[0];
+        printTestStatus("Crash Basis Test (" + crashPivots + " crash pivots removing " + infeasibilitiesRemoved
+                + " infeasibilities, " + (iterations[0] - iterations[1]) + " pivots saved)", passed);
+    }
+
+    public static void perturbationTest() {
+        // The unperturbed cone stalls at its starting vertex long enough
+        // to fall back to Bland's rule. Perturbing the bounds spreads the
+        // tight rows apart so far fewer pivots are degenerate.
+        int[] degeneratePivots = new int[2];
+        int[] blandIterations = new int[2];
+        double[] objectiveValues = new double[2];
+        for (int perturbation = 0; perturbation < 2; perturbation++) {
+            LinearProgram p = new LinearProgram();
+            SolverOptions options = unscaledOptions();
+            options.setPerturbation(perturbation == 1);
+            p.setOptions(options);
+            degenerateCone(p, 3, 30, 200);
+
+            p.solve();
+            degeneratePivots[perturbation] = p.getStatistics().getNumDegeneratePivots();
+            blandIterations[perturbation] = p.getStatistics().getNumBlandIterations();
+            objectiveValues[perturbation] = p.getObjectiveValue().get();
+        }
+        boolean passed = Math.abs(objectiveValues[0] - objectiveValues[1]) < EPSILON &&
+            blandIterations[0] > 0 && blandIterations[1] == 0 && degeneratePivots[1] < degeneratePivots[0];
+        printTestStatus("Perturbation Test (" + degeneratePivots[0] + " degenerate pivots unperturbed, "
+                + degeneratePivots[1] + " perturbed)", passed);
+    }
+
+    public static void scalingTest() {
+        // Random constraints whose rows and columns are multiplied by
+        // factors from 1e-3 to 1e3 solved with and without scaling
+        int[] iterations = new int[2];
+        double[] objectiveValues = new double[2];
+        boolean passed = true;
+        for (int scaling = 0; scaling < 2; scaling++) {
+            LinearProgram p = new LinearProgram();
+            SolverOptions options = new SolverOptions();
+            options.setScaling(scaling == 1);
+            p.setOptions(options);
+            ArrayList<Constraint> constraints = pointFeasible(p, 42, 60, 40, 0.3, true, Relation.LEQ);
+
+            p.solve();
+            iterations[scaling] = p.getStatistics().getNumIterations();
+            objectiveValues[scaling] = p.getObjectiveValue().get();
+            // The variable values are unscaled so they satisfy the
+            // constraints as they were built
+            passed &= satisfies(p, constraints);
+        }
+        passed &= Math.abs(objectiveValues[0] - objectiveValues[1]) < EPSILON*Math.max(1.0, Math.abs(objectiveValues[0]));
+        printTestStatus("Scaling Test (" + (iterations[0] - iterations[1]) + " pivots saved)", passed);
+    }
+
+    public static void presolveTest() {
+        boolean passed = true;
+        int numRemovedRows = 0;
+        int numRemovedColumns = 0;
+        for (boolean presolve : new boolean[]{false, true}) {
+            LinearProgram p = new LinearProgram();
+            SolverOptions options = new SolverOptions();
+            options.setPresolve(presolve);
+            p.setOptions(options);
+            Variable x1 = p.registerNonnegativeVariable("x1");
+            Variable x2 = p.registerNonnegativeVariable("x2");
+            Variable x3 = p.registerNonnegativeVariable("x3");
+            Variable x4 = p.registerNonnegativeVariable("x4");
+            Variable x5 = p.registerNonnegativeVariable("x5");
+            // Fixed variable
+            Variable y = p.registerVariable("y", 2.0, 2.0);
+            // Variable in no constraint
+            Variable z = p.registerNonnegativeVariable("z");
+
+            p.setObjective(new ObjectiveFunction(
+                    ObjectiveGoal.MAXIMIZE,
+                    new ArrayList<>(Arrays.asList(x1, x2, x3, x4, y, z)),
+                    new ArrayList<>(Arrays.asList(1.0, 2.0, 3.0, 1.0, 1.0, -1.0))
+            ));
+
+            p.addConstraint(new Constraint(
+                    new ArrayList<>(Arrays.asList(x1, x2, y)),
+                    new ArrayList<>(Arrays.asList(1.0, 1.0, 1.0)),
+                    Relation.LEQ,
+                    10.0
+            ));
+            // Duplicate of the constraint above
+            p.addConstraint(new Constraint(
+                    new ArrayList<>(Arrays.asList(x1, x2, y)),
+                    new ArrayList<>(Arrays.asList(2.0, 2.0, 2.0)),
+                    Relation.LEQ,
+                    20.0
+            ));
+            // Singleton constraint
+            p.addConstraint(new Constraint(
+                    new ArrayList<>(Arrays.asList(x3)),
+                    new ArrayList<>(Arrays.asList(1.0)),
+                    Relation.LEQ,
+                    4.0
+            ));
+            // Empty constraint
+            p.addConstraint(new Constraint(
+                    new ArrayList<>(),
+                    new ArrayList<>(),
+                    Relation.LEQ,
+                    5.0
+            ));
+            p.addConstraint(new Constraint(
+                    new ArrayList<>(Arrays.asList(x1, x3)),
+                    new ArrayList<>(Arrays.asList(1.0, 1.0)),
+                    Relation.GEQ,
+                    1.0
+            ));
+            p.addConstraint(new Constraint(
+                    new ArrayList<>(Arrays.asList(x2, x4)),
+                    new ArrayList<>(Arrays.asList(1.0, -1.0)),
+                    Relation.EQ,
+                    0.0
+            ));
+            p.addConstraint(new Constraint(
+                    new ArrayList<>(Arrays.asList(x4, x5)),
+                    new ArrayList<>(Arrays.asList(1.0, 1.0)),
+                    Relation.LEQ,
+                    6.0
+            ));
+
+            p.solve();
+            passed = passed &&
+                Math.abs(p.getObjectiveValue().get() - 34) < EPSILON &&
+                Math.abs(p.evaluateVariable(x1).get() - 2) < EPSILON &&
+                Math.abs(p.evaluateVariable(x2).get() - 6) < EPSILON &&
+                Math.abs(p.evaluateVariable(x3).get() - 4) < EPSILON &&
+                Math.abs(p.evaluateVariable(x4).get() - 6) < EPSILON &&
+                Math.abs(p.evaluateVariable(x5).get()) < EPSILON &&
+                Math.abs(p.evaluateVariable(y).get() - 2) < EPSILON &&
+                Math.abs(p.evaluateVariable(z).get()) < EPSILON;
+            numRemovedRows = p.getStatistics().getNumPresolvedRows();
+            numRemovedColumns = p.getStatistics().getNumPresolvedColumns();
+
+            // Solving again reuses the reductions until the options they
+            // were made with change in place
+            p.solve();
+            passed = passed &&
+                Math.abs(p.getObjectiveValue().get() - 34) < EPSILON &&
+                p.getStatistics().getNumPresolvedRows() == numRemovedRows;
+            options.setPresolve(!presolve);
+            p.solve();
+            passed = passed &&
+                Math.abs(p.getObjectiveValue().get() - 34) < EPSILON &&
+                (p.getStatistics().getNumPresolvedRows() > 0) == !presolve;
+            options.setPresolve(presolve);
+
+            // A singleton constraint contradicting a bound and a variable
+            // in no constraint improving the objective without limit are
+            // found by presolve
+            LinearProgram infeasible = new LinearProgram();
+            infeasible.setOptions(options);
+            Variable w = infeasible.registerVariable("w", 0.0, 3.0);
+            infeasible.setObjective(new ObjectiveFunction(
+                    ObjectiveGoal.MAXIMIZE,
+                    new ArrayList<>(Arrays.asList(w)),
+                    new ArrayList<>(Arrays.asList(1.0))
+            ));
+            infeasible.addConstraint(new Constraint(
+                    new ArrayList<>(Arrays.asList(w)),
+                    new ArrayList<>(Arrays.asList(1.0)),
+                    Relation.GEQ,
+                    5.0
+            ));
+            passed = passed && infeasible.getSolutionStatus() == SolutionResult.INFEASIBLE;
+
+            LinearProgram unbounded = new LinearProgram();
+            unbounded.setOptions(options);
+            Variable v1 = unbounded.registerVariable("v1", 0.0, 3.0);
+            Variable v2 = unbounded.registerNonnegativeVariable("v2");
+            unbounded.setObjective(new ObjectiveFunction(
+                    ObjectiveGoal.MAXIMIZE,
+                    new ArrayList<>(Arrays.asList(v1, v2)),
+                    new ArrayList<>(Arrays.asList(1.0, 1.0))
+            ));
+            unbounded.addConstraint(new Constraint(
+                    new ArrayList<>(Arrays.asList(v1)),
+                    new ArrayList<>(Arrays.asList(1.0)),
+                    Relation.LEQ,
+                    2.0
+            ));
+            passed = passed && unbounded.getSolutionStatus() == SolutionResult.UNBOUNDED;
+        }
+        passed = passed && numRemovedRows > 0 && numRemovedColumns > 0;
+        printTestStatus("Presolve Test (" + numRemovedRows + " rows and " + numRemovedColumns + " columns removed)", passed);
+    }
+
+    public static void dualFormTest() {
+        // Many more mixed constraints than variables through a known
+        // point so that neither the linear program nor its dual start
+        // from a feasible basis
+        boolean passed = true;
+        int iterationsSaved = 0;
+        for (SolverEngine engine : SolverEngine.values()) {
+            double[] objectiveValues = new double[2];
+            for (int dual = 0; dual < 2; dual++) {
+                LinearProgram p = newProgram(engine, new SolverOptions());
+                p.getOptions().setAutomaticDualForm(dual == 1);
+                ArrayList<Constraint> constraints = pointFeasible(p, 42, 10, 200, 0.5, false,
+                        Relation.GEQ, Relation.LEQ, Relation.LEQ);
+
+                p.solve();
+                iterationsSaved += (dual == 0 ? 1 : -1)*p.getStatistics().getNumIterations();
+                objectiveValues[dual] = p.getObjectiveValue().get();
+                // The recovered variable values satisfy every constraint
+                passed &= satisfies(p, constraints);
+            }
+            passed &= Math.abs(objectiveValues[0] - objectiveValues[1]) < EPSILON*Math.max(1.0, Math.abs(objectiveValues[0]));
+        }
+        printTestStatus("Dual Form Test (" + iterationsSaved + " pivots saved)", passed);
+    }
+
+    public static void interiorPointTest() {
+        // Mixed constraints through a known point over free, boxed and
+        // nonnegative variables solved by the revised simplex method and by
+        // the interior point method with crossover
+        boolean passed = true;
+        double[] objectiveValues = new double[2];
+        int barrierIterations = 0;
+        for (int engine = 0; engine < 2; engine++) {
+            LinearProgram p = newProgram(engine == 0 ? SolverEngine.REVISED : SolverEngine.INTERIOR_POINT,
+                    new SolverOptions());
+            pointFeasible(p, 42, 40, 30, 0.3, false, Relation.EQ, Relation.LEQ, Relation.LEQ);
+
+            p.solve();
+            passed = passed && p.getSolutionStatus() == SolutionResult.FEASIBLE;
+            objectiveValues[engine] = p.getObjectiveValue().get();
+            if (engine == 1) {
+                barrierIterations = p.getStatistics().getNumBarrierIterations();
+            }
+        }
+        passed = passed && barrierIterations > 0 &&
+            Math.abs(objectiveValues[0] - objectiveValues[1]) < EPSILON*Math.max(1.0, Math.abs(objectiveValues[0]));
+
+        // Contradicting constraints make the dual iterates diverge along a
+        // proof of infeasibility
+        LinearProgram infeasible = new LinearProgram();
+        SolverOptions options = new SolverOptions();
+        options.setEngine(SolverEngine.INTERIOR_POINT);
+        options.setPresolve(false);
+        infeasible.setOptions(options);
+        Variable x1 = infeasible.registerNonnegativeVariable("x1");
+        Variable x2 = infeasible.registerNonnegativeVariable("x2");
+        infeasible.setObjective(new ObjectiveFunction(
+                ObjectiveGoal.MAXIMIZE,
+                new ArrayList<>(Arrays.asList(x1, x2)),
+                new ArrayList<>(Arrays.asList(1.0, 1.0))
+        ));
+        infeasible.addConstraint(new Constraint(
+                new ArrayList<>(Arrays.asList(x1, x2)),
+                new ArrayList<>(Arrays.asList(1.0, 1.0)),
+                Relation.LEQ,
+                2.0
+        ));
+        infeasible.addConstraint(new Constraint(
+                new ArrayList<>(Arrays.asList(x1, x2)),
+                new ArrayList<>(Arrays.asList(1.0, 2.0)),
+                Relation.GEQ,
+                5.0
+        ));
+        passed = passed && infeasible.getSolutionStatus() == SolutionResult.INFEASIBLE &&
+            infeasible.getStatistics().getNumBarrierIterations() > 0;
+
+        // Feasible points all far from the origin make the dual iterates
+        // look like a proof of infeasibility which the simplex method
+        // has to refute
+        LinearProgram far = new LinearProgram();
+        far.setOptions(options);
+        Variable y1 = far.registerNonnegativeVariable("y1");
+        Variable y2 = far.registerNonnegativeVariable("y2");
+        far.setObjective(new ObjectiveFunction(
+                ObjectiveGoal.MINIMIZE,
+                new ArrayList<>(Arrays.asList(y1, y2)),
+                new ArrayList<>(Arrays.asList(1.0, 1.0))
+        ));
+        far.addConstraint(new Constraint(
+                new ArrayList<>(Arrays.asList(y1, y2)),
+                new ArrayList<>(Arrays.asList(1.0, -1.0)),
+                Relation.GEQ,
+                1e12
+        ));
+        passed = passed && far.getSolutionStatus() == SolutionResult.FEASIBLE &&
+            Math.abs(far.getObjectiveValue().get() - 1e12) < EPSILON*1e12;
+        printTestStatus("Interior Point Test (" + barrierIterations + " barrier iterations)", passed);
     }
 
     public static void runAllTests() {
@@ -454,6 +1464,23 @@ public class LinearProgramTest {
         LinearProgramTest.differenceConstraintTest1();
         LinearProgramTest.differenceConstraintTest2();
         LinearProgramTest.maxFlowTest1();
+        LinearProgramTest.incrementalEditTest();
+        LinearProgramTest.dualSimplexTest();
+        LinearProgramTest.harrisRatioTest();
+        LinearProgramTest.boundedVariableTest();
+        LinearProgramTest.equalityConstraintTest();
+        LinearProgramTest.freeVariableTest();
         LinearProgramTest.stressTest1();
+        LinearProgramTest.tableauBackendTest();
+        LinearProgramTest.parallelPivotTest();
+        LinearProgramTest.revisedSimplexTest();
+        LinearProgramTest.pricingRuleTest();
+        LinearProgramTest.partialPricingTest();
+        LinearProgramTest.crashBasisTest();
+        LinearProgramTest.perturbationTest();
+        LinearProgramTest.scalingTest();
+        LinearProgramTest.presolveTest();
+        LinearProgramTest.dualFormTest();
+        LinearProgramTest.interiorPointTest();
     }
 }
@@ -21,7 +21,23 @@ public class StressTester {
      * Min-Cut theorem
      */
     public static long maxFlow(int layerSize, int numLayers) throws Exception {
+        return maxFlow(layerSize, numLayers, new SolverOptions());
+    }
+
+    /**
+     * Computes a max flow across the same flow network as
+     * maxFlow(int, int) but solves the linear program with the given
+     * solver options
+     * @param layerSize the number of nodes per layer
+     * @param numLayers the number of layers
+     * @param options the solver options to use
+     * @return the time it took to compute the max flow in milliseconds
+     * @throws Exception if the flow generated failed to be optimal by Max-Flow
+     * Min-Cut theorem
+     */
+    public static long maxFlow(int layerSize, int numLayers, SolverOptions options) throws Exception {
         LinearProgram p = new LinearProgram();
+        p.setOptions(options);
 
         // network[u][v] holds the capacity of edge (u, v)
         HashMap<String, HashMap<String, Double>> network = new HashMap<>();